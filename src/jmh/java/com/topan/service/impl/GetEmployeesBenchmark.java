@@ -0,0 +1,77 @@
+package com.topan.service.impl;
+
+import com.topan.entity.Employee;
+import com.topan.service.EmployeeService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * GET /users below the web layer: sort parsing on its own, and a full {@code getEmployees} page query over
+ * {@code tableRows} employees in H2, in operations per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GetEmployeesBenchmark {
+
+    private static final BigDecimal MIN_SALARY = new BigDecimal("1000");
+    private static final BigDecimal MAX_SALARY = new BigDecimal("5000");
+
+    @Param({"100000"})
+    private int tableRows;
+
+    @Param({"+id", "-salary", "name"})
+    private String sort;
+
+    @Param({"0", "100"})
+    private int offset;
+
+    private EmployeeService employeeService;
+
+    @Setup(Level.Trial)
+    public void setUp(H2Application application) {
+        employeeService = application.getBean(EmployeeService.class);
+        UploadingServiceImpl uploadingService = application.getBean(UploadingServiceImpl.class);
+        TransactionTemplate transactionTemplate = application.getBean(TransactionTemplate.class);
+
+        List<Employee> batch = new ArrayList<>(UploadingServiceImpl.BATCH_SIZE);
+        for (int i = 0; i < tableRows; i++) {
+            batch.add(new Employee(String.format("q%07d", i), "query" + i, "Name " + i % 997,
+                    BigDecimal.valueOf(i % 10_000 * 100L, 2)));
+            if (batch.size() == UploadingServiceImpl.BATCH_SIZE || i == tableRows - 1) {
+                transactionTemplate.executeWithoutResult(status -> uploadingService.uploadTransitionally(batch));
+                batch.clear();
+            }
+        }
+    }
+
+    @Benchmark
+    public Sort.Order parseSort() {
+        return EmployeeServiceImpl.parseSort(sort);
+    }
+
+    @Benchmark
+    public List<Employee> getEmployees() {
+        return employeeService.getEmployees(MIN_SALARY, MAX_SALARY, offset, 30, sort);
+    }
+}
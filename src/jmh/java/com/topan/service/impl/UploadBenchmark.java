@@ -0,0 +1,103 @@
+package com.topan.service.impl;
+
+import com.topan.entity.Employee;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Upload hot paths: validation of a parsed file, and one {@link UploadingServiceImpl#BATCH_SIZE} batch written
+ * through {@code uploadTransitionally} in its own transaction against H2. Both in operations per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UploadBenchmark {
+
+    @Param({"100000"})
+    private int validateRows;
+
+    private List<Employee> file;
+    private UploadingServiceImpl uploadingService;
+
+    @Setup(Level.Trial)
+    public void setUp(H2Application application) {
+        file = employees("v", 0, validateRows);
+        uploadingService = application.getBean(UploadingServiceImpl.class);
+    }
+
+    @Benchmark
+    public boolean validateEmployees() {
+        return uploadingService.validateEmployees(file);
+    }
+
+    @Benchmark
+    public void uploadTransitionally(Batch batch) {
+        batch.transactionTemplate.executeWithoutResult(status -> uploadingService.uploadTransitionally(batch.employees));
+    }
+
+    /**
+     * The rows written by one {@link #uploadTransitionally} call, built outside the measured section.
+     */
+    @State(Scope.Thread)
+    public static class Batch {
+
+        /**
+         * insert writes fresh ids every invocation, update rewrites the same rows with a new salary
+         */
+        @Param({"insert", "update"})
+        private String write;
+
+        private TransactionTemplate transactionTemplate;
+        private long invocation;
+        private List<Employee> employees;
+
+        @Setup(Level.Trial)
+        public void setUp(H2Application application) {
+            transactionTemplate = application.getBean(TransactionTemplate.class);
+            if ("update".equals(write)) {
+                UploadingServiceImpl uploadingService = application.getBean(UploadingServiceImpl.class);
+                List<Employee> existing = employees("u", 0, UploadingServiceImpl.BATCH_SIZE);
+                transactionTemplate.executeWithoutResult(status -> uploadingService.uploadTransitionally(existing));
+            }
+        }
+
+        @Setup(Level.Invocation)
+        public void next() {
+            invocation++;
+            employees = "insert".equals(write)
+                    ? employees("i" + invocation + "-", 0, UploadingServiceImpl.BATCH_SIZE)
+                    : employees("u", invocation, UploadingServiceImpl.BATCH_SIZE);
+        }
+    }
+
+    /**
+     * @param salaryOffset added to every salary, so that repeated batches really change the rows
+     */
+    private static List<Employee> employees(String idPrefix, long salaryOffset, int count) {
+        List<Employee> employees = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            employees.add(new Employee(idPrefix + i, idPrefix + "login" + i, "Name " + i,
+                    BigDecimal.valueOf(i + salaryOffset, 2)));
+        }
+        return employees;
+    }
+}
@@ -0,0 +1,63 @@
+package com.topan.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parse throughput of whole files held in memory, in files per second; divide by {@code rows} for rows per
+ * second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CsvParserBenchmark {
+
+    @Param({"1000", "100000"})
+    private int rows;
+
+    /**
+     * Quoted names with multi-byte UTF-8 and an embedded comma, instead of plain ASCII names
+     */
+    @Param({"false", "true"})
+    private boolean quotedUtf8;
+
+    private byte[] csv;
+
+    @Setup
+    public void setUp() {
+        StringBuilder builder = new StringBuilder("id,login,name,salary\n");
+        for (int i = 0; i < rows; i++) {
+            builder.append(i).append(",login").append(i).append(',');
+            if (quotedUtf8) {
+                builder.append("\"Zoë 张伟, ").append(i % 97).append('"');
+            } else {
+                builder.append("Some Name ").append(i % 97);
+            }
+            builder.append(',').append(i % 100_000).append(".25\n");
+        }
+        csv = builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public void parse(Blackhole blackhole) throws IOException {
+        CsvParser.parse(new ByteArrayInputStream(csv), blackhole::consume);
+    }
+}
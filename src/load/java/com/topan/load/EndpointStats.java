@@ -0,0 +1,127 @@
+package com.topan.load;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latencies and outcomes of the requests to one endpoint. Request threads record into a {@link Recorder}; the
+ * reporter drains it once a second into a point of the throughput curve and, past the warmup, into the run total.
+ */
+final class EndpointStats {
+
+    /**
+     * Latencies are recorded in microseconds, with three significant digits
+     */
+    private static final int SIGNIFICANT_DIGITS = 3;
+    /**
+     * Distinct error answers kept per endpoint; enough to tell rejected uploads from failing ones
+     */
+    private static final int MAX_ERRORS = 16;
+    private static final int MAX_ERROR_LENGTH = 120;
+
+    enum Outcome {OK, CLIENT_ERROR, SERVER_ERROR, FAILED}
+
+    /**
+     * One second of the run
+     *
+     * @param second seconds since the start of the measurement, negative during the warmup
+     */
+    record Interval(int second, Histogram histogram, long[] outcomes) {
+    }
+
+    private final String name;
+    private final Recorder recorder = new Recorder(SIGNIFICANT_DIGITS);
+    private final AtomicLongArray outcomes = new AtomicLongArray(Outcome.values().length);
+    private final Histogram total = new Histogram(SIGNIFICANT_DIGITS);
+    private final long[] totalOutcomes = new long[Outcome.values().length];
+    private final List<Interval> intervals = new ArrayList<>();
+    private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+    private Histogram recycled;
+
+    EndpointStats(String name) {
+        this.name = name;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    /**
+     * @param latencyNanos from the moment the request was due, not the moment it was sent
+     * @param status       HTTP status, or 0 when no response arrived
+     */
+    void record(long latencyNanos, int status) {
+        recorder.recordValue(Math.max(1, latencyNanos / 1000));
+        Outcome outcome = status == 0 ? Outcome.FAILED
+                : status >= 500 ? Outcome.SERVER_ERROR
+                : status >= 400 ? Outcome.CLIENT_ERROR
+                : Outcome.OK;
+        outcomes.incrementAndGet(outcome.ordinal());
+    }
+
+    /**
+     * Counts an error answer by its status and message, over the whole run.
+     */
+    void recordError(int status, String message) {
+        String key = status + " " + (message == null ? "" : message.strip());
+        if (key.length() > MAX_ERROR_LENGTH) {
+            key = key.substring(0, MAX_ERROR_LENGTH) + "...";
+        }
+        LongAdder count = errors.get(key);
+        if (count == null && errors.size() < MAX_ERRORS) {
+            count = errors.computeIfAbsent(key, k -> new LongAdder());
+        }
+        if (count != null) {
+            count.increment();
+        }
+    }
+
+    /**
+     * Closes the current interval; called from the reporter thread only.
+     *
+     * @param measured whether the interval counts towards the total
+     */
+    synchronized void sample(int second, boolean measured) {
+        recycled = recorder.getIntervalHistogram(recycled);
+        long[] counts = new long[totalOutcomes.length];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = outcomes.getAndSet(i, 0);
+        }
+        if (measured) {
+            total.add(recycled);
+            for (int i = 0; i < counts.length; i++) {
+                totalOutcomes[i] += counts[i];
+            }
+        }
+        intervals.add(new Interval(second, recycled.copy(), counts));
+    }
+
+    synchronized Histogram getTotal() {
+        return total.copy();
+    }
+
+    synchronized long getTotal(Outcome outcome) {
+        return totalOutcomes[outcome.ordinal()];
+    }
+
+    /**
+     * @return count per status and message, in the order of the messages
+     */
+    Map<String, Long> getErrors() {
+        Map<String, Long> counts = new TreeMap<>();
+        errors.forEach((key, count) -> counts.put(key, count.sum()));
+        return counts;
+    }
+
+    synchronized List<Interval> getIntervals() {
+        return List.copyOf(intervals);
+    }
+}
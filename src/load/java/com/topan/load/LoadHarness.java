@@ -0,0 +1,268 @@
+package com.topan.load;
+
+import com.topan.ProjApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives a mix of uploads and queries over HTTP against the whole application and reports latency percentiles and
+ * throughput per endpoint, see {@link LoadOptions} for the settings and {@link LoadReport} for the output.
+ * <p>
+ * Queries are issued open-loop at {@code --query-rate}: each one has a due time on a fixed schedule and its latency
+ * is measured from that time, so a stalled server shows up as the latency of every query it held up rather than as
+ * fewer samples. Uploaders are closed-loop, each sending its next file once the previous one has been answered.
+ * <p>
+ * Without {@code --target} the application is started in this JVM on an in-memory H2 database, on a random port;
+ * client and server then share the machine, which the numbers have to be read against.
+ */
+public final class LoadHarness {
+
+    private static final Duration QUERY_TIMEOUT = Duration.ofSeconds(60);
+    private static final Duration UPLOAD_TIMEOUT = Duration.ofMinutes(10);
+    private static final String BOUNDARY = "load-" + UUID.randomUUID();
+    /**
+     * Reads the body of error answers only, for the error counts of the report
+     */
+    private static final HttpResponse.BodyHandler<String> ERROR_BODY = response -> response.statusCode() >= 400
+            ? HttpResponse.BodySubscribers.ofString(StandardCharsets.UTF_8)
+            : HttpResponse.BodySubscribers.replacing(null);
+
+    private final LoadOptions options;
+    private final HttpClient client;
+    private final String baseUrl;
+    private final EndpointStats rangeQueries = new EndpointStats("GET /users");
+    private final EndpointStats idLookups = new EndpointStats("GET /users/{id}");
+    private final EndpointStats uploads = new EndpointStats("POST /users/upload");
+    private final List<EndpointStats> endpoints = List.of(rangeQueries, idLookups, uploads);
+
+    private volatile boolean stopped;
+
+    private LoadHarness(LoadOptions options, String baseUrl) {
+        this.options = options;
+        this.baseUrl = baseUrl;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadOptions options = LoadOptions.parse(args);
+        ConfigurableApplicationContext context = options.target.isEmpty() ? start(options) : null;
+        try {
+            String baseUrl = context == null ? options.target.replaceAll("/+$", "")
+                    : "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort();
+            System.out.println(new LoadHarness(options, baseUrl).run());
+        } finally {
+            if (context != null) {
+                context.close();
+            }
+        }
+    }
+
+    /**
+     * Boots the application on an in-memory H2 database; {@code --spring.*} and {@code --topan.*} arguments of the
+     * run override these settings and application.properties.
+     */
+    private static ConfigurableApplicationContext start(LoadOptions options) {
+        Map<String, String> args = new LinkedHashMap<>();
+        for (String arg : List.of(
+                "--server.port=0",
+                "--spring.datasource.url=jdbc:h2:mem:load;DB_CLOSE_DELAY=-1",
+                "--spring.datasource.driver-class-name=org.h2.Driver",
+                "--spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+                "--spring.main.banner-mode=off",
+                "--logging.level.root=WARN")) {
+            args.put(arg.substring(0, arg.indexOf('=')), arg);
+        }
+        // Repeating a name would turn its value into a list, so overrides replace the defaults instead
+        for (String arg : options.applicationArgs) {
+            args.put(arg.substring(0, arg.indexOf('=')), arg);
+        }
+        return new SpringApplicationBuilder(ProjApplication.class).run(args.values().toArray(String[]::new));
+    }
+
+    private String run() throws Exception {
+        seed();
+
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(daemon("load-reporter"));
+        ThreadPoolExecutor queryWorkers = new ThreadPoolExecutor(options.queryConcurrency, options.queryConcurrency,
+                0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), daemon("load-query-"));
+        List<Thread> threads = new ArrayList<>();
+
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(options.warmup + options.duration);
+        AtomicInteger second = new AtomicInteger(-options.warmup);
+        reporter.scheduleAtFixedRate(() -> {
+            int current = second.getAndIncrement();
+            for (EndpointStats endpoint : endpoints) {
+                endpoint.sample(current, current >= 0);
+            }
+            System.out.println(LoadReport.progress(current, endpoints));
+        }, 1, 1, TimeUnit.SECONDS);
+
+        if (options.queryRate > 0) {
+            threads.add(daemon("load-query-schedule").newThread(() -> scheduleQueries(queryWorkers, start, end)));
+        }
+        for (int i = 0; i < options.uploaders; i++) {
+            int uploader = i;
+            threads.add(daemon("load-upload-" + i).newThread(() -> upload(uploader, end)));
+        }
+        threads.forEach(Thread::start);
+
+        LockSupport.parkNanos(end - System.nanoTime());
+        stopped = true;
+        // Requests that were due within the run still count, however late they answer
+        for (Thread thread : threads) {
+            thread.join(UPLOAD_TIMEOUT.toMillis());
+        }
+        queryWorkers.shutdown();
+        queryWorkers.awaitTermination(QUERY_TIMEOUT.toSeconds(), TimeUnit.SECONDS);
+        reporter.shutdown();
+        reporter.awaitTermination(5, TimeUnit.SECONDS);
+        for (EndpointStats endpoint : endpoints) {
+            endpoint.sample(second.get(), true);
+        }
+        return new LoadReport(options, endpoints).write();
+    }
+
+    /**
+     * Uploads the rows the id lookups read, and that the salary ranges find.
+     */
+    private void seed() throws IOException, InterruptedException {
+        if (options.seedRows == 0) {
+            return;
+        }
+        SplittableRandom random = new SplittableRandom(options.seed);
+        StringBuilder csv = new StringBuilder("id,login,name,salary\n");
+        for (int row = 0; row < options.seedRows; row++) {
+            appendRow(csv, "s" + row, "seed" + row, random);
+        }
+        HttpResponse<String> response = client.send(uploadRequest(csv), HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Seeding failed with " + response.statusCode() + ": " + response.body());
+        }
+    }
+
+    private void scheduleQueries(ExecutorService workers, long start, long end) {
+        SplittableRandom random = new SplittableRandom(options.seed + 1);
+        double intervalNanos = 1e9 / options.queryRate;
+        for (long query = 0; !stopped; query++) {
+            long due = start + (long) (query * intervalNanos);
+            if (due - end >= 0) {
+                return;
+            }
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            boolean byId = random.nextDouble() < options.idLookupShare;
+            HttpRequest request = byId ? idLookup(random) : rangeQuery(random);
+            workers.execute(() -> send(byId ? idLookups : rangeQueries, request, due));
+        }
+    }
+
+    private HttpRequest idLookup(SplittableRandom random) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + "/users/s" + random.nextInt(options.seedRows)))
+                .timeout(QUERY_TIMEOUT)
+                .build();
+    }
+
+    private HttpRequest rangeQuery(SplittableRandom random) {
+        int minSalary = random.nextInt(Math.max(1, options.salaryMax - options.rangeWidth + 1));
+        String sort = options.sorts.get(random.nextInt(options.sorts.size()));
+        return HttpRequest.newBuilder(URI.create(baseUrl + "/users?minSalary=" + minSalary
+                        + "&maxSalary=" + (minSalary + options.rangeWidth)
+                        + "&limit=" + options.limit
+                        + "&sort=" + URLEncoder.encode(sort, StandardCharsets.UTF_8)))
+                .timeout(QUERY_TIMEOUT)
+                .build();
+    }
+
+    private void upload(int uploader, long end) {
+        SplittableRandom random = new SplittableRandom(options.seed + 2 + uploader);
+        for (int file = 0; !stopped && System.nanoTime() - end < 0; file++) {
+            String prefix = options.uploadReuseIds ? "u" + uploader + "-" : "u" + uploader + "-" + file + "-";
+            StringBuilder csv = new StringBuilder("id,login,name,salary\n");
+            for (int row = 0; row < options.uploadRows; row++) {
+                appendRow(csv, prefix + row, "login-" + prefix + row, random);
+            }
+            send(uploads, uploadRequest(csv), System.nanoTime());
+            if (options.uploadPause > 0) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(options.uploadPause));
+            }
+        }
+    }
+
+    private void appendRow(StringBuilder csv, String id, String login, SplittableRandom random) {
+        BigDecimal salary = BigDecimal.valueOf(random.nextLong(options.salaryMax * 100L + 1), 2);
+        csv.append(id).append(',').append(login).append(",Load ").append(id).append(',').append(salary).append('\n');
+    }
+
+    private HttpRequest uploadRequest(CharSequence csv) {
+        String body = "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"load.csv\"\r\n"
+                + "Content-Type: text/csv\r\n\r\n"
+                + csv + "\r\n"
+                + "--" + BOUNDARY + "--\r\n";
+        return HttpRequest.newBuilder(URI.create(baseUrl + "/users/upload"))
+                .header("Content-Type", "multipart/form-data; boundary=" + BOUNDARY)
+                .POST(HttpRequest.BodyPublishers.ofString(body, StandardCharsets.UTF_8))
+                .timeout(UPLOAD_TIMEOUT)
+                .build();
+    }
+
+    /**
+     * @param due {@link System#nanoTime()} the request was due at, which its latency is measured from
+     */
+    private void send(EndpointStats endpoint, HttpRequest request, long due) {
+        int status = 0;
+        try {
+            HttpResponse<String> response = client.send(request, ERROR_BODY);
+            status = response.statusCode();
+            if (status >= 400) {
+                endpoint.recordError(status, response.body());
+            }
+        } catch (IOException e) {
+            endpoint.recordError(0, e.toString());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        endpoint.record(System.nanoTime() - due, status);
+    }
+
+    private static ThreadFactory daemon(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name.endsWith("-") ? name + count.getAndIncrement() : name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,152 @@
+package com.topan.load;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Settings of one load run, given as {@code --name=value} arguments. Arguments the harness does not know, such as
+ * {@code --topan.threads.virtual=true}, are passed on to the embedded application.
+ */
+final class LoadOptions {
+
+    /**
+     * Base URL of an application that is already running; empty to boot one on an in-memory H2 database
+     */
+    final String target;
+    /**
+     * Measured seconds, after {@link #warmup} seconds whose samples only show up in the throughput curve
+     */
+    final int duration;
+    final int warmup;
+    /**
+     * Rows uploaded before the run, ids {@code s0} to {@code s<seedRows - 1>}, which the queries then look up
+     */
+    final int seedRows;
+
+    /**
+     * Threads that each upload a file, wait for the answer and upload the next one
+     */
+    final int uploaders;
+    final int uploadRows;
+    /**
+     * Milliseconds an uploader waits between two files
+     */
+    final long uploadPause;
+    /**
+     * Each uploader rewrites its own ids with new salaries instead of inserting fresh ones every file
+     */
+    final boolean uploadReuseIds;
+
+    /**
+     * Queries started per second, on schedule whether or not earlier ones have answered
+     */
+    final int queryRate;
+    /**
+     * Queries in flight at most; the ones due meanwhile wait, and their wait counts towards their latency
+     */
+    final int queryConcurrency;
+    /**
+     * Share of queries that are GET /users/{id} of a seeded row; the rest are GET /users salary ranges
+     */
+    final double idLookupShare;
+    /**
+     * Salaries are spread evenly over 0 to {@code salaryMax}; ranges of {@code rangeWidth} are queried
+     */
+    final int salaryMax;
+    final int rangeWidth;
+    final int limit;
+    final List<String> sorts;
+
+    final long seed;
+    final Path reportDir;
+    final List<String> applicationArgs;
+
+    private LoadOptions(Map<String, String> values, List<String> applicationArgs) {
+        this.target = take(values, "target", "");
+        this.duration = Integer.parseInt(take(values, "duration", "60"));
+        this.warmup = Integer.parseInt(take(values, "warmup", "10"));
+        this.seedRows = Integer.parseInt(take(values, "seed-rows", "100000"));
+        this.uploaders = Integer.parseInt(take(values, "uploaders", "2"));
+        this.uploadRows = Integer.parseInt(take(values, "upload-rows", "10000"));
+        this.uploadPause = Long.parseLong(take(values, "upload-pause", "0"));
+        this.uploadReuseIds = Boolean.parseBoolean(take(values, "upload-reuse-ids", "false"));
+        this.queryRate = Integer.parseInt(take(values, "query-rate", "200"));
+        this.queryConcurrency = Integer.parseInt(take(values, "query-concurrency", "64"));
+        this.idLookupShare = Double.parseDouble(take(values, "id-lookup-share", "0.2"));
+        this.salaryMax = Integer.parseInt(take(values, "salary-max", "100000"));
+        this.rangeWidth = Integer.parseInt(take(values, "range-width", "2000"));
+        this.limit = Integer.parseInt(take(values, "limit", "30"));
+        this.sorts = List.of(take(values, "sorts", "+id,+salary,-salary,+name").split(","));
+        this.seed = Long.parseLong(take(values, "seed", "42"));
+        this.reportDir = Path.of(take(values, "report-dir", "target/load"));
+        this.applicationArgs = applicationArgs;
+        if (!values.isEmpty()) {
+            throw new IllegalArgumentException("Unknown options " + values.keySet());
+        }
+        if (duration <= 0 || warmup < 0 || uploaders < 0 || uploadRows <= 0 || queryRate < 0 || queryConcurrency <= 0
+                || idLookupShare < 0 || idLookupShare > 1 || rangeWidth < 0 || salaryMax <= 0) {
+            throw new IllegalArgumentException("Out of range: " + String.join(" ", toArgs()));
+        }
+        if (idLookupShare > 0 && seedRows <= 0) {
+            throw new IllegalArgumentException("--id-lookup-share needs --seed-rows");
+        }
+    }
+
+    /**
+     * Harness options are the dashed lower-case names; anything with a dot in its name belongs to the application.
+     */
+    static LoadOptions parse(String[] args) {
+        Map<String, String> values = new LinkedHashMap<>();
+        List<String> applicationArgs = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.isBlank()) {
+                continue;
+            }
+            int equals = arg.indexOf('=');
+            if (!arg.startsWith("--") || equals < 0) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            String name = arg.substring(2, equals);
+            if (name.contains(".")) {
+                applicationArgs.add(arg);
+            } else {
+                values.put(name, arg.substring(equals + 1));
+            }
+        }
+        return new LoadOptions(values, List.copyOf(applicationArgs));
+    }
+
+    private static String take(Map<String, String> values, String name, String defaultValue) {
+        String value = values.remove(name);
+        return value == null ? defaultValue : value;
+    }
+
+    /**
+     * The settings in argument form, for the report header.
+     */
+    List<String> toArgs() {
+        List<String> args = new ArrayList<>(Arrays.asList(
+                "--target=" + target,
+                "--duration=" + duration,
+                "--warmup=" + warmup,
+                "--seed-rows=" + seedRows,
+                "--uploaders=" + uploaders,
+                "--upload-rows=" + uploadRows,
+                "--upload-pause=" + uploadPause,
+                "--upload-reuse-ids=" + uploadReuseIds,
+                "--query-rate=" + queryRate,
+                "--query-concurrency=" + queryConcurrency,
+                "--id-lookup-share=" + idLookupShare,
+                "--salary-max=" + salaryMax,
+                "--range-width=" + rangeWidth,
+                "--limit=" + limit,
+                "--sorts=" + String.join(",", sorts),
+                "--seed=" + seed));
+        args.addAll(applicationArgs);
+        return args;
+    }
+}
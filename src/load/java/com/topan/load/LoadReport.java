@@ -0,0 +1,126 @@
+package com.topan.load;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Writes the outcome of a run to the report directory:
+ * <ul>
+ *     <li>{@code summary.txt}: the settings and, per endpoint, throughput, p50/p90/p99/p99.9/max, and the error
+ *     answers by status and message</li>
+ *     <li>{@code <endpoint>.hgrm}: the full latency distribution in HdrHistogram's percentile format, in
+ *     milliseconds, which the HdrHistogram plotter reads</li>
+ *     <li>{@code throughput.csv}: the same figures for every second of the run, warmup included</li>
+ * </ul>
+ */
+final class LoadReport {
+
+    private static final double MICROS_PER_MILLI = 1000.0;
+
+    private final LoadOptions options;
+    private final List<EndpointStats> endpoints;
+
+    LoadReport(LoadOptions options, List<EndpointStats> endpoints) {
+        this.options = options;
+        this.endpoints = endpoints;
+    }
+
+    /**
+     * @return the summary, as written to {@code summary.txt}
+     */
+    String write() {
+        try {
+            Files.createDirectories(options.reportDir);
+            String summary = summary();
+            Files.writeString(options.reportDir.resolve("summary.txt"), summary);
+            for (EndpointStats endpoint : endpoints) {
+                try (PrintStream out = new PrintStream(
+                        Files.newOutputStream(options.reportDir.resolve(slug(endpoint.getName()) + ".hgrm")),
+                        false, StandardCharsets.UTF_8)) {
+                    endpoint.getTotal().outputPercentileDistribution(out, MICROS_PER_MILLI);
+                }
+            }
+            writeThroughput(options.reportDir.resolve("throughput.csv"));
+            return summary;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private String summary() {
+        StringBuilder summary = new StringBuilder();
+        summary.append(String.join(" ", options.toArgs())).append('\n');
+        summary.append(String.format(Locale.ROOT, "%-18s %9s %9s %9s %9s %9s %9s %9s %7s %7s %7s%n",
+                "endpoint", "requests", "req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms",
+                "4xx", "5xx", "failed"));
+        for (EndpointStats endpoint : endpoints) {
+            Histogram total = endpoint.getTotal();
+            summary.append(String.format(Locale.ROOT, "%-18s %9d %9.1f %9.2f %9.2f %9.2f %9.2f %9.2f %7d %7d %7d%n",
+                    endpoint.getName(), total.getTotalCount(), (double) total.getTotalCount() / options.duration,
+                    millis(total, 50), millis(total, 90), millis(total, 99), millis(total, 99.9),
+                    total.getMaxValue() / MICROS_PER_MILLI,
+                    endpoint.getTotal(EndpointStats.Outcome.CLIENT_ERROR),
+                    endpoint.getTotal(EndpointStats.Outcome.SERVER_ERROR),
+                    endpoint.getTotal(EndpointStats.Outcome.FAILED)));
+        }
+        for (EndpointStats endpoint : endpoints) {
+            endpoint.getErrors().forEach((error, count) ->
+                    summary.append(String.format(Locale.ROOT, "%-18s %9d x %s%n", endpoint.getName(), count, error)));
+        }
+        return summary.toString();
+    }
+
+    private void writeThroughput(Path file) throws IOException {
+        StringBuilder csv = new StringBuilder("second,endpoint,requests,ok,4xx,5xx,failed,p50_ms,p99_ms,max_ms\n");
+        for (EndpointStats endpoint : endpoints) {
+            for (EndpointStats.Interval interval : endpoint.getIntervals()) {
+                Histogram histogram = interval.histogram();
+                long[] outcomes = interval.outcomes();
+                csv.append(String.format(Locale.ROOT, "%d,%s,%d,%d,%d,%d,%d,%.2f,%.2f,%.2f%n",
+                        interval.second(), endpoint.getName(), histogram.getTotalCount(),
+                        outcomes[EndpointStats.Outcome.OK.ordinal()],
+                        outcomes[EndpointStats.Outcome.CLIENT_ERROR.ordinal()],
+                        outcomes[EndpointStats.Outcome.SERVER_ERROR.ordinal()],
+                        outcomes[EndpointStats.Outcome.FAILED.ordinal()],
+                        millis(histogram, 50), millis(histogram, 99), histogram.getMaxValue() / MICROS_PER_MILLI));
+            }
+        }
+        Files.writeString(file, csv);
+    }
+
+    /**
+     * A one-line view of the last second, printed while the run goes on.
+     */
+    static String progress(int second, List<EndpointStats> endpoints) {
+        StringBuilder line = new StringBuilder(String.format(Locale.ROOT, "%5ds", second));
+        for (EndpointStats endpoint : endpoints) {
+            List<EndpointStats.Interval> intervals = endpoint.getIntervals();
+            if (intervals.isEmpty()) {
+                continue;
+            }
+            Histogram last = intervals.get(intervals.size() - 1).histogram();
+            line.append(String.format(Locale.ROOT, "  %s %d/s p99 %.1f ms", endpoint.getName(), last.getTotalCount(),
+                    millis(last, 99)));
+        }
+        return line.toString();
+    }
+
+    private static double millis(Histogram histogram, double percentile) {
+        return histogram.getValueAtPercentile(percentile) / MICROS_PER_MILLI;
+    }
+
+    /**
+     * {@code GET /users/{id}} becomes {@code get-users-id}
+     */
+    private static String slug(String name) {
+        return name.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9]+", "-").replaceAll("^-|-$", "");
+    }
+}
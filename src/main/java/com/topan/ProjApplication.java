@@ -2,8 +2,10 @@ package com.topan;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcAutoConfiguration;
 
-@SpringBootApplication
+// A ConnectionFactory bean would make the JDBC DataSource back off; the reactive API builds its own, see ReactiveConfig
+@SpringBootApplication(exclude = R2dbcAutoConfiguration.class)
 public class ProjApplication {
 
     public static void main(String[] args) {
@@ -0,0 +1,38 @@
+package com.topan.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Lets the connections of the application's MySQL pools take part in {@code LOAD DATA LOCAL INFILE}, which
+ * {@code NativeUpsertEngine} stages uploads with. Only active with {@code topan.upload.engine=native} and
+ * {@code topan.upload.native.load-data=true}, which is off by default: otherwise the driver keeps refusing the
+ * server's requests for local files. The replica pools of {@link ReadReplicaConfig} are not beans and never get it.
+ * <p>
+ * Turning it on trusts the database server: the driver then sends whatever local file the server names in reply
+ * to a statement, not only the ones the engine streams, so a compromised or impersonated server can read any file
+ * the application can.
+ */
+@Configuration
+@ConditionalOnExpression("'${topan.upload.engine:jpa}' == 'native' and ${topan.upload.native.load-data:false}")
+public class NativeUpsertEngineConfig {
+
+    static final String ALLOW_LOAD_LOCAL_INFILE = "allowLoadLocalInfile";
+
+    @Bean
+    public static BeanPostProcessor allowLoadLocalInfile() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof HikariDataSource dataSource && dataSource.getJdbcUrl() != null
+                        && dataSource.getJdbcUrl().startsWith("jdbc:mysql:")) {
+                    dataSource.addDataSourceProperty(ALLOW_LOAD_LOCAL_INFILE, "true");
+                }
+                return bean;
+            }
+        };
+    }
+}
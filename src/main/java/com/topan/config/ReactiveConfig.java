@@ -0,0 +1,84 @@
+package com.topan.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.topan.web.ReactiveEmployeeHandler;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.ServletRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.http.server.reactive.HttpHandler;
+import org.springframework.http.server.reactive.TomcatHttpHandlerAdapter;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.web.reactive.function.server.HandlerStrategies;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+
+/**
+ * Opt-in reactive read API ({@code topan.reactive.enabled=true}) next to the servlet one: the routes of
+ * {@link ReactiveEmployeeHandler} are served under {@value #PATH} by the same Tomcat, through a servlet that uses
+ * non-blocking Servlet I/O, and query over R2DBC. A request waiting on the database or on a slow client holds no
+ * thread; concurrent queries are bounded by {@code topan.reactive.r2dbc.max-size} connections.
+ * <p>
+ * The connection pool is deliberately not a bean: a {@code ConnectionFactory} bean would make Spring Boot back off
+ * from the JDBC {@code DataSource} that JPA and the uploads use.
+ */
+@Configuration
+@ConditionalOnProperty(name = "topan.reactive.enabled", havingValue = "true")
+public class ReactiveConfig {
+
+    public static final String PATH = "/reactive";
+
+    private ConnectionPool connectionPool;
+
+    @Bean
+    public DatabaseClient reactiveDatabaseClient(
+            @Value("${topan.reactive.r2dbc.url}") String url,
+            @Value("${topan.reactive.r2dbc.username:${spring.datasource.username:}}") String username,
+            @Value("${topan.reactive.r2dbc.password:${spring.datasource.password:}}") String password,
+            @Value("${topan.reactive.r2dbc.max-size:20}") int maxSize) {
+        ConnectionFactoryOptions.Builder options = ConnectionFactoryOptions.parse(url).mutate();
+        if (!username.isEmpty()) {
+            options.option(ConnectionFactoryOptions.USER, username);
+            options.option(ConnectionFactoryOptions.PASSWORD, password);
+        }
+        connectionPool = new ConnectionPool(ConnectionPoolConfiguration.builder(ConnectionFactories.get(options.build()))
+                .initialSize(0)
+                .maxSize(maxSize)
+                .build());
+        return DatabaseClient.create(connectionPool);
+    }
+
+    @Bean
+    public ServletRegistrationBean<TomcatHttpHandlerAdapter> reactiveServlet(ReactiveEmployeeHandler handler,
+                                                                             ObjectMapper objectMapper) {
+        // Same JSON as the servlet API
+        HandlerStrategies strategies = HandlerStrategies.builder()
+                .codecs(codecs -> {
+                    codecs.defaultCodecs().jackson2JsonEncoder(new Jackson2JsonEncoder(objectMapper));
+                    codecs.defaultCodecs().jackson2JsonDecoder(new Jackson2JsonDecoder(objectMapper));
+                })
+                .build();
+        HttpHandler httpHandler = RouterFunctions.toHttpHandler(handler.routes(), strategies);
+
+        ServletRegistrationBean<TomcatHttpHandlerAdapter> registration =
+                new ServletRegistrationBean<>(new TomcatHttpHandlerAdapter(httpHandler), PATH + "/*");
+        registration.setName("reactive");
+        registration.setAsyncSupported(true);
+        registration.setLoadOnStartup(1);
+        return registration;
+    }
+
+    @PreDestroy
+    public void closeConnectionPool() {
+        if (connectionPool != null) {
+            connectionPool.dispose();
+        }
+    }
+}
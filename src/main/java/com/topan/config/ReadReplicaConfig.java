@@ -0,0 +1,83 @@
+package com.topan.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Opt-in read replicas ({@code topan.datasource.replicas.enabled=true}): read-only transactions, the queries of
+ * {@code EmployeeServiceImpl}, go to the databases in {@code topan.datasource.replicas.urls}, and everything else,
+ * uploads and updates included, to {@code spring.datasource}. See {@link ReadReplicaRoutingDataSource} for load
+ * balancing, failover and read-your-writes.
+ * <p>
+ * The application's {@code DataSource} is the routing one; the primary pool is still set up from
+ * {@code spring.datasource.*} as Spring Boot would, while the replica pools are not beans, so that nothing but the
+ * routing picks them up. Replicas need the schema already in place, {@code ddl-auto} only runs on the primary.
+ */
+@Configuration
+@ConditionalOnProperty(name = "topan.datasource.replicas.enabled", havingValue = "true")
+public class ReadReplicaConfig {
+
+    private final List<HikariDataSource> replicas = new ArrayList<>();
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(
+            @Qualifier("primaryDataSource") DataSource primary,
+            DataSourceProperties properties,
+            @Value("${topan.datasource.replicas.urls:}") List<String> urls,
+            @Value("${topan.datasource.replicas.username:${spring.datasource.username:}}") String username,
+            @Value("${topan.datasource.replicas.password:${spring.datasource.password:}}") String password,
+            @Value("${topan.datasource.replicas.maximum-pool-size:20}") int maximumPoolSize,
+            @Value("${topan.datasource.replicas.connection-timeout:PT1S}") Duration connectionTimeout,
+            @Value("${topan.datasource.replicas.retry-interval:PT10S}") Duration retryInterval) {
+        for (String url : urls) {
+            if (url.isBlank()) {
+                continue;
+            }
+            HikariDataSource replica = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .url(url.strip())
+                    .driverClassName(properties.getDriverClassName())
+                    .username(username.isEmpty() ? null : username)
+                    .password(username.isEmpty() ? null : password)
+                    .build();
+            replica.setPoolName("replica-" + replicas.size());
+            replica.setMaximumPoolSize(maximumPoolSize);
+            replica.setConnectionTimeout(connectionTimeout.toMillis());
+            replica.setReadOnly(true);
+            // A replica that is down at startup is skipped like one that goes down later
+            replica.setInitializationFailTimeout(-1);
+            replicas.add(replica);
+        }
+        if (replicas.isEmpty()) {
+            throw new IllegalStateException("topan.datasource.replicas.enabled=true needs topan.datasource.replicas.urls");
+        }
+        return new LazyConnectionDataSourceProxy(new ReadReplicaRoutingDataSource(primary, replicas, retryInterval));
+    }
+
+    @PreDestroy
+    public void closeReplicas() {
+        replicas.forEach(HikariDataSource::close);
+    }
+}
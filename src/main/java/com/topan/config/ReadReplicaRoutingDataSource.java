@@ -0,0 +1,146 @@
+package com.topan.config;
+
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+/**
+ * Hands out connections to the replicas for read-only transactions and to the primary for everything else. Meant
+ * to sit behind a {@link LazyConnectionDataSourceProxy}, so that the connection is only fetched at the first
+ * statement, once the transaction and its read-only flag are in place.
+ * <ul>
+ *     <li>Replicas take turns, round robin.</li>
+ *     <li>A replica that fails to hand out a connection is skipped for {@code retryInterval}, after which the next
+ *     read tries it again; with every replica down, reads go to the primary. Statements that fail on a connection
+ *     already handed out are not retried elsewhere.</li>
+ *     <li>Once an HTTP request has fetched a primary connection, for a write or an update, its later reads go to
+ *     the primary as well, so that it reads its own writes whatever the replication lag.</li>
+ * </ul>
+ */
+public class ReadReplicaRoutingDataSource extends AbstractDataSource {
+
+    private static final String PINNED_ATTRIBUTE = ReadReplicaRoutingDataSource.class.getName() + ".PINNED";
+
+    private final DataSource primary;
+    private final List<Replica> replicas;
+    private final long retryIntervalNanos;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ReadReplicaRoutingDataSource(DataSource primary, List<? extends DataSource> replicas, Duration retryInterval) {
+        this.primary = primary;
+        this.replicas = IntStream.range(0, replicas.size())
+                .mapToObj(i -> new Replica(i, replicas.get(i)))
+                .toList();
+        this.retryIntervalNanos = retryInterval.toNanos();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (routeToReplica()) {
+            Connection connection = getReplicaConnection();
+            if (connection != null) {
+                return connection;
+            }
+        } else {
+            pinRequest();
+        }
+        return primary.getConnection();
+    }
+
+    /**
+     * Connections for other credentials always come from the primary, as the replica pools only hold the
+     * configured ones.
+     */
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        pinRequest();
+        return primary.getConnection(username, password);
+    }
+
+    /**
+     * @return the number of replicas currently taking reads
+     */
+    public int getAvailableReplicas() {
+        long now = System.nanoTime();
+        return (int) replicas.stream().filter(replica -> replica.isAvailable(now)).count();
+    }
+
+    private boolean routeToReplica() {
+        if (replicas.isEmpty() || !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return false;
+        }
+        RequestAttributes request = RequestContextHolder.getRequestAttributes();
+        return request == null || request.getAttribute(PINNED_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) == null;
+    }
+
+    private static void pinRequest() {
+        RequestAttributes request = RequestContextHolder.getRequestAttributes();
+        if (request != null) {
+            request.setAttribute(PINNED_ATTRIBUTE, Boolean.TRUE, RequestAttributes.SCOPE_REQUEST);
+        }
+    }
+
+    /**
+     * Tries each available replica once, starting at the next in turn.
+     *
+     * @return null when none of them hands out a connection
+     */
+    private Connection getReplicaConnection() {
+        int first = Math.floorMod(next.getAndIncrement(), replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get((first + i) % replicas.size());
+            if (!replica.tryUse(System.nanoTime())) {
+                continue;
+            }
+            try {
+                Connection connection = replica.dataSource.getConnection();
+                replica.downSince.set(0);
+                return connection;
+            } catch (SQLException e) {
+                logger.warn("Replica " + replica.index + " is unavailable, skipping it for "
+                        + Duration.ofNanos(retryIntervalNanos) + ": " + e.getMessage());
+                replica.downSince.set(System.nanoTime());
+            }
+        }
+        return null;
+    }
+
+    private final class Replica {
+        private final int index;
+        private final DataSource dataSource;
+        /**
+         * {@link System#nanoTime()} of the last failure or retry, 0 while the replica is up
+         */
+        private final AtomicLong downSince = new AtomicLong();
+
+        Replica(int index, DataSource dataSource) {
+            this.index = index;
+            this.dataSource = dataSource;
+        }
+
+        boolean isAvailable(long now) {
+            long since = downSince.get();
+            return since == 0 || now - since >= retryIntervalNanos;
+        }
+
+        /**
+         * Once the retry interval of a replica that is down has passed, only one caller gets to try it; the others
+         * keep skipping it rather than all waiting on its connection timeout.
+         */
+        boolean tryUse(long now) {
+            long since = downSince.get();
+            return since == 0 || (now - since >= retryIntervalNanos && downSince.compareAndSet(since, now));
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.topan.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+@Configuration
+public class UploadConfig {
+
+    /**
+     * Runs asynchronous uploads off the servlet threads. The pool and queue are bounded so that background
+     * uploads can never take more than {@code topan.upload.async.threads} database connections away from the
+     * query endpoints. In virtual-thread mode the same bounds apply to virtual threads.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public TaskExecutor uploadExecutor(@Value("${topan.upload.async.threads:2}") int threads,
+                                       @Value("${topan.upload.async.queue-capacity:16}") int queueCapacity,
+                                       @Value("${topan.threads.virtual:false}") boolean virtualThreads) {
+        if (virtualThreads) {
+            return new VirtualThreadTaskExecutor("upload-", threads, queueCapacity);
+        }
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("upload-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Parses and validates chunks of large uploads in parallel, see {@code ParallelCsvValidator}.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ForkJoinPool uploadParsePool(@Value("${topan.upload.parallel.threads:0}") int threads) {
+        return new ForkJoinPool(threads > 0 ? threads : Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Runs the parse and validate stages of pipelined uploads, two threads per upload in flight, see
+     * {@code UploadPipeline}. Unbounded, as the uploads themselves are bounded by the request and upload threads.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService uploadPipelineExecutor() {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("upload-pipeline-");
+        threadFactory.setDaemon(true);
+        return Executors.newCachedThreadPool(threadFactory);
+    }
+}
@@ -0,0 +1,74 @@
+package com.topan.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.time.Duration;
+
+/**
+ * Opt-in virtual-thread mode ({@code topan.threads.virtual=true}, JDK 21+ runtime): Tomcat handles every request
+ * on a virtual thread of its own instead of its fixed worker pool, and so do streamed responses. A request blocked
+ * on JDBC then holds no platform thread, and the number of queries in flight is bounded by the Hikari pool
+ * rather than by the thread count, see {@link #virtualThreadPoolSizing}. Upload jobs move to a {@link VirtualThreadTaskExecutor}, see
+ * {@link UploadConfig#uploadExecutor}.
+ */
+@Configuration
+@ConditionalOnProperty(name = "topan.threads.virtual", havingValue = "true")
+public class VirtualThreadConfig implements WebMvcConfigurer {
+
+    /**
+     * Sizes the application's Hikari pools from {@code topan.threads.virtual.maximum-pool-size} and
+     * {@code connection-timeout} unless {@code spring.datasource.hikari.*} sets them. Without a worker pool in front
+     * of it, the connection pool is the only bound on concurrent queries, and requests beyond it should fail after
+     * the timeout rather than pile up. The replica pools of {@link ReadReplicaConfig} have settings of their own.
+     */
+    @Bean
+    public static BeanPostProcessor virtualThreadPoolSizing(Environment environment) {
+        Integer maximumPoolSize = environment.containsProperty("spring.datasource.hikari.maximum-pool-size") ? null
+                : environment.getProperty("topan.threads.virtual.maximum-pool-size", Integer.class, 20);
+        Duration connectionTimeout = environment.containsProperty("spring.datasource.hikari.connection-timeout") ? null
+                : environment.getProperty("topan.threads.virtual.connection-timeout", Duration.class, Duration.ofSeconds(5));
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof HikariDataSource dataSource) {
+                    if (maximumPoolSize != null) {
+                        dataSource.setMaximumPoolSize(maximumPoolSize);
+                    }
+                    if (connectionTimeout != null) {
+                        dataSource.setConnectionTimeout(connectionTimeout.toMillis());
+                    }
+                }
+                return bean;
+            }
+        };
+    }
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+        SimpleAsyncTaskExecutor executor = virtualThreadExecutor("http-");
+        return protocolHandler -> protocolHandler.setExecutor(executor);
+    }
+
+    /**
+     * {@code StreamingResponseBody} and other async results are written from this executor.
+     */
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(virtualThreadExecutor("mvc-async-"));
+    }
+
+    private static SimpleAsyncTaskExecutor virtualThreadExecutor(String threadNamePrefix) {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor();
+        executor.setThreadFactory(VirtualThreads.factory(threadNamePrefix));
+        return executor;
+    }
+}
@@ -0,0 +1,54 @@
+package com.topan.config;
+
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Runs each task on a virtual thread of its own, with the limits of a bounded pool: at most {@code concurrency}
+ * tasks run at once, at most {@code queueCapacity} more wait for a slot, and anything beyond that is rejected with
+ * {@link TaskRejectedException}. Waiting tasks park their virtual thread, which costs no platform thread.
+ */
+public class VirtualThreadTaskExecutor implements TaskExecutor {
+
+    private final ThreadFactory threadFactory;
+    private final Semaphore admitted;
+    private final Semaphore running;
+    private volatile boolean shutdown;
+
+    public VirtualThreadTaskExecutor(String threadNamePrefix, int concurrency, int queueCapacity) {
+        this.threadFactory = VirtualThreads.factory(threadNamePrefix);
+        this.admitted = new Semaphore(concurrency + queueCapacity);
+        this.running = new Semaphore(concurrency, true);
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (shutdown || !admitted.tryAcquire()) {
+            throw new TaskRejectedException("Executor is " + (shutdown ? "shut down" : "at capacity"));
+        }
+        threadFactory.newThread(() -> {
+            try {
+                running.acquire();
+                try {
+                    task.run();
+                } finally {
+                    running.release();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                admitted.release();
+            }
+        }).start();
+    }
+
+    /**
+     * Stops taking tasks; running ones finish on their own.
+     */
+    public void shutdown() {
+        shutdown = true;
+    }
+}
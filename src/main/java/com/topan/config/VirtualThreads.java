@@ -0,0 +1,32 @@
+package com.topan.config;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates virtual threads on a JDK 21+ runtime while the code is still compiled for Java 17, so that the same
+ * build runs in either thread mode. The tests of this mode skip themselves on JDK 17; the {@code virtual-threads}
+ * Maven profile runs them on JDK 21 as well, as CI does.
+ */
+final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * @param prefix thread name prefix, followed by a sequence number
+     * @throws IllegalStateException when the runtime has no virtual threads
+     */
+    static ThreadFactory factory(String prefix) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            Method name = builderType.getMethod("name", String.class, long.class);
+            builder = name.invoke(builder, prefix, 0L);
+            return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("topan.threads.virtual=true needs a JDK 21 or newer runtime, this is "
+                    + Runtime.version(), e);
+        }
+    }
+}
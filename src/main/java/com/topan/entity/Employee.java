@@ -1,17 +1,27 @@
 package com.topan.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
-import lombok.AllArgsConstructor;
+import jakarta.persistence.Index;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import jakarta.persistence.Table;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 
 import java.math.BigDecimal;
 
 @Entity
+@Table(indexes = {
+        // Salary range listing, ordered by salary with id as tie breaker
+        @Index(name = "idx_employee_salary_id", columnList = "salary, id"),
+        @Index(name = "idx_employee_login", columnList = "login")
+})
 @Data
 @NoArgsConstructor
-@AllArgsConstructor
 public class Employee {
 
     @Id
@@ -23,5 +33,52 @@ public class Employee {
 
     private BigDecimal salary;
 
-}
+    /**
+     * {@link #fingerprint(String, String, BigDecimal)} of the stored login, name and salary, maintained on every
+     * write so uploads can skip rows that would not change. Null for rows written before it existed.
+     */
+    @JsonIgnore
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private Long fingerprint;
+
+    public Employee(String id, String login, String name, BigDecimal salary) {
+        this.id = id;
+        this.login = login;
+        this.name = name;
+        this.salary = salary;
+    }
+
+    @PrePersist
+    @PreUpdate
+    void updateFingerprint() {
+        fingerprint = fingerprint(login, name, salary);
+    }
 
+    /**
+     * 64-bit FNV-1a hash of the content columns, with the salary compared by value (5000.0 and 5000.00 match).
+     */
+    public static long fingerprint(String login, String name, BigDecimal salary) {
+        long h = 0xcbf29ce484222325L;
+        h = hash(h, login);
+        h = hash(h, name);
+        h = hash(h, salary == null ? null : salary.stripTrailingZeros().toPlainString());
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static long hash(long h, String value) {
+        if (value != null) {
+            for (int i = 0; i < value.length(); i++) {
+                h ^= value.charAt(i);
+                h *= 0x100000001b3L;
+            }
+        }
+        // Field terminator, distinct for null, so that ("ab", "c") and ("a", "bc") differ
+        h ^= value == null ? 0x10000 : 0x10001;
+        h *= 0x100000001b3L;
+        return h;
+    }
+}
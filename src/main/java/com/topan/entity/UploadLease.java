@@ -0,0 +1,40 @@
+package com.topan.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Row of the cluster-wide upload lease table: one range of employee ids held by one upload. Only mapped so the schema is managed with the rest of the model;
+ * reads and writes go through plain JDBC in {@code JdbcLeaseRegistry}.
+ */
+@Entity
+@Table(name = "upload_lease")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadLease {
+
+    @Id
+    @Column(name = "lease_key", length = 64)
+    private String leaseKey;
+
+    @Column(nullable = false, length = 128)
+    private String owner;
+
+    @Column(name = "first_id", nullable = false)
+    private String firstId;
+
+    @Column(name = "last_id", nullable = false)
+    private String lastId;
+
+    /**
+     * Epoch millis, so that expiry comparisons behave the same on every database.
+     */
+    @Column(name = "expires_at", nullable = false)
+    private long expiresAt;
+}
@@ -0,0 +1,7 @@
+package com.topan.repository;
+
+/**
+ * Id and stored {@code Employee.fingerprint} of one row, read without loading the entity.
+ */
+public record EmployeeFingerprint(String id, Long fingerprint) {
+}
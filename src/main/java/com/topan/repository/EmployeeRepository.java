@@ -2,14 +2,44 @@ package com.topan.repository;
 
 
 import com.topan.entity.Employee;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.AvailableHints;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 
-public interface EmployeeRepository extends JpaRepository<Employee, String> {
+public interface EmployeeRepository extends JpaRepository<Employee, String>, EmployeeRepositoryCustom {
     boolean existsByLogin(String login);
+    @Transactional(readOnly = true)
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_READ_ONLY, value = "true"))
     List<Employee> findBySalaryBetween(BigDecimal minSalary, BigDecimal maxSalary, Pageable pageable);
 
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_READ_ONLY, value = "true"))
+    List<Employee> findByIdGreaterThan(String id, Pageable pageable);
+
+    /**
+     * Fingerprints of the rows among {@code ids} that exist, in one query and without loading entities.
+     */
+    @Query("select new com.topan.repository.EmployeeFingerprint(e.id, e.fingerprint) from Employee e where e.id in :ids")
+    List<EmployeeFingerprint> findFingerprintsByIdIn(@Param("ids") Collection<String> ids);
+
+    /**
+     * The ids among {@code ids} that exist, answered from the primary key alone.
+     */
+    @Query("select e.id from Employee e where e.id in :ids")
+    List<String> findExistingIds(@Param("ids") Collection<String> ids);
+
+    /**
+     * The logins among {@code logins} that are taken, answered from the login index alone; a login held by
+     * several rows is listed once per row.
+     */
+    @Query("select e.login from Employee e where e.login in :logins")
+    List<String> findExistingLogins(@Param("logins") Collection<String> logins);
 }
@@ -0,0 +1,56 @@
+package com.topan.repository;
+
+import com.topan.entity.Employee;
+import jakarta.persistence.Tuple;
+import org.springframework.data.domain.Sort;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Queries that derived query methods cannot express, implemented in {@link EmployeeRepositoryImpl}.
+ */
+public interface EmployeeRepositoryCustom {
+
+    /**
+     * Keyset (seek) page of the salary range: the rows ordered by {@code order} and then by id in the same
+     * direction, starting strictly after the row with sort value {@code afterValue} and id {@code afterId}. Nulls
+     * sort below every value, as MySQL and H2 order them.
+     *
+     * @param afterValue sort value of the last row of the previous page, null when that row has none
+     * @param afterId    id of the last row of the previous page, or null for the first page
+     */
+    List<Employee> findBySalaryBetweenAfter(BigDecimal minSalary, BigDecimal maxSalary, Sort.Order order,
+                                            Comparable<?> afterValue, String afterId, int limit);
+
+    /**
+     * Read-only projection of the salary range that fetches only the given columns, plus the sort key and id,
+     * as tuples aliased by field name. Pages by keyset when {@code afterId} is set and by {@code firstResult}
+     * otherwise.
+     *
+     * @param fields entity attributes to select
+     */
+    List<Tuple> findFieldsBySalaryBetween(BigDecimal minSalary, BigDecimal maxSalary, Collection<String> fields,
+                                          Sort.Order order, Comparable<?> afterValue, String afterId,
+                                          int firstResult, int limit);
+
+    /**
+     * Read-only, forward-only stream of one offset page of the salary range, ordered by {@code order} and then by
+     * id. Rows are fetched from the database in batches and detached as they are consumed, so memory does not
+     * grow with {@code limit}. Must be consumed and closed inside a transaction.
+     */
+    Stream<Employee> streamBySalaryBetween(BigDecimal minSalary, BigDecimal maxSalary, Sort.Order order,
+                                           int firstResult, int limit);
+
+    /**
+     * Streams every employee in id order, optionally limited to a salary range, for bulk export. Rows are built
+     * by a constructor projection, so they never enter the persistence context. Must be consumed and closed
+     * inside a transaction.
+     *
+     * @param minSalary lower bound, or null for none
+     * @param maxSalary upper bound, or null for none
+     */
+    Stream<Employee> streamAll(BigDecimal minSalary, BigDecimal maxSalary);
+}
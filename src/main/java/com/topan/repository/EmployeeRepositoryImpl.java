@@ -0,0 +1,169 @@
+package com.topan.repository;
+
+import com.topan.entity.Employee;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Order;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.jpa.AvailableHints;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+@RequiredArgsConstructor(onConstructor = @__(@Autowired))
+public class EmployeeRepositoryImpl implements EmployeeRepositoryCustom {
+
+    /**
+     * Rows per round trip when streaming; with {@code useCursorFetch=true} MySQL honours it through a server-side
+     * cursor instead of buffering the whole result in the driver.
+     */
+    static final int STREAM_FETCH_SIZE = 1000;
+
+    private final EntityManager entityManager;
+
+    @Override
+    public List<Employee> findBySalaryBetweenAfter(BigDecimal minSalary, BigDecimal maxSalary, Sort.Order order,
+                                                   Comparable<?> afterValue, String afterId, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Employee> query = cb.createQuery(Employee.class);
+        Root<Employee> employee = query.from(Employee.class);
+
+        query.select(employee)
+                .where(salaryRangeAfter(cb, employee, minSalary, maxSalary, order, afterValue, afterId))
+                .orderBy(orderBy(cb, employee, order));
+
+        return entityManager.createQuery(query)
+                .setHint(AvailableHints.HINT_READ_ONLY, true)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    @Override
+    public List<Tuple> findFieldsBySalaryBetween(BigDecimal minSalary, BigDecimal maxSalary, Collection<String> fields,
+                                                 Sort.Order order, Comparable<?> afterValue, String afterId,
+                                                 int firstResult, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<Employee> employee = query.from(Employee.class);
+
+        // The sort key and id are always selected so the caller can build the next cursor
+        Set<String> columns = new LinkedHashSet<>(fields);
+        columns.add(order.getProperty());
+        columns.add("id");
+        List<Selection<?>> selections = new ArrayList<>(columns.size());
+        for (String column : columns) {
+            selections.add(employee.get(column).alias(column));
+        }
+
+        query.multiselect(selections)
+                .where(salaryRangeAfter(cb, employee, minSalary, maxSalary, order, afterValue, afterId))
+                .orderBy(orderBy(cb, employee, order));
+
+        return entityManager.createQuery(query)
+                .setFirstResult(firstResult)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    @Override
+    public Stream<Employee> streamBySalaryBetween(BigDecimal minSalary, BigDecimal maxSalary, Sort.Order order,
+                                                  int firstResult, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Employee> query = cb.createQuery(Employee.class);
+        Root<Employee> employee = query.from(Employee.class);
+
+        query.select(employee)
+                .where(salaryRangeAfter(cb, employee, minSalary, maxSalary, order, null, null))
+                .orderBy(orderBy(cb, employee, order));
+
+        Stream<Employee> employees = entityManager.createQuery(query)
+                .setHint(AvailableHints.HINT_READ_ONLY, true)
+                .setHint(AvailableHints.HINT_FETCH_SIZE, STREAM_FETCH_SIZE)
+                .setFirstResult(firstResult)
+                .setMaxResults(limit)
+                .getResultStream();
+        // Keep the persistence context empty whatever the number of rows
+        return employees.peek(entityManager::detach);
+    }
+
+    @Override
+    public Stream<Employee> streamAll(BigDecimal minSalary, BigDecimal maxSalary) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Employee> query = cb.createQuery(Employee.class);
+        Root<Employee> employee = query.from(Employee.class);
+
+        List<Predicate> where = new ArrayList<>(2);
+        if (minSalary != null) {
+            where.add(cb.greaterThanOrEqualTo(employee.get("salary"), minSalary));
+        }
+        if (maxSalary != null) {
+            where.add(cb.lessThanOrEqualTo(employee.get("salary"), maxSalary));
+        }
+        query.select(cb.construct(Employee.class,
+                        employee.get("id"), employee.get("login"), employee.get("name"), employee.get("salary")))
+                .where(where.toArray(new Predicate[0]))
+                .orderBy(cb.asc(employee.get("id")));
+
+        return entityManager.createQuery(query)
+                .setHint(AvailableHints.HINT_FETCH_SIZE, STREAM_FETCH_SIZE)
+                .getResultStream();
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Predicate salaryRangeAfter(CriteriaBuilder cb, Root<Employee> employee, BigDecimal minSalary,
+                                              BigDecimal maxSalary, Sort.Order order, Comparable<?> afterValue,
+                                              String afterId) {
+        Predicate where = cb.between(employee.get("salary"), minSalary, maxSalary);
+        if (afterId == null) {
+            return where;
+        }
+
+        boolean ascending = order.isAscending();
+        Expression<String> id = employee.get("id");
+        Predicate seek;
+        if ("id".equals(order.getProperty())) {
+            seek = ascending ? cb.greaterThan(id, afterId) : cb.lessThan(id, afterId);
+        } else {
+            Expression<Comparable> sortKey = employee.get(order.getProperty());
+            Comparable value = afterValue;
+            Predicate afterIdInTie = ascending ? cb.greaterThan(id, afterId) : cb.lessThan(id, afterId);
+            // Nulls sort below every value, as on MySQL and H2
+            if (value == null) {
+                seek = ascending ? cb.or(cb.isNotNull(sortKey), cb.and(cb.isNull(sortKey), afterIdInTie))
+                        : cb.and(cb.isNull(sortKey), afterIdInTie);
+            } else {
+                // (key, id) > (value, afterId), spelled out because row-value comparison is not portable
+                seek = cb.or(
+                        ascending ? cb.greaterThan(sortKey, value) : cb.lessThan(sortKey, value),
+                        cb.and(cb.equal(sortKey, value), afterIdInTie));
+                if (!ascending) {
+                    seek = cb.or(seek, cb.isNull(sortKey));
+                }
+            }
+        }
+        return cb.and(where, seek);
+    }
+
+    private static List<Order> orderBy(CriteriaBuilder cb, Root<Employee> employee, Sort.Order order) {
+        boolean ascending = order.isAscending();
+        Expression<?> id = employee.get("id");
+        if ("id".equals(order.getProperty())) {
+            return List.of(ascending ? cb.asc(id) : cb.desc(id));
+        }
+        Expression<?> sortKey = employee.get(order.getProperty());
+        return List.of(ascending ? cb.asc(sortKey) : cb.desc(sortKey), ascending ? cb.asc(id) : cb.desc(id));
+    }
+}
@@ -0,0 +1,73 @@
+package com.topan.repository;
+
+import com.topan.entity.Employee;
+import io.r2dbc.spi.Readable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Sort;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.util.Set;
+
+/**
+ * R2DBC counterpart of the read queries of {@link EmployeeRepository}, for the reactive API. Rows are emitted as
+ * the driver decodes them and only as fast as the subscriber requests them; nothing is collected into a list.
+ */
+@Repository
+@ConditionalOnProperty(name = "topan.reactive.enabled", havingValue = "true")
+public class ReactiveEmployeeRepository {
+
+    private static final String COLUMNS = "SELECT id, login, name, salary, fingerprint FROM employee";
+    /**
+     * Sortable properties, which are also the column names
+     */
+    private static final Set<String> SORTABLE = Set.of("id", "login", "name", "salary");
+
+    private final DatabaseClient databaseClient;
+
+    @Autowired
+    public ReactiveEmployeeRepository(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    public Mono<Employee> findById(String id) {
+        return databaseClient.sql(COLUMNS + " WHERE id = :id")
+                .bind("id", id)
+                .map(ReactiveEmployeeRepository::toEmployee)
+                .one();
+    }
+
+    /**
+     * Same rows and order as {@link EmployeeRepositoryCustom#streamBySalaryBetween}: ordered by {@code order}, then
+     * by id in the same direction.
+     */
+    public Flux<Employee> findBySalaryBetween(BigDecimal minSalary, BigDecimal maxSalary, Sort.Order order,
+                                              long firstResult, int limit) {
+        if (!SORTABLE.contains(order.getProperty())) {
+            return Flux.error(new IllegalArgumentException("Cannot sort by " + order.getProperty()));
+        }
+        String direction = order.isAscending() ? " ASC" : " DESC";
+        String orderBy = "id".equals(order.getProperty()) ? "id" + direction
+                : order.getProperty() + direction + ", id" + direction;
+
+        return databaseClient.sql(COLUMNS + " WHERE salary BETWEEN :minSalary AND :maxSalary ORDER BY " + orderBy
+                        + " LIMIT :limit OFFSET :offset")
+                .bind("minSalary", minSalary)
+                .bind("maxSalary", maxSalary)
+                .bind("limit", limit)
+                .bind("offset", firstResult)
+                .map(ReactiveEmployeeRepository::toEmployee)
+                .all();
+    }
+
+    private static Employee toEmployee(Readable row) {
+        Employee employee = new Employee(row.get("id", String.class), row.get("login", String.class),
+                row.get("name", String.class), row.get("salary", BigDecimal.class));
+        employee.setFingerprint(row.get("fingerprint", Long.class));
+        return employee;
+    }
+}
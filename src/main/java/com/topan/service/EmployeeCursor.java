@@ -0,0 +1,91 @@
+package com.topan.service;
+
+import com.topan.entity.Employee;
+import org.springframework.data.domain.Sort;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.util.Base64;
+import java.util.Set;
+
+/**
+ * Position after the last row of a keyset page, handed to clients as an opaque token.
+ * <p>
+ * The token carries the sort it was issued for, so that it cannot be replayed against a different ordering.
+ *
+ * @param property sort field
+ * @param value    sort value of the last row, null when that row has none
+ * @param id       id of the last row, the tie breaker
+ */
+public record EmployeeCursor(String property, Sort.Direction direction, Comparable<?> value, String id) {
+
+    /**
+     * Fields that can be used with keyset pagination.
+     */
+    public static final Set<String> SORTABLE = Set.of("id", "login", "name", "salary");
+
+    /**
+     * 2 added the null marker of the sort value
+     */
+    private static final int VERSION = 2;
+
+    public static EmployeeCursor after(Employee last, Sort.Order order) {
+        Comparable<?> value = switch (order.getProperty()) {
+            case "login" -> last.getLogin();
+            case "name" -> last.getName();
+            case "salary" -> last.getSalary();
+            default -> last.getId();
+        };
+        return new EmployeeCursor(order.getProperty(), order.getDirection(), value, last.getId());
+    }
+
+    public String encode() {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(VERSION);
+            out.writeUTF(property);
+            out.writeBoolean(direction.isAscending());
+            out.writeBoolean(value != null);
+            if (value != null) {
+                out.writeUTF(value instanceof BigDecimal decimal ? decimal.toPlainString() : value.toString());
+            }
+            out.writeUTF(id);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException when the token is malformed
+     */
+    public static EmployeeCursor decode(String token) {
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(Base64.getUrlDecoder().decode(token)));
+            if (in.readByte() != VERSION) {
+                throw new IllegalArgumentException("Unsupported cursor version");
+            }
+            String property = in.readUTF();
+            if (!SORTABLE.contains(property)) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            Sort.Direction direction = in.readBoolean() ? Sort.Direction.ASC : Sort.Direction.DESC;
+            String value = in.readBoolean() ? in.readUTF() : null;
+            String id = in.readUTF();
+            return new EmployeeCursor(property, direction,
+                    value != null && "salary".equals(property) ? new BigDecimal(value) : value, id);
+        } catch (IOException | NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+
+    public boolean matches(Sort.Order order) {
+        return property.equals(order.getProperty()) && direction == order.getDirection();
+    }
+}
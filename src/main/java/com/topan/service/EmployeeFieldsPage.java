@@ -0,0 +1,12 @@
+package com.topan.service;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One page of a sparse-fieldset listing: each row maps the requested field names to their values.
+ *
+ * @param nextCursor token for the following keyset page, or null when not paging by keyset or at the end
+ */
+public record EmployeeFieldsPage(List<Map<String, Object>> rows, String nextCursor) {
+}
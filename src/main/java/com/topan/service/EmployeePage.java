@@ -0,0 +1,13 @@
+package com.topan.service;
+
+import com.topan.entity.Employee;
+
+import java.util.List;
+
+/**
+ * One keyset page of employees.
+ *
+ * @param nextCursor token for the following page, or null when this is the last one
+ */
+public record EmployeePage(List<Employee> employees, String nextCursor) {
+}
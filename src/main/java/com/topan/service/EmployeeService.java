@@ -5,6 +5,7 @@ import org.springframework.http.ResponseEntity;
 
 import java.math.BigDecimal;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface EmployeeService {
     void saveEmployees(List<Employee> employees);
@@ -23,5 +24,39 @@ public interface EmployeeService {
 
     List<Employee> getEmployees(BigDecimal minSalary, BigDecimal maxSalary, int offset, int limit, String sort);
 
+    /**
+     * Keyset variant of {@link #getEmployees}: seeks past {@code cursor} instead of skipping pages.
+     *
+     * @param cursor token from the previous page, or empty for the first page
+     * @throws IllegalArgumentException for an unknown sort field or a cursor issued for another sort
+     */
+    EmployeePage getEmployeesAfter(BigDecimal minSalary, BigDecimal maxSalary, int limit, String sort, String cursor);
+
+    /**
+     * Read-only listing that fetches and returns only {@code fields}; pages by keyset when {@code cursor} is not
+     * null and by {@code offset} otherwise.
+     *
+     * @throws IllegalArgumentException for an unknown field, an unknown sort field or a mismatched cursor
+     */
+    EmployeeFieldsPage getEmployeeFields(BigDecimal minSalary, BigDecimal maxSalary, int offset, int limit, String sort,
+                                         String cursor, List<String> fields);
+
+    /**
+     * Same rows as {@link #getEmployees}, handed to {@code action} one at a time as they are read from the
+     * database instead of being collected, for pages too large to hold in memory.
+     *
+     * @throws IllegalArgumentException for an unknown sort field
+     */
+    void streamEmployees(BigDecimal minSalary, BigDecimal maxSalary, int offset, int limit, String sort,
+                         Consumer<Employee> action);
+
+    /**
+     * Hands every employee, optionally within a salary range, to {@code action} in id order.
+     *
+     * @param minSalary lower bound, or null for none
+     * @param maxSalary upper bound, or null for none
+     */
+    void exportEmployees(BigDecimal minSalary, BigDecimal maxSalary, Consumer<Employee> action);
+
 
 }
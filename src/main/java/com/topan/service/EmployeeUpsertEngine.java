@@ -0,0 +1,21 @@
+package com.topan.service;
+
+import com.topan.entity.Employee;
+
+import java.util.List;
+
+/**
+ * Writes validated upload rows to the database. Called once per batch from inside the upload transaction,
+ * so implementations must not commit on their own.
+ */
+public interface EmployeeUpsertEngine {
+
+    /**
+     * Inserts the rows whose id is unknown and overwrites login, name and salary of the others, skipping rows
+     * whose content would not change.
+     *
+     * @param employees batch of rows with distinct ids
+     * @return how many rows were inserted, updated and left unchanged
+     */
+    UpsertCounts upsert(List<Employee> employees);
+}
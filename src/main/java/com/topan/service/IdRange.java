@@ -0,0 +1,12 @@
+package com.topan.service;
+
+/**
+ * Inclusive range of employee ids, ordered by {@link String#compareTo} whatever the collation of the database they
+ * are stored in.
+ */
+public record IdRange(String first, String last) {
+
+    public boolean overlaps(IdRange other) {
+        return first.compareTo(other.last) <= 0 && other.first.compareTo(last) <= 0;
+    }
+}
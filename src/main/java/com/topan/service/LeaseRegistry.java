@@ -0,0 +1,31 @@
+package com.topan.service;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Time-bounded exclusive ownership of id ranges, each lease under a key of its own. A lease whose expiry has
+ * passed no longer counts, so a crashed holder never blocks others for longer than the lease duration.
+ */
+public interface LeaseRegistry {
+
+    /**
+     * Takes all of the ranges or none of them.
+     *
+     * @param ranges ranges by the keys to take them under
+     * @return true when the ranges are now held by {@code owner}, false when one of them overlaps a live lease of
+     * another owner
+     */
+    boolean tryAcquire(Map<String, IdRange> ranges, String owner, Duration ttl);
+
+    /**
+     * Extends every lease still held by {@code owner}.
+     */
+    void renew(String owner, Duration ttl);
+
+    /**
+     * Releases the keys still held by {@code owner}.
+     */
+    void release(Collection<String> keys, String owner);
+}
@@ -0,0 +1,26 @@
+package com.topan.service;
+
+import com.topan.entity.Employee;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+
+/**
+ * Non-blocking counterpart of the reads of {@link EmployeeService}; nothing is fetched before subscription and
+ * rows are fetched as they are requested.
+ */
+public interface ReactiveEmployeeService {
+
+    /**
+     * Same page as {@link EmployeeService#getEmployees}, as a stream.
+     *
+     * @return the page, or an error with {@link IllegalArgumentException} for an unknown sort field
+     */
+    Flux<Employee> getEmployees(BigDecimal minSalary, BigDecimal maxSalary, int offset, int limit, String sort);
+
+    /**
+     * @return the employee, or empty when there is none
+     */
+    Mono<Employee> getEmployeeById(String id);
+}
@@ -0,0 +1,130 @@
+package com.topan.service;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Getter;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress and outcome of one upload. Synchronous uploads use an untracked instance; asynchronous ones are
+ * registered and polled through GET /users/upload/{jobId}.
+ */
+@Getter
+public class UploadJob {
+
+    public enum Phase {QUEUED, VALIDATING, PERSISTING, COMPLETED, FAILED, CANCELLED}
+
+    private final String id = UUID.randomUUID().toString();
+    private final String filename;
+    private final Instant submittedAt = Instant.now();
+
+    private volatile Phase phase = Phase.QUEUED;
+    private volatile Instant phaseStartedAt = submittedAt;
+    private volatile Instant finishedAt;
+    private volatile long totalRows = -1;
+    private volatile Integer status;
+    private volatile String message;
+    /**
+     * Set once the rows are written
+     */
+    private volatile UpsertCounts upsertCounts;
+
+    @Getter(onMethod_ = @JsonIgnore)
+    private volatile boolean cancelRequested;
+    /**
+     * Set once the rows are about to be committed, from when on a cancel is refused
+     */
+    @Getter(onMethod_ = @JsonIgnore)
+    private volatile boolean committing;
+
+    private final AtomicLong rows = new AtomicLong();
+
+    public UploadJob(String filename) {
+        this.filename = filename;
+    }
+
+    public void startPhase(Phase phase) {
+        this.rows.set(0);
+        this.phaseStartedAt = Instant.now();
+        this.phase = phase;
+    }
+
+    /**
+     * Counts one row of the current phase and aborts the upload if it has been cancelled.
+     */
+    public void rowProcessed() {
+        rows.incrementAndGet();
+        if (cancelRequested) {
+            throw new CancellationException("Upload " + id + " was cancelled");
+        }
+    }
+
+    /**
+     * Called right before the transaction that writes the rows commits: aborts the upload if it has been
+     * cancelled, and refuses later cancels, so that a cancel that was accepted never ends in committed rows.
+     */
+    public synchronized void beginCommit() {
+        if (cancelRequested) {
+            throw new CancellationException("Upload " + id + " was cancelled");
+        }
+        committing = true;
+    }
+
+    public void setTotalRows(long totalRows) {
+        this.totalRows = totalRows;
+    }
+
+    public void setUpsertCounts(UpsertCounts upsertCounts) {
+        this.upsertCounts = upsertCounts;
+    }
+
+    /**
+     * Records the outcome; the first call wins.
+     */
+    public synchronized void finish(Phase phase, Integer status, String message) {
+        if (isFinished()) {
+            return;
+        }
+        this.status = status;
+        this.message = message;
+        this.finishedAt = Instant.now();
+        this.phase = phase;
+    }
+
+    /**
+     * @return false when the job had already finished or is committing its rows
+     */
+    public synchronized boolean cancel() {
+        if (isFinished() || committing) {
+            return false;
+        }
+        cancelRequested = true;
+        // A queued job is reported as cancelled right away and skipped once a worker picks it up
+        if (phase == Phase.QUEUED) {
+            finish(Phase.CANCELLED, null, "Upload cancelled.");
+        }
+        return true;
+    }
+
+    @JsonIgnore
+    public boolean isFinished() {
+        return finishedAt != null;
+    }
+
+    public long getRowsProcessed() {
+        return rows.get();
+    }
+
+    /**
+     * @return rows per second in the current phase
+     */
+    public double getRowsPerSecond() {
+        Instant end = finishedAt != null ? finishedAt : Instant.now();
+        long millis = Duration.between(phaseStartedAt, end).toMillis();
+        return millis == 0 ? 0 : rows.get() * 1000.0 / millis;
+    }
+}
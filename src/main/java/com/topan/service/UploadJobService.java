@@ -0,0 +1,33 @@
+package com.topan.service;
+
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.util.function.Consumer;
+
+public interface UploadJobService {
+
+    /**
+     * Spools the file and queues it for background processing.
+     *
+     * @return 202 with the job, the same error response as the synchronous upload when the file is rejected up
+     * front, or 503 when the queue is full
+     */
+    ResponseEntity<?> submit(MultipartFile file);
+
+    /**
+     * Queues content that is already on disk, such as an assembled upload session, for background processing. The
+     * job does not delete the content.
+     *
+     * @param onFinished called on the worker with the outcome, or with null when the job failed or was cancelled
+     *                   before it ran; not called when the job is rejected
+     * @return 202 with the job, or 503 when the queue is full
+     */
+    ResponseEntity<UploadJob> submit(InputStreamSource content, String filename, String idempotencyKey,
+                                     Consumer<ResponseEntity<String>> onFinished);
+
+    ResponseEntity<UploadJob> getJob(String jobId);
+
+    ResponseEntity<UploadJob> cancelJob(String jobId);
+}
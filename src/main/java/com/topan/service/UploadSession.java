@@ -0,0 +1,153 @@
+package com.topan.service;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * A chunked upload in progress, see POST /users/upload/sessions. The client declares the size up front, sends
+ * byte ranges in any order and as often as it likes, and completes the session once every byte has arrived.
+ * {@link #getMissing()} tells a client resuming after a failure which ranges to send again.
+ */
+@Getter
+public class UploadSession {
+
+    public enum State {OPEN, COMPLETING, COMPLETED, ABORTED}
+
+    /**
+     * Inclusive byte range, as in {@code Content-Range}.
+     */
+    public record Range(long start, long end) {
+        public long length() {
+            return end - start + 1;
+        }
+    }
+
+    private final String id = UUID.randomUUID().toString();
+    private final String filename;
+    private final long size;
+    private final Instant createdAt = Instant.now();
+
+    private volatile Instant updatedAt = createdAt;
+    private volatile State state = State.OPEN;
+
+    /**
+     * Received ranges, merged; start to exclusive end
+     */
+    @Getter(AccessLevel.NONE)
+    private final TreeMap<Long, Long> received = new TreeMap<>();
+    @Getter(AccessLevel.NONE)
+    private long receivedBytes;
+    @Getter(AccessLevel.NONE)
+    private int writers;
+
+    public UploadSession(String filename, long size) {
+        this.filename = filename;
+        this.size = size;
+    }
+
+    /**
+     * @return false when the session no longer takes chunks
+     */
+    public synchronized boolean beginWrite() {
+        if (state != State.OPEN) {
+            return false;
+        }
+        writers++;
+        updatedAt = Instant.now();
+        return true;
+    }
+
+    /**
+     * Ends a write started with {@link #beginWrite()}, recording the bytes that made it to the spool file.
+     *
+     * @param end exclusive end of what was written, equal to {@code start} if nothing was
+     */
+    public synchronized void endWrite(long start, long end) {
+        writers--;
+        updatedAt = Instant.now();
+        if (end <= start) {
+            return;
+        }
+        Map.Entry<Long, Long> before = received.floorEntry(start);
+        if (before != null && before.getValue() >= start) {
+            start = before.getKey();
+            end = Math.max(end, before.getValue());
+        }
+        for (Map.Entry<Long, Long> next = received.ceilingEntry(start);
+             next != null && next.getKey() <= end;
+             next = received.ceilingEntry(start)) {
+            end = Math.max(end, next.getValue());
+            receivedBytes -= next.getValue() - next.getKey();
+            received.remove(next.getKey());
+        }
+        received.put(start, end);
+        receivedBytes += end - start;
+    }
+
+    /**
+     * @return false when bytes are missing, chunks are still being written or the session is already completing
+     */
+    public synchronized boolean beginComplete() {
+        if (state != State.OPEN || writers > 0 || receivedBytes != size) {
+            return false;
+        }
+        state = State.COMPLETING;
+        return true;
+    }
+
+    /**
+     * Ends the session for good, unless chunks are still being written to it or it is completing.
+     *
+     * @return false when the session is not open or chunks are being written
+     */
+    public synchronized boolean abort() {
+        if (state != State.OPEN || writers > 0) {
+            return false;
+        }
+        state = State.ABORTED;
+        updatedAt = Instant.now();
+        return true;
+    }
+
+    /**
+     * Ends a completion started with {@link #beginComplete()}.
+     *
+     * @param applied false to take chunks again, so that a failed completion can be retried
+     */
+    public synchronized void endComplete(boolean applied) {
+        state = applied ? State.COMPLETED : State.OPEN;
+        updatedAt = Instant.now();
+    }
+
+    public synchronized long getReceivedBytes() {
+        return receivedBytes;
+    }
+
+    public synchronized List<Range> getReceived() {
+        List<Range> ranges = new ArrayList<>(received.size());
+        received.forEach((start, end) -> ranges.add(new Range(start, end - 1)));
+        return ranges;
+    }
+
+    public synchronized List<Range> getMissing() {
+        List<Range> ranges = new ArrayList<>();
+        long position = 0;
+        for (Map.Entry<Long, Long> range : received.entrySet()) {
+            if (range.getKey() > position) {
+                ranges.add(new Range(position, range.getKey() - 1));
+            }
+            position = range.getValue();
+        }
+        if (position < size) {
+            ranges.add(new Range(position, size - 1));
+        }
+        return ranges;
+    }
+}
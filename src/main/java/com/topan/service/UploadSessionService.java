@@ -0,0 +1,43 @@
+package com.topan.service;
+
+import org.springframework.http.ResponseEntity;
+
+import java.io.InputStream;
+
+public interface UploadSessionService {
+
+    /**
+     * Starts a chunked upload of a file of the given size.
+     *
+     * @return 201 with the session, or an error response when the size is invalid or above
+     * {@code topan.upload.max-size}, too many sessions are open or the spool directory lacks the space
+     */
+    ResponseEntity<UploadSession> initiate(String filename, long size);
+
+    /**
+     * Writes one chunk at its offset in the session's spool file. Chunks may arrive in any order and in parallel,
+     * and sending a range again overwrites it.
+     *
+     * @param contentRange  {@code bytes <first>-<last>/<size>}, the size may be {@code *}
+     * @param contentLength declared length of the body, -1 when unknown
+     * @param body          exactly the bytes of the range
+     * @return the session with the ranges received so far; 400 without writing anything when the declared length
+     * does not match the range, 411 when it is unknown, and 400 when the body ends early, in which case whatever
+     * part of it arrived is still kept
+     */
+    ResponseEntity<UploadSession> writeChunk(String sessionId, String contentRange, long contentLength, InputStream body);
+
+    ResponseEntity<UploadSession> getSession(String sessionId);
+
+    /**
+     * Queues the assembled file as an asynchronous upload job, polled through GET /users/upload/{jobId}. The
+     * session is closed once the job succeeds and reopened otherwise, so that completion can be retried without
+     * sending the file again.
+     *
+     * @return 202 with the job; 409 while bytes are missing, chunks are being written or the session is already
+     * completing; 503 when the job queue is full
+     */
+    ResponseEntity<UploadJob> complete(String sessionId, String idempotencyKey);
+
+    ResponseEntity<UploadSession> abort(String sessionId);
+}
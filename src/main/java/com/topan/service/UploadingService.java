@@ -1,8 +1,43 @@
 package com.topan.service;
 
+import org.springframework.core.io.InputStreamSource;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.util.Optional;
+
 public interface UploadingService {
-    ResponseEntity<String> upload(MultipartFile file);
+    default ResponseEntity<String> upload(MultipartFile file) {
+        return upload(file, null);
+    }
+
+    /**
+     * @param idempotencyKey client-chosen key of this upload: a retry with the same key gets the stored result of
+     *                       the first successful attempt instead of being applied again; may be null
+     */
+    ResponseEntity<String> upload(MultipartFile file, String idempotencyKey);
+
+    /**
+     * Checks that can be answered without reading the content (empty file, content type).
+     *
+     * @return the error response, or empty when the file may be processed
+     */
+    Optional<ResponseEntity<String>> reject(MultipartFile file);
+
+    /**
+     * Validates and applies content that already passed {@link #reject(MultipartFile)}: a CSV file, a
+     * gzip-compressed one or a zip archive of CSV files, told apart by their leading bytes.
+     *
+     * @param source re-readable content
+     * @param job    receives progress and the final outcome
+     */
+    default ResponseEntity<String> process(InputStreamSource source, UploadJob job) {
+        return process(source, job, null);
+    }
+
+    /**
+     * Same as {@link #process(InputStreamSource, UploadJob)}, first answering from the result of an earlier
+     * successful upload with the same idempotency key, or with the same content and no write since.
+     */
+    ResponseEntity<String> process(InputStreamSource source, UploadJob job, String idempotencyKey);
 }
@@ -0,0 +1,19 @@
+package com.topan.service;
+
+/**
+ * What an upsert did with its rows: new ids inserted, existing rows whose content changed updated, and existing
+ * rows left as they were.
+ */
+public record UpsertCounts(long inserted, long updated, long unchanged) {
+
+    public static final UpsertCounts NONE = new UpsertCounts(0, 0, 0);
+
+    public UpsertCounts plus(UpsertCounts other) {
+        return new UpsertCounts(inserted + other.inserted, updated + other.updated, unchanged + other.unchanged);
+    }
+
+    @Override
+    public String toString() {
+        return inserted + " inserted, " + updated + " updated, " + unchanged + " unchanged";
+    }
+}
@@ -0,0 +1,67 @@
+package com.topan.service.impl;
+
+import org.springframework.core.io.InputStreamSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Digest of upload content, taken while the validation pass reads it instead of in a pass of its own: the
+ * SHA-256 over the SHA-256 of each part read, in content order, the parts being the whole content, the chunks of a
+ * large file or the members of an archive. Content read the same way gives the same digest.
+ */
+final class ContentDigest {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final MessageDigest parts = sha256();
+
+    /**
+     * @return a stream that reads through {@code inputStream} into {@code part}
+     */
+    static InputStream digesting(InputStream inputStream, MessageDigest part) {
+        return new DigestInputStream(inputStream, part);
+    }
+
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Digest of content read as one part, for content that is not otherwise read.
+     */
+    static String of(InputStreamSource source) throws IOException {
+        MessageDigest part = sha256();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream inputStream = digesting(source.getInputStream(), part)) {
+            while (inputStream.read(buffer) != -1) {
+                // Digested while read
+            }
+        }
+        ContentDigest digest = new ContentDigest();
+        digest.add(part);
+        return digest.toHex();
+    }
+
+    /**
+     * @param part digest of the next part, read to its end
+     */
+    void add(MessageDigest part) {
+        parts.update(part.digest());
+    }
+
+    /**
+     * @return hex digest of the parts added; resets this digest
+     */
+    String toHex() {
+        return HexFormat.of().formatHex(parts.digest());
+    }
+}
@@ -0,0 +1,106 @@
+package com.topan.service.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.topan.entity.Employee;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Caffeine (W-TinyLFU) cache of employees by id, absent ids included, in front of the lookups by id in
+ * {@link EmployeeServiceImpl}.
+ * <p>
+ * Writes made through this node update or drop the entries they touch once committed: a single save replaces its
+ * entry and an upload that wrote rows clears the cache. Writes made through another node are only picked up when
+ * the entry expires, after {@code topan.query.employee-cache.expire-after-write}. Callers get a copy of the
+ * cached employee, so changing it never changes the cache.
+ * <p>
+ * With read replicas ({@code topan.datasource.replicas.enabled=true}) misses loaded in a read-only transaction come
+ * from a replica that may lag behind the primary, and are not cached: caching them could bring back a row an upload
+ * just replaced, for the whole {@code expire-after-write}. The cache then only holds rows saved through this node
+ * and rows read in read-write transactions.
+ * <p>
+ * Hits, misses, evictions and the size are published as the {@code cache.*} meters tagged
+ * {@code cache=employees}.
+ */
+@Component
+public class EmployeeCache {
+
+    private final Cache<String, Optional<Employee>> cache;
+    private final boolean replicas;
+
+    @Autowired
+    public EmployeeCache(@Value("${topan.query.employee-cache.enabled:true}") boolean enabled,
+                         @Value("${topan.query.employee-cache.maximum-size:100000}") long maximumSize,
+                         @Value("${topan.query.employee-cache.expire-after-write:PT1M}") Duration expireAfterWrite,
+                         @Value("${topan.datasource.replicas.enabled:false}") boolean replicas,
+                         MeterRegistry registry) {
+        this.replicas = replicas;
+        if (!enabled) {
+            cache = null;
+            return;
+        }
+        cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(registry, cache, "employees");
+    }
+
+    /**
+     * @param loader reads the employee from the database on a miss; concurrent misses on one id share one call,
+     *               unless the miss is read from a replica
+     */
+    public Optional<Employee> get(String id, Function<String, Optional<Employee>> loader) {
+        if (cache == null) {
+            return loader.apply(id);
+        }
+        if (replicas && TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            Optional<Employee> cached = cache.getIfPresent(id);
+            return cached != null ? cached.map(EmployeeCache::copy) : loader.apply(id);
+        }
+        return cache.get(id, loader).map(EmployeeCache::copy);
+    }
+
+    /**
+     * Replaces the entry of a committed save.
+     */
+    public void put(Employee employee) {
+        if (cache != null) {
+            cache.put(employee.getId(), Optional.of(copy(employee)));
+        }
+    }
+
+    public void invalidate(String id) {
+        if (cache != null) {
+            cache.invalidate(id);
+        }
+    }
+
+    public void invalidateAll(Iterable<String> ids) {
+        if (cache != null) {
+            cache.invalidateAll(ids);
+        }
+    }
+
+    public void invalidateAll() {
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+    }
+
+    private static Employee copy(Employee employee) {
+        Employee copy = new Employee(employee.getId(), employee.getLogin(), employee.getName(), employee.getSalary());
+        copy.setFingerprint(employee.getFingerprint());
+        return copy;
+    }
+}
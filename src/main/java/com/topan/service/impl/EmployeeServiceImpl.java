@@ -2,7 +2,11 @@ package com.topan.service.impl;
 
 import com.topan.entity.Employee;
 import com.topan.repository.EmployeeRepository;
+import com.topan.service.EmployeeCursor;
+import com.topan.service.EmployeeFieldsPage;
+import com.topan.service.EmployeePage;
 import com.topan.service.EmployeeService;
+import jakarta.persistence.Tuple;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.PageRequest;
@@ -10,54 +14,100 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor(onConstructor = @__(@Autowired))
 public class EmployeeServiceImpl implements EmployeeService {
 
+    /**
+     * Keys per {@code IN (...)} lookup; well below the bind parameter limits of MySQL and H2
+     */
+    static final int IN_CHUNK_SIZE = 1000;
+
     private final EmployeeRepository employeeRepository;
+    private final EmployeeServingIndex servingIndex;
+    private final UploadResultCache uploadResultCache;
+    private final EmployeeCache employeeCache;
 
     @Override
     public List<String> findDuplicateIds(List<Employee> employees) {
-        List<String> duplicateIds = new ArrayList<>();
-        List<String> ids = employees.stream().map(Employee::getId).toList();
-        for (String id : ids) {
-            if (employeeRepository.existsById(id)) {
-                duplicateIds.add(id);
-            }
-        }
-        return duplicateIds;
+        return findExisting(employees.stream().map(Employee::getId).toList(), employeeRepository::findExistingIds);
     }
 
     @Override
     public List<String> findDuplicateLogins(List<Employee> employees) {
-        List<String> duplicateLogins = new ArrayList<>();
-        List<String> logins = employees.stream().map(Employee::getLogin).toList();
-        for (String login : logins) {
-            if (employeeRepository.existsByLogin(login)) {
-                duplicateLogins.add(login);
+        return findExisting(employees.stream().map(Employee::getLogin).toList(), employeeRepository::findExistingLogins);
+    }
+
+    /**
+     * Looks the distinct keys up {@link #IN_CHUNK_SIZE} at a time, so the number of queries grows with the number
+     * of chunks rather than rows.
+     *
+     * @return every key that exists, in input order and once per occurrence in {@code keys}
+     */
+    private static List<String> findExisting(List<String> keys, Function<Collection<String>, List<String>> lookup) {
+        List<String> distinct = keys.stream().filter(Objects::nonNull).distinct().toList();
+        Set<String> existing = new HashSet<>();
+        for (int from = 0; from < distinct.size(); from += IN_CHUNK_SIZE) {
+            existing.addAll(lookup.apply(distinct.subList(from, Math.min(from + IN_CHUNK_SIZE, distinct.size()))));
+        }
+        if (existing.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<String> duplicates = new ArrayList<>();
+        for (String key : keys) {
+            if (existing.contains(key)) {
+                duplicates.add(key);
             }
         }
-        return duplicateLogins;
+        return duplicates;
     }
 
+    /**
+     * Flushes before handing the rows to the index, so that they are applied in commit order, see
+     * {@link EmployeeServingIndex#applyAfterCommit}.
+     */
     @Override
+    @Transactional
     public void saveEmployees(List<Employee> employees) {
-        employeeRepository.saveAll(employees);
+        List<Employee> savedEmployees = employeeRepository.saveAllAndFlush(employees);
+        servingIndex.applyAfterCommit(savedEmployees);
+        afterCommit(() -> {
+            employeeCache.invalidateAll(savedEmployees.stream().map(Employee::getId).toList());
+            uploadResultCache.recordWrite();
+        });
     }
 
     /**
      * @param employees entity
      */
     @Override
+    @Transactional
     public void saveEmployee(Employee employees) {
-        employeeRepository.save(employees);
+        Employee savedEmployee = employeeRepository.saveAndFlush(employees);
+        servingIndex.applyAfterCommit(List.of(savedEmployee));
+        afterCommit(() -> {
+            employeeCache.put(savedEmployee);
+            uploadResultCache.recordWrite();
+        });
     }
 
     /**
@@ -65,14 +115,20 @@ public class EmployeeServiceImpl implements EmployeeService {
      * @return Employee object
      */
     @Override
+    @Transactional(readOnly = true)
     public ResponseEntity<Employee> getEmployeeById(String id) {
-        return employeeRepository.findById(id)
-                .map(ResponseEntity::ok).orElse(ResponseEntity.notFound().build());
+        return findById(id).map(ResponseEntity::ok).orElse(ResponseEntity.notFound().build());
     }
 
+    /**
+     * Reads the current row in the same transaction as the write, so both go to the primary. The index and the
+     * cache only take the saved row once it is committed; the write is flushed first so that the index applies it
+     * in commit order.
+     */
     @Override
+    @Transactional
     public ResponseEntity<Employee> updateEmployee(Long id, Employee updatedEmployee) {
-        Optional<Employee> optionalEmployee = employeeRepository.findById(String.valueOf(id));
+        Optional<Employee> optionalEmployee = findById(String.valueOf(id));
         if (optionalEmployee.isEmpty()) {
             return ResponseEntity.notFound().build();
         }
@@ -80,17 +136,150 @@ public class EmployeeServiceImpl implements EmployeeService {
         existingEmployee.setName(updatedEmployee.getName());
         existingEmployee.setLogin(updatedEmployee.getLogin());
         existingEmployee.setSalary(updatedEmployee.getSalary());
-        Employee savedEmployee = employeeRepository.save(existingEmployee);
+        Employee savedEmployee = employeeRepository.saveAndFlush(existingEmployee);
+        servingIndex.applyAfterCommit(List.of(savedEmployee));
+        afterCommit(() -> {
+            employeeCache.put(savedEmployee);
+            uploadResultCache.recordWrite();
+        });
         return ResponseEntity.ok(savedEmployee);
     }
 
+    /**
+     * Runs {@code action} once the current transaction commits, or right away outside of one.
+     */
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
     @Override
     public Employee findByEmployeeId(String employeeId) {
-        return employeeRepository.findById(employeeId).orElseThrow(() -> new NoSuchElementException("Employee not found"));
+        return findById(employeeId).orElseThrow(() -> new NoSuchElementException("Employee not found"));
+    }
+
+    private Optional<Employee> findById(String id) {
+        return employeeCache.get(id, employeeRepository::findById);
     }
 
+    /**
+     * Not transactional, so that pages answered by the serving index never take a connection; the database query
+     * opens its own read-only transaction.
+     */
     @Override
     public List<Employee> getEmployees(BigDecimal minSalary, BigDecimal maxSalary, int offset, int limit, String sort) {
+        Sort.Order order = parseSort(sort);
+        Optional<List<Employee>> served = servingIndex.query(minSalary, maxSalary, offset, limit, order);
+        if (served.isPresent()) {
+            return served.get();
+        }
+
+        Sort sorting = Sort.by(order);
+        Pageable pageable = PageRequest.of(offset, limit, sorting);
+
+        return employeeRepository.findBySalaryBetween(minSalary, maxSalary, pageable);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public EmployeePage getEmployeesAfter(BigDecimal minSalary, BigDecimal maxSalary, int limit, String sort, String cursor) {
+        Sort.Order order = parseSortableOrder(sort);
+        EmployeeCursor after = decodeCursor(cursor, order);
+
+        List<Employee> employees = employeeRepository.findBySalaryBetweenAfter(minSalary, maxSalary, order,
+                after != null ? after.value() : null, after != null ? after.id() : null, limit);
+
+        // A short page means the range is exhausted
+        String nextCursor = employees.size() < limit ? null
+                : EmployeeCursor.after(employees.get(employees.size() - 1), order).encode();
+        return new EmployeePage(employees, nextCursor);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public EmployeeFieldsPage getEmployeeFields(BigDecimal minSalary, BigDecimal maxSalary, int offset, int limit,
+                                                String sort, String cursor, List<String> fields) {
+        Sort.Order order = parseSortableOrder(sort);
+        if (fields.isEmpty() || !EmployeeCursor.SORTABLE.containsAll(fields)) {
+            throw new IllegalArgumentException("Fields must be among " + EmployeeCursor.SORTABLE);
+        }
+        EmployeeCursor after = cursor != null ? decodeCursor(cursor, order) : null;
+
+        List<Tuple> tuples = employeeRepository.findFieldsBySalaryBetween(minSalary, maxSalary, fields, order,
+                after != null ? after.value() : null, after != null ? after.id() : null,
+                cursor != null ? 0 : offset * limit, limit);
+
+        List<Map<String, Object>> rows = new ArrayList<>(tuples.size());
+        for (Tuple tuple : tuples) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            for (String field : fields) {
+                row.put(field, tuple.get(field));
+            }
+            rows.add(row);
+        }
+
+        String nextCursor = null;
+        if (cursor != null && tuples.size() == limit) {
+            Tuple last = tuples.get(tuples.size() - 1);
+            nextCursor = new EmployeeCursor(order.getProperty(), order.getDirection(),
+                    (Comparable<?>) last.get(order.getProperty()), last.get("id", String.class)).encode();
+        }
+        return new EmployeeFieldsPage(rows, nextCursor);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void streamEmployees(BigDecimal minSalary, BigDecimal maxSalary, int offset, int limit, String sort,
+                                Consumer<Employee> action) {
+        Sort.Order order = parseSortableOrder(sort);
+        try (Stream<Employee> employees = employeeRepository.streamBySalaryBetween(minSalary, maxSalary, order,
+                offset * limit, limit)) {
+            employees.forEach(action);
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void exportEmployees(BigDecimal minSalary, BigDecimal maxSalary, Consumer<Employee> action) {
+        try (Stream<Employee> employees = employeeRepository.streamAll(minSalary, maxSalary)) {
+            employees.forEach(action);
+        }
+    }
+
+    static Sort.Order parseSortableOrder(String sort) {
+        Sort.Order order = parseSort(sort);
+        if (!EmployeeCursor.SORTABLE.contains(order.getProperty())) {
+            throw new IllegalArgumentException("Cannot sort by " + order.getProperty());
+        }
+        return order;
+    }
+
+    /**
+     * @return the decoded cursor, or null for an empty one (first page)
+     */
+    private static EmployeeCursor decodeCursor(String cursor, Sort.Order order) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        EmployeeCursor after = EmployeeCursor.decode(cursor);
+        if (!after.matches(order)) {
+            throw new IllegalArgumentException("Cursor was issued for a different sort");
+        }
+        return after;
+    }
+
+    /**
+     * @param sort field name, optionally prefixed with + (ascending, the default) or - (descending)
+     */
+    static Sort.Order parseSort(String sort) {
         Sort.Direction direction = Sort.Direction.ASC;
         String sortField;
 
@@ -102,11 +291,7 @@ public class EmployeeServiceImpl implements EmployeeService {
         } else {
             sortField = sort;
         }
-
-        Sort sorting = Sort.by(direction, sortField);
-        Pageable pageable = PageRequest.of(offset, limit, sorting);
-
-        return employeeRepository.findBySalaryBetween(minSalary, maxSalary, pageable);
+        return new Sort.Order(direction, sortField);
     }
 }
 
@@ -0,0 +1,664 @@
+package com.topan.service.impl;
+
+import com.topan.entity.Employee;
+import com.topan.repository.EmployeeRepository;
+import com.topan.service.EmployeeCursor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * In-process copy of the employee table that answers salary range + sort + page queries without the database.
+ * <p>
+ * Rows live in column arrays, with salary as a long scaled by 100 (the scale of the salary column), and one
+ * {@code int[]} permutation of the rows per sortable field, ordered by that field and then by id. A query binary
+ * searches the salary permutation or walks the permutation of its sort field, so it touches only primitive
+ * arrays until the page itself is materialized. Strings are ordered by code point, not by the database
+ * collation.
+ * <p>
+ * Readers see a {@link Snapshot} through a volatile field. Upload commits merge their rows into a new snapshot and
+ * swap it in, so a read never sees a half-applied upload. An update of a single existing row patches its slot in
+ * place instead, moving it within each permutation; readers run optimistically and only wait, for the length of
+ * one patch, when they raced with one. Writers hand their rows over with {@link #applyAfterCommit}, which applies
+ * them in the order the writers committed, so the last committed version of a row is the one that stays. Enabled with {@code topan.query.serving-index.enabled}; until the startup
+ * warm-up has finished, {@link #query} returns empty and callers fall back to the database.
+ * <p>
+ * Salaries whose scaled value does not fit a long are kept at {@link Long#MAX_VALUE} or {@link #LOWEST_SALARY}; while
+ * such rows exist, queries whose range reaches those bounds go to the database.
+ */
+@Slf4j
+@Component
+public class EmployeeServingIndex {
+
+    private static final int SALARY_SCALE = 2;
+    private static final int WARM_UP_PAGE = 10_000;
+    private static final long NO_SALARY = Long.MIN_VALUE;
+    private static final long LOWEST_SALARY = NO_SALARY + 1;
+
+    private final EmployeeRepository employeeRepository;
+    private final boolean enabled;
+
+    private volatile Snapshot snapshot;
+    /**
+     * Write-locked while a single row is patched into the current snapshot.
+     */
+    private final StampedLock patchLock = new StampedLock();
+    /**
+     * Changes committed while the warm-up is loading, replayed on top of the loaded rows.
+     */
+    private Changes committedDuringWarmUp;
+    /**
+     * Tickets of {@link #applyAfterCommit}: the next one to hand out, the next one to apply, and the changes of
+     * completed writers waiting for an earlier ticket. Guarded by {@code this}.
+     */
+    private long nextTicket;
+    private long nextApplied;
+    private final Map<Long, Changes> completed = new HashMap<>();
+
+    @Autowired
+    public EmployeeServingIndex(EmployeeRepository employeeRepository,
+                                @Value("${topan.query.serving-index.enabled:false}") boolean enabled) {
+        this.employeeRepository = employeeRepository;
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Loads the whole table in id order on a background thread once the application is up.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (!enabled) {
+            return;
+        }
+        synchronized (this) {
+            committedDuringWarmUp = new Changes();
+        }
+        Thread loader = new Thread(() -> {
+            long start = System.currentTimeMillis();
+            try {
+                Changes all = new Changes();
+                String lastId = "";
+                List<Employee> page;
+                do {
+                    page = employeeRepository.findByIdGreaterThan(lastId, PageRequest.of(0, WARM_UP_PAGE, Sort.by("id")));
+                    all.addAll(page);
+                    if (!page.isEmpty()) {
+                        lastId = page.get(page.size() - 1).getId();
+                    }
+                } while (page.size() == WARM_UP_PAGE);
+                synchronized (this) {
+                    // A page read before a concurrent commit may hold stale rows, so the commit is replayed last
+                    snapshot = Snapshot.EMPTY.apply(all).apply(committedDuringWarmUp);
+                    committedDuringWarmUp = null;
+                }
+                log.info("Serving index warmed with {} employees in {} ms", snapshot.size(), System.currentTimeMillis() - start);
+            } catch (RuntimeException e) {
+                log.error("Serving index warm-up failed, queries keep going to the database", e);
+            }
+        }, "serving-index-warm-up");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    /**
+     * Same contract as {@code EmployeeRepository.findBySalaryBetween} with a page request of
+     * {@code (offset, limit, order)}.
+     *
+     * @return the page, or empty when the index is disabled, not warmed up yet, cannot sort by the property or holds
+     * salaries too large for the range
+     */
+    public Optional<List<Employee>> query(BigDecimal minSalary, BigDecimal maxSalary, int offset, int limit, Sort.Order order) {
+        Snapshot current = snapshot;
+        if (current == null || !EmployeeCursor.SORTABLE.contains(order.getProperty())) {
+            return Optional.empty();
+        }
+        long min = Math.max(LOWEST_SALARY, toScaled(minSalary, RoundingMode.CEILING));
+        long max = toScaled(maxSalary, RoundingMode.FLOOR);
+        long stamp = patchLock.tryOptimisticRead();
+        List<Employee> page = current.query(min, max, offset, limit, order);
+        if (!patchLock.validate(stamp)) {
+            stamp = patchLock.readLock();
+            try {
+                page = current.query(min, max, offset, limit, order);
+            } finally {
+                patchLock.unlockRead(stamp);
+            }
+        }
+        return Optional.ofNullable(page);
+    }
+
+    /**
+     * @return a buffer for the rows of one upload, to be {@link #apply applied} once its transaction committed
+     */
+    public Changes newChanges() {
+        return new Changes();
+    }
+
+    /**
+     * Applies the rows written by the current transaction once it commits, or right away outside of one. Call it
+     * after the last write of the transaction has been flushed: a writer that touches the same rows then either
+     * waited for this transaction to commit, or had already committed, before its own call, so applying in the
+     * order of the calls is applying in the order of the commits. A writer whose transaction rolls back only
+     * releases its turn.
+     */
+    public void applyAfterCommit(Changes changes) {
+        if (!enabled) {
+            return;
+        }
+        long ticket;
+        synchronized (this) {
+            ticket = nextTicket++;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            complete(ticket, changes);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                complete(ticket, status == STATUS_COMMITTED ? changes : new Changes());
+            }
+        });
+    }
+
+    /**
+     * @see #applyAfterCommit(Changes)
+     */
+    public void applyAfterCommit(Collection<Employee> employees) {
+        Changes changes = newChanges();
+        changes.addAll(employees);
+        applyAfterCommit(changes);
+    }
+
+    /**
+     * Applies the changes of {@code ticket} and of every later ticket already completed, once the earlier tickets
+     * are done; otherwise they wait for the writer holding the earliest open ticket.
+     */
+    private synchronized void complete(long ticket, Changes changes) {
+        completed.put(ticket, changes);
+        Changes next;
+        while ((next = completed.remove(nextApplied)) != null) {
+            nextApplied++;
+            apply(next);
+        }
+    }
+
+    /**
+     * Merges committed rows into the index; rows with a known id replace the previous version. A single row
+     * already in the index is patched in place rather than rebuilding the snapshot.
+     */
+    public void apply(Changes changes) {
+        if (!enabled || changes.size == 0) {
+            return;
+        }
+        synchronized (this) {
+            int slot = snapshot != null && changes.size == 1 ? snapshot.slotOf(changes.ids[0]) : -1;
+            if (slot >= 0) {
+                long stamp = patchLock.writeLock();
+                try {
+                    snapshot.patch(slot, changes.logins[0], changes.names[0], changes.salaries[0]);
+                } finally {
+                    patchLock.unlockWrite(stamp);
+                }
+            } else if (snapshot != null) {
+                snapshot = snapshot.apply(changes);
+            } else if (committedDuringWarmUp != null) {
+                committedDuringWarmUp.addAll(changes);
+            }
+        }
+    }
+
+    /**
+     * Merges one committed row.
+     */
+    public void apply(Employee employee) {
+        Changes changes = newChanges();
+        changes.add(employee);
+        apply(changes);
+    }
+
+    /**
+     * Compact buffer of upserted rows. Does nothing when the index is disabled, so callers need no checks.
+     */
+    public final class Changes {
+        private String[] ids = new String[16];
+        private String[] logins = new String[16];
+        private String[] names = new String[16];
+        private long[] salaries = new long[16];
+        private int size;
+
+        public void addAll(Collection<Employee> employees) {
+            employees.forEach(this::add);
+        }
+
+        public void add(Employee employee) {
+            if (enabled) {
+                add(employee.getId(), employee.getLogin(), employee.getName(), toScaled(employee.getSalary()));
+            }
+        }
+
+        private void addAll(Changes other) {
+            for (int i = 0; i < other.size; i++) {
+                add(other.ids[i], other.logins[i], other.names[i], other.salaries[i]);
+            }
+        }
+
+        private void add(String id, String login, String name, long salary) {
+            if (size == ids.length) {
+                int length = size * 2;
+                ids = Arrays.copyOf(ids, length);
+                logins = Arrays.copyOf(logins, length);
+                names = Arrays.copyOf(names, length);
+                salaries = Arrays.copyOf(salaries, length);
+            }
+            ids[size] = id;
+            logins[size] = login;
+            names[size] = name;
+            salaries[size] = salary;
+            size++;
+        }
+    }
+
+    /**
+     * A missing salary is kept as {@link #NO_SALARY}, below every queryable range.
+     */
+    private static long toScaled(BigDecimal salary) {
+        return salary == null ? NO_SALARY : Math.max(LOWEST_SALARY, toScaled(salary, RoundingMode.HALF_UP));
+    }
+
+    /**
+     * @return the value scaled by 100, clamped to the range of a long
+     */
+    private static long toScaled(BigDecimal value, RoundingMode rounding) {
+        BigInteger scaled = value.setScale(SALARY_SCALE, rounding).unscaledValue();
+        if (scaled.bitLength() < Long.SIZE) {
+            return scaled.longValue();
+        }
+        return scaled.signum() > 0 ? Long.MAX_VALUE : Long.MIN_VALUE;
+    }
+
+    private static boolean isClamped(long salary) {
+        return salary == Long.MAX_VALUE || salary == LOWEST_SALARY;
+    }
+
+    private interface SlotComparator {
+        int compare(int a, int b);
+
+        static SlotComparator byId(String[] ids) {
+            return (a, b) -> ids[a].compareTo(ids[b]);
+        }
+
+        static SlotComparator byKey(String[] keys, String[] ids) {
+            return (a, b) -> {
+                int cmp = compareNullable(keys[a], keys[b]);
+                return cmp != 0 ? cmp : ids[a].compareTo(ids[b]);
+            };
+        }
+
+        static SlotComparator bySalary(long[] salaries, String[] ids) {
+            return (a, b) -> {
+                int cmp = Long.compare(salaries[a], salaries[b]);
+                return cmp != 0 ? cmp : ids[a].compareTo(ids[b]);
+            };
+        }
+
+        private static int compareNullable(String a, String b) {
+            if (a == null || b == null) {
+                return a == null ? (b == null ? 0 : -1) : 1;
+            }
+            return a.compareTo(b);
+        }
+    }
+
+    /**
+     * State of the index: column arrays indexed by row slot and one sorted permutation per field. Only
+     * {@link #patch} changes it after construction.
+     */
+    private static final class Snapshot {
+
+        static final Snapshot EMPTY = new Snapshot(new String[0], new String[0], new String[0], new long[0],
+                new int[0], new int[0], new int[0], new int[0]);
+
+        final String[] ids;
+        final String[] logins;
+        final String[] names;
+        final long[] salaries;
+        final int[] byId;
+        final int[] byLogin;
+        final int[] byName;
+        final int[] bySalary;
+        /**
+         * Number of rows whose salary is {@link #isClamped clamped}
+         */
+        int clamped;
+
+        Snapshot(String[] ids, String[] logins, String[] names, long[] salaries,
+                 int[] byId, int[] byLogin, int[] byName, int[] bySalary) {
+            this.ids = ids;
+            this.logins = logins;
+            this.names = names;
+            this.salaries = salaries;
+            this.byId = byId;
+            this.byLogin = byLogin;
+            this.byName = byName;
+            this.bySalary = bySalary;
+            for (long salary : salaries) {
+                if (isClamped(salary)) {
+                    clamped++;
+                }
+            }
+        }
+
+        int size() {
+            return ids.length;
+        }
+
+        /**
+         * @param min scaled lower bound, at least {@link #LOWEST_SALARY}
+         * @param max scaled upper bound
+         * @return the page, or null when clamped salaries may fall in the range
+         */
+        List<Employee> query(long min, long max, int offset, int limit, Sort.Order order) {
+            if (clamped > 0 && (min == LOWEST_SALARY || max == Long.MAX_VALUE)) {
+                return null;
+            }
+            long skip = (long) offset * limit;
+            List<Employee> page = new ArrayList<>(Math.min(limit, 1024));
+            if (min > max || limit <= 0) {
+                return page;
+            }
+
+            if ("salary".equals(order.getProperty())) {
+                // The range is contiguous in the salary permutation
+                int from = lowerBound(min);
+                int to = max == Long.MAX_VALUE ? bySalary.length : lowerBound(max + 1);
+                if (skip >= to - from) {
+                    return page;
+                }
+                int start = (int) skip;
+                int end = (int) Math.min(to - from, skip + limit);
+                for (int i = start; i < end; i++) {
+                    page.add(row(bySalary[order.isAscending() ? from + i : to - 1 - i]));
+                }
+                return page;
+            }
+
+            int[] permutation = permutation(order.getProperty());
+            long matched = 0;
+            for (int i = 0; i < permutation.length && page.size() < limit; i++) {
+                int slot = permutation[order.isAscending() ? i : permutation.length - 1 - i];
+                long salary = salaries[slot];
+                if (salary >= min && salary <= max && matched++ >= skip) {
+                    page.add(row(slot));
+                }
+            }
+            return page;
+        }
+
+        private int[] permutation(String property) {
+            return switch (property) {
+                case "id" -> byId;
+                case "login" -> byLogin;
+                case "name" -> byName;
+                default -> throw new IllegalArgumentException("Cannot sort by " + property);
+            };
+        }
+
+        /**
+         * @return first position in the salary permutation whose salary is at least {@code value}
+         */
+        private int lowerBound(long value) {
+            int low = 0;
+            int high = bySalary.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (salaries[bySalary[mid]] < value) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * @return slot of the row with the given id, or -1
+         */
+        private int slotOf(String id) {
+            int low = 0;
+            int high = byId.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int cmp = ids[byId[mid]].compareTo(id);
+                if (cmp < 0) {
+                    low = mid + 1;
+                } else if (cmp > 0) {
+                    high = mid - 1;
+                } else {
+                    return byId[mid];
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Overwrites the row in {@code slot} and moves it to its new position in each permutation, shifting the rows
+         * it passes by one: O(log n) searches and one array copy per permutation, where {@link #apply} rebuilds them.
+         */
+        void patch(int slot, String login, String name, long salary) {
+            SlotComparator loginOrder = SlotComparator.byKey(logins, ids);
+            SlotComparator nameOrder = SlotComparator.byKey(names, ids);
+            SlotComparator salaryOrder = SlotComparator.bySalary(salaries, ids);
+            int loginPosition = positionOf(byLogin, slot, loginOrder);
+            int namePosition = positionOf(byName, slot, nameOrder);
+            int salaryPosition = positionOf(bySalary, slot, salaryOrder);
+
+            clamped += (isClamped(salary) ? 1 : 0) - (isClamped(salaries[slot]) ? 1 : 0);
+            logins[slot] = login;
+            names[slot] = name;
+            salaries[slot] = salary;
+
+            move(byLogin, loginPosition, loginOrder);
+            move(byName, namePosition, nameOrder);
+            move(bySalary, salaryPosition, salaryOrder);
+        }
+
+        /**
+         * @return position of {@code slot} in a permutation sorted by {@code comparator}
+         */
+        private static int positionOf(int[] permutation, int slot, SlotComparator comparator) {
+            int low = 0;
+            int high = permutation.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int cmp = comparator.compare(permutation[mid], slot);
+                if (cmp < 0) {
+                    low = mid + 1;
+                } else if (cmp > 0) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            throw new IllegalStateException("Slot " + slot + " is not in its permutation");
+        }
+
+        /**
+         * Moves the slot at {@code from}, whose sort key changed, to where the comparator now puts it.
+         */
+        private static void move(int[] permutation, int from, SlotComparator comparator) {
+            int slot = permutation[from];
+            int to;
+            if (from > 0 && comparator.compare(permutation[from - 1], slot) > 0) {
+                // First position before from that sorts after the slot
+                int low = 0;
+                int high = from - 1;
+                while (low < high) {
+                    int mid = (low + high) >>> 1;
+                    if (comparator.compare(permutation[mid], slot) > 0) {
+                        high = mid;
+                    } else {
+                        low = mid + 1;
+                    }
+                }
+                to = low;
+                System.arraycopy(permutation, to, permutation, to + 1, from - to);
+            } else if (from < permutation.length - 1 && comparator.compare(permutation[from + 1], slot) < 0) {
+                // Last position after from that sorts before the slot
+                int low = from + 1;
+                int high = permutation.length - 1;
+                while (low < high) {
+                    int mid = (low + high + 1) >>> 1;
+                    if (comparator.compare(permutation[mid], slot) < 0) {
+                        low = mid;
+                    } else {
+                        high = mid - 1;
+                    }
+                }
+                to = low;
+                System.arraycopy(permutation, from + 1, permutation, from, to - from);
+            } else {
+                return;
+            }
+            permutation[to] = slot;
+        }
+
+        private Employee row(int slot) {
+            long salary = salaries[slot];
+            return new Employee(ids[slot], logins[slot], names[slot],
+                    salary == NO_SALARY ? null : BigDecimal.valueOf(salary, SALARY_SCALE));
+        }
+
+        /**
+         * Builds the next snapshot: changed rows are overwritten in place, new rows appended, and every permutation
+         * is rebuilt by merging its unchanged part with the sorted changed slots, O(n + k log k) for k changes.
+         */
+        Snapshot apply(Changes changes) {
+            Map<String, Integer> changeById = new LinkedHashMap<>();
+            for (int i = 0; i < changes.size; i++) {
+                changeById.put(changes.ids[i], i);
+            }
+
+            int[] existingSlots = new int[changeById.size()];
+            int added = 0;
+            int c = 0;
+            for (String id : changeById.keySet()) {
+                existingSlots[c] = slotOf(id);
+                if (existingSlots[c++] < 0) {
+                    added++;
+                }
+            }
+
+            int size = ids.length + added;
+            String[] newIds = Arrays.copyOf(ids, size);
+            String[] newLogins = Arrays.copyOf(logins, size);
+            String[] newNames = Arrays.copyOf(names, size);
+            long[] newSalaries = Arrays.copyOf(salaries, size);
+
+            BitSet changed = new BitSet(size);
+            int[] changedSlots = new int[changeById.size()];
+            int next = ids.length;
+            c = 0;
+            for (int change : changeById.values()) {
+                int slot = existingSlots[c] >= 0 ? existingSlots[c] : next++;
+                newIds[slot] = changes.ids[change];
+                newLogins[slot] = changes.logins[change];
+                newNames[slot] = changes.names[change];
+                newSalaries[slot] = changes.salaries[change];
+                changed.set(slot);
+                changedSlots[c++] = slot;
+            }
+
+            return new Snapshot(newIds, newLogins, newNames, newSalaries,
+                    merge(byId, changed, changedSlots, SlotComparator.byId(newIds)),
+                    merge(byLogin, changed, changedSlots, SlotComparator.byKey(newLogins, newIds)),
+                    merge(byName, changed, changedSlots, SlotComparator.byKey(newNames, newIds)),
+                    merge(bySalary, changed, changedSlots, SlotComparator.bySalary(newSalaries, newIds)));
+        }
+
+        private static int[] merge(int[] permutation, BitSet changed, int[] changedSlots, SlotComparator comparator) {
+            int[] sortedChanges = changedSlots.clone();
+            sort(sortedChanges, comparator);
+
+            int[] merged = new int[permutation.length - countChanged(permutation, changed) + sortedChanges.length];
+            int i = 0;
+            int j = 0;
+            int k = 0;
+            while (i < permutation.length || j < sortedChanges.length) {
+                if (i < permutation.length && changed.get(permutation[i])) {
+                    i++;
+                } else if (j == sortedChanges.length
+                        || (i < permutation.length && comparator.compare(permutation[i], sortedChanges[j]) <= 0)) {
+                    merged[k++] = permutation[i++];
+                } else {
+                    merged[k++] = sortedChanges[j++];
+                }
+            }
+            return merged;
+        }
+
+        private static int countChanged(int[] permutation, BitSet changed) {
+            int count = 0;
+            for (int slot : permutation) {
+                if (changed.get(slot)) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        /**
+         * Stable merge sort of slots, avoiding the boxing of {@code Arrays.sort(T[], Comparator)}.
+         */
+        private static void sort(int[] slots, SlotComparator comparator) {
+            if (slots.length < 2) {
+                return;
+            }
+            int[] buffer = new int[slots.length];
+            for (int width = 1; width < slots.length; width *= 2) {
+                for (int low = 0; low < slots.length - width; low += 2 * width) {
+                    int mid = low + width;
+                    int high = Math.min(low + 2 * width, slots.length);
+                    int i = low;
+                    int j = mid;
+                    int k = low;
+                    while (i < mid && j < high) {
+                        buffer[k++] = comparator.compare(slots[i], slots[j]) <= 0 ? slots[i++] : slots[j++];
+                    }
+                    while (i < mid) {
+                        buffer[k++] = slots[i++];
+                    }
+                    while (j < high) {
+                        buffer[k++] = slots[j++];
+                    }
+                    System.arraycopy(buffer, low, slots, low, high - low);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.topan.service.impl;
+
+import com.topan.service.IdRange;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Covers the ids of an upload with at most {@code maxRanges} ranges, built up one id at a time.
+ * <p>
+ * Ids start out as ranges of their own; whenever twice the limit have gathered, neighbouring ranges are merged
+ * until the limit is met again, closest first, closeness being the prefix the end of one range shares with the start
+ * of the next. Merging only ever widens the cover, so every id added stays covered, while sorted or clustered ids
+ * end up as a few tight ranges.
+ */
+public final class IdRanges {
+
+    private final int maxRanges;
+    /**
+     * First id of each range to its last
+     */
+    private final TreeMap<String, String> ranges = new TreeMap<>();
+
+    public IdRanges(int maxRanges) {
+        if (maxRanges < 1) {
+            throw new IllegalArgumentException("maxRanges must be at least 1");
+        }
+        this.maxRanges = maxRanges;
+    }
+
+    public int getMaxRanges() {
+        return maxRanges;
+    }
+
+    public boolean isEmpty() {
+        return ranges.isEmpty();
+    }
+
+    public void add(String id) {
+        Map.Entry<String, String> floor = ranges.floorEntry(id);
+        if (floor != null && floor.getValue().compareTo(id) >= 0) {
+            return;
+        }
+        ranges.put(id, id);
+        compactIfFull();
+    }
+
+    public void add(IdRange range) {
+        String first = range.first();
+        String last = range.last();
+        Map.Entry<String, String> floor = ranges.floorEntry(first);
+        if (floor != null && floor.getValue().compareTo(first) >= 0) {
+            if (floor.getValue().compareTo(last) >= 0) {
+                return;
+            }
+            first = floor.getKey();
+        }
+        // Absorb every range that starts within the new one
+        for (Map.Entry<String, String> next = ranges.ceilingEntry(first);
+             next != null && next.getKey().compareTo(last) <= 0; next = ranges.ceilingEntry(first)) {
+            if (next.getValue().compareTo(last) > 0) {
+                last = next.getValue();
+            }
+            ranges.remove(next.getKey());
+        }
+        ranges.put(first, last);
+        compactIfFull();
+    }
+
+    public void addAll(IdRanges other) {
+        other.ranges.forEach((first, last) -> add(new IdRange(first, last)));
+    }
+
+    /**
+     * @return whether every id of {@code other} is covered already
+     */
+    public boolean covers(IdRanges other) {
+        for (Map.Entry<String, String> range : other.ranges.entrySet()) {
+            Map.Entry<String, String> floor = ranges.floorEntry(range.getKey());
+            if (floor == null || floor.getValue().compareTo(range.getValue()) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public IdRanges copy() {
+        IdRanges copy = new IdRanges(maxRanges);
+        copy.ranges.putAll(ranges);
+        return copy;
+    }
+
+    /**
+     * @return at most {@code maxRanges} disjoint ranges, in ascending order
+     */
+    public List<IdRange> toList() {
+        compact();
+        List<IdRange> list = new ArrayList<>(ranges.size());
+        ranges.forEach((first, last) -> list.add(new IdRange(first, last)));
+        return list;
+    }
+
+    private void compactIfFull() {
+        if (ranges.size() > 2 * maxRanges) {
+            compact();
+        }
+    }
+
+    private void compact() {
+        int merges = ranges.size() - maxRanges;
+        if (merges <= 0) {
+            return;
+        }
+        String[] firsts = ranges.keySet().toArray(String[]::new);
+        String[] lasts = ranges.values().toArray(String[]::new);
+
+        // Closeness of each gap in the upper bits, its index in the lower ones, so that sorting orders the gaps
+        long[] gaps = new long[firsts.length - 1];
+        for (int i = 0; i < gaps.length; i++) {
+            gaps[i] = closeness(lasts[i], firsts[i + 1]) << 32 | i;
+        }
+        Arrays.sort(gaps);
+        boolean[] mergeWithNext = new boolean[firsts.length];
+        for (int i = gaps.length - merges; i < gaps.length; i++) {
+            mergeWithNext[(int) gaps[i]] = true;
+        }
+
+        ranges.clear();
+        String first = firsts[0];
+        for (int i = 0; i < firsts.length; i++) {
+            if (!mergeWithNext[i]) {
+                ranges.put(first, lasts[i]);
+                if (i + 1 < firsts.length) {
+                    first = firsts[i + 1];
+                }
+            }
+        }
+    }
+
+    /**
+     * @return how closely {@code upper} follows {@code lower}: by the length of their common prefix first, then by
+     * how little their first differing characters differ
+     */
+    static long closeness(String lower, String upper) {
+        int length = Math.min(lower.length(), upper.length());
+        int prefix = 0;
+        while (prefix < length && lower.charAt(prefix) == upper.charAt(prefix)) {
+            prefix++;
+        }
+        int difference = (prefix < upper.length() ? upper.charAt(prefix) : 0)
+                - (prefix < lower.length() ? lower.charAt(prefix) : 0);
+        return (long) prefix << 16 | (0xFFFF - Math.min(0xFFFF, Math.max(0, difference)));
+    }
+}
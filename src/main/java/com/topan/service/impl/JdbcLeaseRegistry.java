@@ -0,0 +1,94 @@
+package com.topan.service.impl;
+
+import com.topan.service.IdRange;
+import com.topan.service.LeaseRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cluster-wide leases stored in the {@code upload_lease} table. Every call commits in a transaction of its own,
+ * suspending the upload transaction it may be called from, so a lease is visible to the other nodes as soon as it
+ * is taken, its row locks are not held until the upload commits, and a rolled-back upload does not take its
+ * leases with it. Such a call needs a second connection while the upload holds its own. Expiry uses each node's
+ * own clock and assumes the nodes are NTP-synchronised to well within the lease duration.
+ * <p>
+ * Ranges are inserted and committed first and only then checked against the live leases of other nodes, and
+ * deleted again on a conflict: of two nodes racing for overlapping ranges at least one sees the other's rows and
+ * backs off, without any lock held across statements. Overlaps are computed here rather than in SQL, so that ids
+ * compare the same way as everywhere else whatever the column collation.
+ */
+@Component
+@Order(2)
+@ConditionalOnProperty(name = "topan.upload.coordination.cluster", havingValue = "true", matchIfMissing = true)
+public class JdbcLeaseRegistry implements LeaseRegistry {
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate leaseTransaction;
+
+    @Autowired
+    public JdbcLeaseRegistry(NamedParameterJdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.leaseTransaction = new TransactionTemplate(transactionManager);
+        this.leaseTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @Override
+    public boolean tryAcquire(Map<String, IdRange> ranges, String owner, Duration ttl) {
+        if (ranges.isEmpty()) {
+            return true;
+        }
+        long now = System.currentTimeMillis();
+        SqlParameterSource[] rows = ranges.entrySet().stream()
+                .map(entry -> new MapSqlParameterSource()
+                        .addValue("key", entry.getKey())
+                        .addValue("owner", owner)
+                        .addValue("firstId", entry.getValue().first())
+                        .addValue("lastId", entry.getValue().last())
+                        .addValue("expiresAt", now + ttl.toMillis()))
+                .toArray(SqlParameterSource[]::new);
+        leaseTransaction.executeWithoutResult(status -> {
+            jdbcTemplate.update("DELETE FROM upload_lease WHERE expires_at <= :now", Map.of("now", now));
+            jdbcTemplate.batchUpdate("INSERT INTO upload_lease (lease_key, owner, first_id, last_id, expires_at)"
+                    + " VALUES (:key, :owner, :firstId, :lastId, :expiresAt)", rows);
+        });
+
+        List<IdRange> others = leaseTransaction.execute(status -> jdbcTemplate.query(
+                "SELECT first_id, last_id FROM upload_lease WHERE owner <> :owner AND expires_at > :now",
+                Map.of("owner", owner, "now", now), (rs, row) -> new IdRange(rs.getString(1), rs.getString(2))));
+        if (others.stream().anyMatch(other -> ranges.values().stream().anyMatch(other::overlaps))) {
+            release(ranges.keySet(), owner);
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public void renew(String owner, Duration ttl) {
+        leaseTransaction.executeWithoutResult(status -> jdbcTemplate.update(
+                "UPDATE upload_lease SET expires_at = :expiresAt WHERE owner = :owner",
+                Map.of("owner", owner, "expiresAt", System.currentTimeMillis() + ttl.toMillis())));
+    }
+
+    @Override
+    public void release(Collection<String> keys, String owner) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        leaseTransaction.executeWithoutResult(status -> jdbcTemplate.update(
+                "DELETE FROM upload_lease WHERE lease_key IN (:keys) AND owner = :owner",
+                Map.of("keys", keys, "owner", owner)));
+    }
+}
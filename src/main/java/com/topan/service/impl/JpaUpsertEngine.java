@@ -0,0 +1,72 @@
+package com.topan.service.impl;
+
+import com.topan.entity.Employee;
+import com.topan.repository.EmployeeFingerprint;
+import com.topan.repository.EmployeeRepository;
+import com.topan.service.EmployeeUpsertEngine;
+import com.topan.service.UpsertCounts;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Upserts a batch in delta mode: one query reads the stored {@code Employee.fingerprint} of every id in the batch,
+ * rows whose fingerprint matches are skipped, and only the changed rows are loaded (one {@code findAllById}) and
+ * updated through dirty checking. New rows are persisted directly (a {@code save} on an assigned id would merge
+ * and select again), and the flush is left to Hibernate's JDBC batching ({@code hibernate.jdbc.batch_size}).
+ * Rows without a stored fingerprint count as changed, so they get one on their first upload.
+ */
+@Component
+@ConditionalOnProperty(name = "topan.upload.engine", havingValue = "jpa", matchIfMissing = true)
+@RequiredArgsConstructor(onConstructor = @__(@Autowired))
+public class JpaUpsertEngine implements EmployeeUpsertEngine {
+
+    private final EmployeeRepository employeeRepository;
+    private final EntityManager entityManager;
+
+    @Override
+    public UpsertCounts upsert(List<Employee> employees) {
+        Map<String, Long> storedFingerprints = new HashMap<>();
+        for (EmployeeFingerprint stored : employeeRepository.findFingerprintsByIdIn(employees.stream().map(Employee::getId).toList())) {
+            storedFingerprints.put(stored.id(), stored.fingerprint());
+        }
+
+        long inserted = 0;
+        long unchanged = 0;
+        Map<String, Employee> changedById = new HashMap<>();
+        for (Employee employee : employees) {
+            if (!storedFingerprints.containsKey(employee.getId())) {
+                entityManager.persist(employee);
+                inserted++;
+            } else if (Objects.equals(storedFingerprints.get(employee.getId()),
+                    Employee.fingerprint(employee.getLogin(), employee.getName(), employee.getSalary()))) {
+                unchanged++;
+            } else {
+                changedById.put(employee.getId(), employee);
+            }
+        }
+
+        if (!changedById.isEmpty()) {
+            for (Employee existingEmployee : employeeRepository.findAllById(changedById.keySet())) {
+                Employee employee = changedById.get(existingEmployee.getId());
+                existingEmployee.setLogin(employee.getLogin());
+                existingEmployee.setName(employee.getName());
+                existingEmployee.setSalary(employee.getSalary());
+                // Also makes a row without fingerprint dirty when its content is the same
+                existingEmployee.setFingerprint(Employee.fingerprint(employee.getLogin(), employee.getName(), employee.getSalary()));
+            }
+        }
+
+        // Write the batch out and drop it from the persistence context to keep the heap flat
+        entityManager.flush();
+        entityManager.clear();
+        return new UpsertCounts(inserted, changedById.size(), unchanged);
+    }
+}
@@ -0,0 +1,66 @@
+package com.topan.service.impl;
+
+import com.topan.service.IdRange;
+import com.topan.service.LeaseRegistry;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * In-process leases, kept in a concurrent map without locking. Consulted before the cluster registry so that
+ * uploads competing inside one JVM never reach the database.
+ * <p>
+ * Ranges are published first and only then checked against the live leases of other owners, and withdrawn on a
+ * conflict: of two uploads racing for overlapping ranges at least one sees the other and backs off, possibly both.
+ */
+@Component
+@Order(1)
+public class LocalLeaseRegistry implements LeaseRegistry {
+
+    private record Lease(String owner, IdRange range, long expiresAt) {
+    }
+
+    private final ConcurrentMap<String, Lease> leases = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean tryAcquire(Map<String, IdRange> ranges, String owner, Duration ttl) {
+        if (ranges.isEmpty()) {
+            return true;
+        }
+        long now = System.currentTimeMillis();
+        ranges.forEach((key, range) -> leases.put(key, new Lease(owner, range, now + ttl.toMillis())));
+        for (Map.Entry<String, Lease> entry : leases.entrySet()) {
+            Lease lease = entry.getValue();
+            if (lease.owner().equals(owner)) {
+                continue;
+            }
+            if (lease.expiresAt() <= now) {
+                leases.remove(entry.getKey(), lease);
+                continue;
+            }
+            if (ranges.values().stream().anyMatch(lease.range()::overlaps)) {
+                release(ranges.keySet(), owner);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void renew(String owner, Duration ttl) {
+        long expiresAt = System.currentTimeMillis() + ttl.toMillis();
+        leases.replaceAll((key, lease) -> lease.owner().equals(owner) ? new Lease(owner, lease.range(), expiresAt) : lease);
+    }
+
+    @Override
+    public void release(Collection<String> keys, String owner) {
+        for (String key : keys) {
+            leases.computeIfPresent(key, (k, current) -> current.owner().equals(owner) ? null : current);
+        }
+    }
+}
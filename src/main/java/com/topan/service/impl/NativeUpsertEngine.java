@@ -0,0 +1,190 @@
+package com.topan.service.impl;
+
+import com.mysql.cj.jdbc.JdbcStatement;
+import com.topan.entity.Employee;
+import com.topan.service.EmployeeUpsertEngine;
+import com.topan.service.UpsertCounts;
+import com.topan.util.CsvWriter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Upserts a batch without entities: the rows are bulk-loaded into a connection-local staging table and merged into
+ * {@code employee} by one statement, which also skips rows whose stored fingerprint matches.
+ * <ul>
+ *     <li>MySQL: {@code LOAD DATA LOCAL INFILE} streamed from memory (opt-in with
+ *     {@code topan.upload.native.load-data=true}, needs {@code local_infile=ON} on the server;
+ *     {@code NativeUpsertEngineConfig} turns on {@code allowLoadLocalInfile} for the driver), then
+ *     {@code INSERT ... SELECT ... ON DUPLICATE KEY UPDATE}</li>
+ *     <li>H2, used by the tests: {@code MERGE INTO ... KEY (id) SELECT ...}</li>
+ * </ul>
+ * Where {@code LOAD DATA} is turned off or refused, rows are staged with multi-row {@code INSERT}s instead. Every
+ * statement runs on the connection of the upload transaction and none of them commits (the staging table is a
+ * {@code TEMPORARY} table, whose creation does not commit on either database), so a failed upload still leaves
+ * nothing behind.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "topan.upload.engine", havingValue = "native")
+public class NativeUpsertEngine implements EmployeeUpsertEngine {
+
+    private static final String STAGE = "employee_stage";
+    private static final String STAGE_COLUMNS = "(id, login, name, salary, fingerprint)";
+    private static final String STAGE_DEFINITION = " (id VARCHAR(255) PRIMARY KEY, login VARCHAR(255),"
+            + " name VARCHAR(255), salary DECIMAL(38, 2), fingerprint BIGINT)";
+    /**
+     * Rows per multi-row {@code INSERT}, 2500 bind parameters
+     */
+    static final int INSERT_ROWS = 500;
+
+    /**
+     * Staged rows that are new or differ from the stored row, one per id
+     */
+    private static final String CHANGED_ROWS = "SELECT s.id, s.login AS new_login, s.name AS new_name,"
+            + " s.salary AS new_salary, s.fingerprint AS new_fingerprint FROM " + STAGE + " s"
+            + " LEFT JOIN employee e ON e.id = s.id"
+            + " WHERE e.id IS NULL OR e.fingerprint IS NULL OR e.fingerprint <> s.fingerprint";
+
+    private enum Database {MYSQL, H2}
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean loadData;
+    private volatile Database database;
+    private volatile boolean loadDataRefused;
+
+    @Autowired
+    public NativeUpsertEngine(JdbcTemplate jdbcTemplate,
+                              @Value("${topan.upload.native.load-data:false}") boolean loadData) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.loadData = loadData;
+    }
+
+    @Override
+    public UpsertCounts upsert(List<Employee> employees) {
+        if (employees.isEmpty()) {
+            return UpsertCounts.NONE;
+        }
+        return jdbcTemplate.execute((ConnectionCallback<UpsertCounts>) connection -> {
+            Database database = databaseOf(connection);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(database == Database.MYSQL
+                        ? "CREATE TEMPORARY TABLE IF NOT EXISTS " + STAGE + STAGE_DEFINITION
+                        : "CREATE LOCAL TEMPORARY TABLE IF NOT EXISTS " + STAGE + STAGE_DEFINITION + " TRANSACTIONAL");
+                // DELETE rather than TRUNCATE, which commits on MySQL
+                statement.executeUpdate("DELETE FROM " + STAGE);
+            }
+
+            if (database != Database.MYSQL || !loadData || loadDataRefused || !loadData(connection, employees)) {
+                insertRows(connection, employees);
+            }
+
+            long existing;
+            long unchanged;
+            try (Statement statement = connection.createStatement();
+                 ResultSet counts = statement.executeQuery("SELECT COUNT(*), COALESCE(SUM(CASE WHEN e.fingerprint = s.fingerprint"
+                         + " THEN 1 ELSE 0 END), 0) FROM " + STAGE + " s JOIN employee e ON e.id = s.id")) {
+                counts.next();
+                existing = counts.getLong(1);
+                unchanged = counts.getLong(2);
+            }
+
+            try (Statement statement = connection.createStatement()) {
+                statement.executeUpdate(database == Database.MYSQL
+                        ? "INSERT INTO employee " + STAGE_COLUMNS + " SELECT * FROM (" + CHANGED_ROWS + ") AS changed"
+                        + " ON DUPLICATE KEY UPDATE login = new_login, name = new_name, salary = new_salary,"
+                        + " fingerprint = new_fingerprint"
+                        : "MERGE INTO employee " + STAGE_COLUMNS + " KEY (id) " + CHANGED_ROWS);
+            }
+            return new UpsertCounts(employees.size() - existing, existing - unchanged, unchanged);
+        });
+    }
+
+    private Database databaseOf(Connection connection) throws SQLException {
+        if (database == null) {
+            String product = connection.getMetaData().getDatabaseProductName().toLowerCase(Locale.ROOT);
+            if (product.contains("mysql")) {
+                database = Database.MYSQL;
+            } else if (product.contains("h2")) {
+                database = Database.H2;
+            } else {
+                throw new IllegalStateException("The native upsert engine does not support " + product);
+            }
+        }
+        return database;
+    }
+
+    /**
+     * @return false when the server or driver refuses {@code LOAD DATA LOCAL}; it is then not tried again
+     */
+    private boolean loadData(Connection connection, List<Employee> employees) throws SQLException {
+        ByteArrayOutputStream rows = new ByteArrayOutputStream(employees.size() * 64);
+        try {
+            CsvWriter writer = new CsvWriter(rows);
+            for (Employee employee : employees) {
+                writer.writeWithFingerprint(employee);
+            }
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        try (Statement statement = connection.createStatement()) {
+            // The driver sends this stream instead of opening the named file
+            statement.unwrap(JdbcStatement.class).setLocalInfileInputStream(new ByteArrayInputStream(rows.toByteArray()));
+            statement.executeUpdate("LOAD DATA LOCAL INFILE 'upload' INTO TABLE " + STAGE + " CHARACTER SET utf8mb4"
+                    + " FIELDS TERMINATED BY ',' OPTIONALLY ENCLOSED BY '\"' ESCAPED BY ''"
+                    + " LINES TERMINATED BY '\\n' " + STAGE_COLUMNS);
+            return true;
+        } catch (SQLException e) {
+            // A failed statement does not end the MySQL transaction, so the rows can still be staged otherwise
+            log.warn("LOAD DATA LOCAL INFILE refused ({}), staging uploads with multi-row INSERTs instead", e.getMessage());
+            loadDataRefused = true;
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("DELETE FROM " + STAGE);
+        }
+        return false;
+    }
+
+    private static void insertRows(Connection connection, List<Employee> employees) throws SQLException {
+        for (int from = 0; from < employees.size(); from += INSERT_ROWS) {
+            List<Employee> rows = employees.subList(from, Math.min(from + INSERT_ROWS, employees.size()));
+            try (PreparedStatement insert = connection.prepareStatement(insertSql(rows.size()))) {
+                int parameter = 1;
+                for (Employee employee : rows) {
+                    insert.setString(parameter++, employee.getId());
+                    insert.setString(parameter++, employee.getLogin());
+                    insert.setString(parameter++, employee.getName());
+                    insert.setBigDecimal(parameter++, employee.getSalary());
+                    insert.setLong(parameter++, Employee.fingerprint(employee.getLogin(), employee.getName(), employee.getSalary()));
+                }
+                insert.executeUpdate();
+            }
+        }
+    }
+
+    private static String insertSql(int rows) {
+        StringBuilder sql = new StringBuilder("INSERT INTO " + STAGE + " " + STAGE_COLUMNS + " VALUES ");
+        for (int i = 0; i < rows; i++) {
+            sql.append(i == 0 ? "(?, ?, ?, ?, ?)" : ", (?, ?, ?, ?, ?)");
+        }
+        return sql.toString();
+    }
+}
@@ -0,0 +1,285 @@
+package com.topan.service.impl;
+
+import com.topan.entity.Employee;
+import com.topan.service.UploadJob;
+import com.topan.util.CompactStringSet;
+import com.topan.util.CsvChunker;
+import com.topan.util.CsvParser;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Parallel equivalent of the streaming validation pass for large files.
+ * <p>
+ * The file is split into record-aligned chunks that are parsed on a fork-join pool. Each worker checks the
+ * per-row rules and reduces every row to the hashes of its id and login. The chunks are then merged in file
+ * order through one {@link EmployeeValidator#hashed() hashed} validator, so cross-chunk duplicates are found
+ * with the same compact sets, and the first failing row is the same one the sequential pass would report, unless
+ * two distinct keys share a hash (see {@link EmployeeValidator} for the odds). The CSV files of an archive upload
+ * are validated the same way, one file per task.
+ * <p>
+ * Each chunk is merged as soon as it and the ones before it are done, and only a window of chunks is in flight at
+ * a time, so the hashes held at once are bounded by the window rather than by the file. A chunk with a stray quote,
+ * after which the chunk boundaries cannot be trusted (see {@link CsvChunker}), ends the parallel pass: the rest of
+ * the file, from the start of that chunk, is validated sequentially.
+ */
+@Component
+public class ParallelCsvValidator {
+
+    /**
+     * Chunks per worker thread, so that one slow chunk does not leave the other workers idle.
+     */
+    private static final int CHUNKS_PER_THREAD = 4;
+    /**
+     * Large files are cut into more chunks, so that the window of chunks in flight stays small.
+     */
+    private static final long MAX_CHUNK_SIZE = 4L * 1024 * 1024;
+
+    private final ForkJoinPool pool;
+
+    @Autowired
+    public ParallelCsvValidator(@Qualifier("uploadParsePool") ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    /**
+     * @param file   complete CSV file, header included
+     * @param job    receives per-row progress and may cancel the pass
+     * @param ranges receives every accepted id
+     * @param digest receives each chunk as a part, or null
+     */
+    EmployeeValidator validate(Path file, UploadJob job, IdRanges ranges, ContentDigest digest) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            int parts = (int) Math.max(getWindow(), (size + MAX_CHUNK_SIZE - 1) / MAX_CHUNK_SIZE);
+            List<CsvChunker.Chunk> rows = CsvChunker.split(channel, parts, pool);
+            // The header line is a chunk of its own, as a stray quote in it moves the first boundary as well
+            List<CsvChunker.Chunk> chunks = new ArrayList<>(rows.size() + 1);
+            chunks.add(new CsvChunker.Chunk(0, rows.isEmpty() ? size : rows.get(0).start()));
+            chunks.addAll(rows);
+
+            List<Callable<ChunkResult>> tasks = new ArrayList<>(chunks.size());
+            for (int i = 0; i < chunks.size(); i++) {
+                CsvChunker.Chunk chunk = chunks.get(i);
+                boolean header = i == 0;
+                tasks.add(() -> scan(CsvChunker.open(channel, chunk), header, true, job, ranges.getMaxRanges(),
+                        digest != null));
+            }
+            EmployeeValidator validator = EmployeeValidator.hashed();
+            int strayQuote = merge(tasks, validator, ranges, digest);
+            if (strayQuote >= 0) {
+                CsvChunker.Chunk rest = new CsvChunker.Chunk(chunks.get(strayQuote).start(), size);
+                validateSequentially(CsvChunker.open(channel, rest), strayQuote == 0, validator, job, ranges, digest);
+            }
+            return validator;
+        }
+    }
+
+    /**
+     * Validates several CSV files, such as the members of an archive, as if they were one file: each is parsed
+     * on a worker, header included, and their rows are merged in the given order, so duplicates across files are
+     * found and rows are numbered on from one file to the next.
+     *
+     * @param files  complete CSV files, header included
+     * @param job    receives per-row progress and may cancel the pass
+     * @param ranges receives every accepted id
+     * @param digest receives each file as a part, or null
+     */
+    EmployeeValidator validate(List<? extends InputStreamSource> files, UploadJob job, IdRanges ranges,
+                               ContentDigest digest) throws IOException {
+        List<Callable<ChunkResult>> tasks = new ArrayList<>(files.size());
+        for (InputStreamSource file : files) {
+            tasks.add(() -> scan(file.getInputStream(), true, false, job, ranges.getMaxRanges(), digest != null));
+        }
+        EmployeeValidator validator = EmployeeValidator.hashed();
+        merge(tasks, validator, ranges, digest);
+        return validator;
+    }
+
+    private int getWindow() {
+        return pool.getParallelism() * CHUNKS_PER_THREAD;
+    }
+
+    /**
+     * Runs the tasks, at most a window of them at a time, and merges their results in task order as they come in.
+     *
+     * @return index of the first task that found a stray quote, whose results and those after it are dropped, or
+     * -1
+     */
+    private int merge(List<Callable<ChunkResult>> tasks, EmployeeValidator validator, IdRanges ranges,
+                      ContentDigest digest) throws IOException {
+        Deque<Future<ChunkResult>> running = new ArrayDeque<>();
+        int submitted = 0;
+        try {
+            for (int i = 0; i < tasks.size(); i++) {
+                while (submitted < tasks.size() && running.size() < getWindow()) {
+                    running.add(pool.submit(tasks.get(submitted++)));
+                }
+                ChunkResult result;
+                try {
+                    result = get(running.poll());
+                } catch (CsvParser.StrayQuoteException e) {
+                    return i;
+                }
+                result.mergeInto(validator);
+                ranges.addAll(result.ranges);
+                if (digest != null) {
+                    digest.add(result.digest);
+                }
+            }
+            return -1;
+        } finally {
+            running.forEach(future -> future.cancel(true));
+        }
+    }
+
+    /**
+     * Same as the sequential validation pass of {@link UploadingServiceImpl}, continuing with the given validator.
+     */
+    private static void validateSequentially(InputStream inputStream, boolean header, EmployeeValidator validator,
+                                             UploadJob job, IdRanges ranges, ContentDigest digest) throws IOException {
+        MessageDigest part = digest == null ? null : ContentDigest.sha256();
+        if (part != null) {
+            inputStream = ContentDigest.digesting(inputStream, part);
+        }
+        CsvParser.RowHandler handler = employee -> {
+            job.rowProcessed();
+            if (validator.accept(employee) && !EmployeeValidator.isComment(employee)) {
+                ranges.add(employee.getId());
+            }
+        };
+        if (header) {
+            CsvParser.parse(inputStream, handler);
+        } else {
+            CsvParser.parseRows(inputStream, handler);
+        }
+        if (part != null) {
+            digest.add(part);
+        }
+    }
+
+    /**
+     * @param header whether the stream starts with the header line
+     * @param chunk  whether the stream is a chunk, see {@link CsvParser#parseChunk}
+     */
+    private static ChunkResult scan(InputStream inputStream, boolean header, boolean chunk, UploadJob job,
+                                    int maxRanges, boolean digest) throws IOException {
+        ChunkResult result = new ChunkResult(maxRanges);
+        if (digest) {
+            result.digest = ContentDigest.sha256();
+            inputStream = ContentDigest.digesting(inputStream, result.digest);
+        }
+        CsvParser.RowHandler handler = employee -> {
+            job.rowProcessed();
+            result.add(employee);
+        };
+        if (chunk) {
+            CsvParser.parseChunk(inputStream, header, handler);
+        } else {
+            CsvParser.parse(inputStream, handler);
+        }
+        return result;
+    }
+
+    private static ChunkResult get(Future<ChunkResult> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while validating");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            // Fork-join tasks wrap the checked exceptions of a callable
+            for (Throwable t = cause; t != null; t = t.getCause()) {
+                if (t instanceof IOException io) {
+                    throw io;
+                }
+            }
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * Per-row outcome of one chunk: hashes of id and login up to the first incomplete row, and which rows were
+     * comments.
+     */
+    private static final class ChunkResult {
+        private int rows;
+        private int firstIncomplete = -1;
+        private final BitSet comments = new BitSet();
+        private final IdRanges ranges;
+        private MessageDigest digest;
+        private long[] idHashes = new long[1024];
+        private long[] loginHashes = new long[1024];
+
+        ChunkResult(int maxRanges) {
+            ranges = new IdRanges(maxRanges);
+        }
+
+        void add(Employee employee) {
+            int row = rows++;
+            if (firstIncomplete >= 0) {
+                return;
+            }
+            if (EmployeeValidator.isComment(employee)) {
+                comments.set(row);
+                return;
+            }
+            if (!EmployeeValidator.isComplete(employee)) {
+                firstIncomplete = row;
+                return;
+            }
+            if (row >= idHashes.length) {
+                int length = Math.max(row + 1, idHashes.length * 2);
+                idHashes = Arrays.copyOf(idHashes, length);
+                loginHashes = Arrays.copyOf(loginHashes, length);
+            }
+            idHashes[row] = CompactStringSet.hash(employee.getId());
+            loginHashes[row] = CompactStringSet.hash(employee.getLogin());
+            ranges.add(employee.getId());
+        }
+
+        void mergeInto(EmployeeValidator validator) {
+            for (int row = 0; row < rows; row++) {
+                if (!validator.isValid()) {
+                    validator.skip(rows - row);
+                    return;
+                }
+                if (row == firstIncomplete) {
+                    validator.acceptIncomplete();
+                } else if (comments.get(row)) {
+                    validator.acceptComment();
+                } else {
+                    validator.acceptKeys(idHashes[row], loginHashes[row]);
+                }
+            }
+        }
+    }
+}
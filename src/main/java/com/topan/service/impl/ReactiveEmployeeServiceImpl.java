@@ -0,0 +1,35 @@
+package com.topan.service.impl;
+
+import com.topan.entity.Employee;
+import com.topan.repository.ReactiveEmployeeRepository;
+import com.topan.service.ReactiveEmployeeService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+
+@Service
+@ConditionalOnProperty(name = "topan.reactive.enabled", havingValue = "true")
+@RequiredArgsConstructor(onConstructor = @__(@Autowired))
+public class ReactiveEmployeeServiceImpl implements ReactiveEmployeeService {
+
+    private final ReactiveEmployeeRepository reactiveEmployeeRepository;
+
+    @Override
+    public Flux<Employee> getEmployees(BigDecimal minSalary, BigDecimal maxSalary, int offset, int limit, String sort) {
+        return Flux.defer(() -> {
+            Sort.Order order = EmployeeServiceImpl.parseSortableOrder(sort);
+            return reactiveEmployeeRepository.findBySalaryBetween(minSalary, maxSalary, order, (long) offset * limit, limit);
+        });
+    }
+
+    @Override
+    public Mono<Employee> getEmployeeById(String id) {
+        return reactiveEmployeeRepository.findById(id);
+    }
+}
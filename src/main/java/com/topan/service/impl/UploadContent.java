@@ -0,0 +1,183 @@
+package com.topan.service.impl;
+
+import org.springframework.core.io.InputStreamSource;
+
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * The CSV files of one upload: the upload itself, its decompressed content when it is gzip-compressed, or the CSV
+ * members of a zip archive in archive order. Every read streams the file again, decompressing on the fly, so
+ * nothing is inflated to disk or memory as a whole.
+ * <p>
+ * Against decompression bombs, compressed content may inflate to at most {@code maxSize} bytes: a gzip file per
+ * read, an archive in total over the sizes its members declare, and each member to no more than it declared.
+ * Reads beyond that fail with {@link TooLargeException}.
+ */
+final class UploadContent implements Closeable {
+
+    enum Format {CSV, GZIP, ZIP}
+
+    /**
+     * Content types accepted for POST /users/upload
+     */
+    static final Set<String> CONTENT_TYPES = Set.of("text/csv", "application/gzip", "application/x-gzip",
+            "application/zip", "application/x-zip-compressed");
+
+    private static final int INFLATE_BUFFER_SIZE = 64 * 1024;
+
+    private final List<InputStreamSource> files;
+    private final ZipFile archive;
+
+    private UploadContent(List<InputStreamSource> files, ZipFile archive) {
+        this.files = files;
+        this.archive = archive;
+    }
+
+    /**
+     * Tells the formats apart by their leading bytes, whatever the content type or file name claimed.
+     */
+    static Format detect(InputStreamSource source) throws IOException {
+        byte[] magic;
+        try (InputStream inputStream = source.getInputStream()) {
+            magic = inputStream.readNBytes(4);
+        }
+        if (magic.length >= 2 && (magic[0] & 0xff) == 0x1f && (magic[1] & 0xff) == 0x8b) {
+            return Format.GZIP;
+        }
+        // Local file header, or the end record of an archive without members
+        if (magic.length == 4 && magic[0] == 'P' && magic[1] == 'K'
+                && ((magic[2] == 3 && magic[3] == 4) || (magic[2] == 5 && magic[3] == 6))) {
+            return Format.ZIP;
+        }
+        return Format.CSV;
+    }
+
+    static UploadContent csv(InputStreamSource source) {
+        return new UploadContent(List.of(source), null);
+    }
+
+    static UploadContent gzip(InputStreamSource source, long maxSize) {
+        return new UploadContent(List.of(() -> new LimitedInputStream(
+                new GZIPInputStream(source.getInputStream(), INFLATE_BUFFER_SIZE), maxSize)), null);
+    }
+
+    /**
+     * Members are read through {@link ZipFile}, which can inflate several of them at once.
+     *
+     * @param file the archive; it has to stay in place until this content is closed
+     * @throws TooLargeException when the CSV members declare more than {@code maxSize} bytes in total
+     */
+    static UploadContent zip(Path file, long maxSize) throws IOException {
+        ZipFile archive = new ZipFile(file.toFile());
+        List<InputStreamSource> files = new ArrayList<>();
+        long total = 0;
+        for (ZipEntry entry : archive.stream().toList()) {
+            if (isCsv(entry)) {
+                total += Math.max(entry.getSize(), 0);
+                files.add(() -> new LimitedInputStream(archive.getInputStream(entry), Math.max(entry.getSize(), 0)));
+            }
+        }
+        if (total > maxSize) {
+            archive.close();
+            throw new TooLargeException(maxSize);
+        }
+        return new UploadContent(List.copyOf(files), archive);
+    }
+
+    /**
+     * Skips directories, other files and the metadata some archivers add ({@code __MACOSX/}, dot files).
+     */
+    private static boolean isCsv(ZipEntry entry) {
+        String name = entry.getName();
+        String baseName = name.substring(name.lastIndexOf('/') + 1);
+        return !entry.isDirectory() && !name.startsWith("__MACOSX/") && !baseName.startsWith(".")
+                && baseName.toLowerCase(Locale.ROOT).endsWith(".csv");
+    }
+
+    /**
+     * @return each a complete CSV file, header included; empty for an archive without CSV members
+     */
+    List<InputStreamSource> getFiles() {
+        return files;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (archive != null) {
+            archive.close();
+        }
+    }
+
+    /**
+     * Compressed content inflates to more than the configured maximum.
+     */
+    static final class TooLargeException extends IOException {
+        private final long maxSize;
+
+        TooLargeException(long maxSize) {
+            super("Decompressed content exceeds " + maxSize + " bytes");
+            this.maxSize = maxSize;
+        }
+
+        long getMaxSize() {
+            return maxSize;
+        }
+    }
+
+    /**
+     * Fails once more than {@code limit} bytes have been read.
+     */
+    private static final class LimitedInputStream extends FilterInputStream {
+        private final long limit;
+        private long remaining;
+
+        LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.limit = limit;
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                count(read);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count(skipped);
+            return skipped;
+        }
+
+        private void count(long bytes) throws TooLargeException {
+            remaining -= bytes;
+            if (remaining < 0) {
+                throw new TooLargeException(limit);
+            }
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.topan.service.impl;
+
+import com.topan.service.IdRange;
+import com.topan.service.LeaseRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps uploads that touch the same employees from being applied at the same time.
+ * <p>
+ * An upload leases the ranges its ids fall into, at most {@code topan.upload.coordination.max-ranges} of them, see
+ * {@link IdRanges}, so uploads over disjoint ranges of ids proceed in parallel while overlapping ones are turned
+ * away. Ranges are taken from every {@link LeaseRegistry} (local first, then cluster) and given back everywhere if
+ * any one refuses them. While an upload runs, its leases are renewed in the background, a third of the lease
+ * duration apart, so that a long upload keeps them whatever it is busy with.
+ */
+@Slf4j
+@Component
+public class UploadCoordinator {
+
+    /**
+     * Ranges held by one upload.
+     */
+    @Getter
+    public static final class Permit {
+        private final String owner;
+        /**
+         * Every range held, by its lease key
+         */
+        private final Map<String, IdRange> leases;
+        private IdRanges ranges;
+
+        private Permit(String owner, Map<String, IdRange> leases, IdRanges ranges) {
+            this.owner = owner;
+            this.leases = leases;
+            this.ranges = ranges;
+        }
+    }
+
+    private final List<LeaseRegistry> registries;
+    private final int maxRanges;
+    private final Duration ttl;
+    private final String nodeId;
+    private final Set<Permit> active = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService renewer;
+
+    @Autowired
+    public UploadCoordinator(List<LeaseRegistry> registries,
+                             @Value("${topan.upload.coordination.max-ranges:32}") int maxRanges,
+                             @Value("${topan.upload.coordination.lease-ttl:PT10M}") Duration ttl) {
+        this.registries = registries;
+        this.maxRanges = maxRanges;
+        this.ttl = ttl;
+        this.nodeId = hostName() + "-" + UUID.randomUUID().toString().substring(0, 8);
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("upload-lease-renewer-");
+        threadFactory.setDaemon(true);
+        this.renewer = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        long period = Math.max(1, ttl.toMillis() / 3);
+        renewer.scheduleWithFixedDelay(this::renewActive, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return an empty set of ranges to add the ids of an upload to
+     */
+    public IdRanges newRanges() {
+        return new IdRanges(maxRanges);
+    }
+
+    /**
+     * @param touched  ranges of every id in the upload
+     * @param uploadId identifies the upload within this node
+     * @return the permit, or empty when another upload holds an overlapping range
+     */
+    public Optional<Permit> tryAcquire(IdRanges touched, String uploadId) {
+        String owner = nodeId + ":" + uploadId;
+        IdRanges ranges = touched.copy();
+        Map<String, IdRange> leases = keyed(ranges.toList());
+        if (!tryAcquireEverywhere(leases, owner)) {
+            return Optional.empty();
+        }
+        Permit permit = new Permit(owner, leases, ranges);
+        active.add(permit);
+        return Optional.of(permit);
+    }
+
+    /**
+     * Widens a permit, for an upload that learns which ids it touches while it is being applied. Pass empty
+     * ranges to {@link #tryAcquire} to start with a permit that holds nothing. The permit keeps at most
+     * {@code max-ranges} leases: ranges it outgrows are given back once the wider ones are held.
+     *
+     * @param touched ranges of the ids about to be written, held or not
+     * @return false when another upload holds an overlapping range; the permit is then unchanged
+     */
+    public boolean tryExtend(Permit permit, IdRanges touched) {
+        if (permit.ranges.covers(touched)) {
+            return true;
+        }
+        IdRanges ranges = permit.ranges.copy();
+        ranges.addAll(touched);
+        List<IdRange> wanted = ranges.toList();
+
+        List<IdRange> added = new ArrayList<>(wanted);
+        added.removeAll(permit.leases.values());
+        Map<String, IdRange> leases = keyed(added);
+        if (!tryAcquireEverywhere(leases, permit.owner)) {
+            return false;
+        }
+        List<String> outgrown = new ArrayList<>();
+        permit.leases.forEach((key, range) -> {
+            if (!wanted.contains(range)) {
+                outgrown.add(key);
+            }
+        });
+        permit.leases.keySet().removeAll(outgrown);
+        permit.leases.putAll(leases);
+        permit.ranges = ranges;
+        releaseEverywhere(outgrown, permit.owner);
+        return true;
+    }
+
+    public void release(Permit permit) {
+        active.remove(permit);
+        releaseEverywhere(permit.leases.keySet(), permit.owner);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        renewer.shutdownNow();
+    }
+
+    private void renewActive() {
+        for (Permit permit : active) {
+            for (LeaseRegistry registry : registries) {
+                try {
+                    registry.renew(permit.owner, ttl);
+                } catch (RuntimeException e) {
+                    // Tried again at the next round, well before the lease expires
+                    log.warn("Could not renew the leases of {}", permit.owner, e);
+                }
+            }
+        }
+    }
+
+    private boolean tryAcquireEverywhere(Map<String, IdRange> leases, String owner) {
+        if (leases.isEmpty()) {
+            return true;
+        }
+        for (int i = 0; i < registries.size(); i++) {
+            boolean acquired = false;
+            try {
+                acquired = registries.get(i).tryAcquire(leases, owner, ttl);
+            } finally {
+                if (!acquired) {
+                    log.debug("{} blocked on {}", owner, leases.values());
+                    releaseEverywhere(registries.subList(0, i), leases.keySet(), owner);
+                }
+            }
+            if (!acquired) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void releaseEverywhere(Collection<String> keys, String owner) {
+        releaseEverywhere(registries, keys, owner);
+    }
+
+    private static void releaseEverywhere(List<LeaseRegistry> registries, Collection<String> keys, String owner) {
+        for (int i = registries.size() - 1; i >= 0; i--) {
+            try {
+                registries.get(i).release(keys, owner);
+            } catch (RuntimeException e) {
+                // The leases will expire on their own
+                log.warn("Could not release {} for {}", keys, owner, e);
+            }
+        }
+    }
+
+    private static Map<String, IdRange> keyed(List<IdRange> ranges) {
+        Map<String, IdRange> keyed = new LinkedHashMap<>();
+        for (IdRange range : ranges) {
+            keyed.put(UUID.randomUUID().toString(), range);
+        }
+        return keyed;
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "unknown-host";
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.topan.service.impl;
+
+import com.topan.service.UploadJob;
+import com.topan.service.UploadJobService;
+import com.topan.service.UploadingService;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor(onConstructor = @__(@Autowired))
+public class UploadJobServiceImpl implements UploadJobService {
+
+    private final UploadingService uploadingService;
+    private final TaskExecutor uploadExecutor;
+    private final UploadMetrics uploadMetrics;
+
+    @Value("${topan.upload.async.retention:PT1H}")
+    private Duration retention = Duration.ofHours(1);
+
+    private final Map<String, UploadJob> jobs = new ConcurrentHashMap<>();
+
+    @Override
+    public ResponseEntity<?> submit(MultipartFile file) {
+        Optional<ResponseEntity<String>> rejection = uploadingService.reject(file);
+        if (rejection.isPresent()) {
+            return rejection.get();
+        }
+        evictFinishedJobs();
+
+        // The multipart temp file is deleted when the request completes, so the job gets its own copy
+        Path spool;
+        try {
+            Timer.Sample sample = uploadMetrics.start();
+            spool = Files.createTempFile("upload-", ".csv");
+            file.transferTo(spool);
+            uploadMetrics.record(UploadMetrics.Phase.SPOOL, sample);
+        } catch (IOException e) {
+            log.error("Could not spool upload {}", file.getOriginalFilename(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+
+        ResponseEntity<UploadJob> response = enqueue(new UploadJob(file.getOriginalFilename()),
+                new FileSystemResource(spool), null, outcome -> deleteQuietly(spool));
+        if (response.getStatusCode() != HttpStatus.ACCEPTED) {
+            deleteQuietly(spool);
+        }
+        return response;
+    }
+
+    @Override
+    public ResponseEntity<UploadJob> submit(InputStreamSource content, String filename, String idempotencyKey,
+                                            Consumer<ResponseEntity<String>> onFinished) {
+        evictFinishedJobs();
+        return enqueue(new UploadJob(filename), content, idempotencyKey, onFinished);
+    }
+
+    private ResponseEntity<UploadJob> enqueue(UploadJob job, InputStreamSource content, String idempotencyKey,
+                                              Consumer<ResponseEntity<String>> onFinished) {
+        jobs.put(job.getId(), job);
+        try {
+            uploadExecutor.execute(() -> run(job, content, idempotencyKey, onFinished));
+        } catch (TaskRejectedException e) {
+            jobs.remove(job.getId());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        return ResponseEntity.accepted().location(URI.create("/users/upload/" + job.getId())).body(job);
+    }
+
+    private void run(UploadJob job, InputStreamSource content, String idempotencyKey,
+                     Consumer<ResponseEntity<String>> onFinished) {
+        ResponseEntity<String> outcome = null;
+        try {
+            if (!job.isCancelRequested()) {
+                outcome = uploadingService.process(content, job, idempotencyKey);
+            }
+        } catch (RuntimeException e) {
+            log.error("Upload job {} failed", job.getId(), e);
+        } finally {
+            onFinished.accept(outcome);
+        }
+    }
+
+    @Override
+    public ResponseEntity<UploadJob> getJob(String jobId) {
+        UploadJob job = jobs.get(jobId);
+        return job != null ? ResponseEntity.ok(job) : ResponseEntity.notFound().build();
+    }
+
+    @Override
+    public ResponseEntity<UploadJob> cancelJob(String jobId) {
+        UploadJob job = jobs.get(jobId);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return job.cancel() ? ResponseEntity.accepted().body(job) : ResponseEntity.status(HttpStatus.CONFLICT).body(job);
+    }
+
+    private void evictFinishedJobs() {
+        Instant cutoff = Instant.now().minus(retention);
+        jobs.values().removeIf(job -> job.isFinished() && job.getFinishedAt().isBefore(cutoff));
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Could not delete spool file {}", path, e);
+        }
+    }
+}
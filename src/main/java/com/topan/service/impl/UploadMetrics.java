@@ -0,0 +1,103 @@
+package com.topan.service.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Micrometer instruments for the upload pipeline. Everything is recorded once per phase or per batch, never per
+ * row, and the meters are registered up front, so recording is a few atomic updates.
+ * <ul>
+ *     <li>{@code topan.upload.phase} timer, tagged {@code phase}: receive (the container reading the multipart
+ *     body off the socket, timed by {@code UploadReceiveFilter} for {@code POST /users/upload}), spool (copy of the request body to disk),
+ *     digest (hash of the body looked up in {@link UploadResultCache}), validate (parse and validate pass),
+ *     persist (parse and write pass), pipeline (the single pass that replaces both with
+ *     {@code topan.upload.pipeline.enabled}) and upsert (the part of persist or pipeline spent in
+ *     {@code uploadTransitionally}, so persist minus upsert is parse time)</li>
+ *     <li>{@code topan.upload} timer of whole uploads, tagged {@code outcome}</li>
+ *     <li>{@code topan.upload.rows} and {@code topan.upload.bytes} counters of accepted content; their rates over
+ *     the phase timers give rows and bytes per second</li>
+ *     <li>{@code topan.upload.rejected} counter, tagged {@code reason}</li>
+ *     <li>{@code topan.upload.replayed} counter of uploads answered from {@link UploadResultCache}, tagged
+ *     {@code by} (digest or key)</li>
+ *     <li>{@code topan.upload.in.flight} gauge of uploads being processed</li>
+ * </ul>
+ */
+@Component
+public class UploadMetrics {
+
+    public enum Phase {
+        RECEIVE, SPOOL, DIGEST, VALIDATE, PERSIST, PIPELINE, UPSERT
+    }
+
+    private final MeterRegistry registry;
+    private final Map<Phase, Timer> phases = new EnumMap<>(Phase.class);
+    private final Counter rows;
+    private final Counter bytes;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    @Autowired
+    public UploadMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        for (Phase phase : Phase.values()) {
+            phases.put(phase, Timer.builder("topan.upload.phase")
+                    .description("Time spent in one phase of an upload")
+                    .tag("phase", phase.name().toLowerCase(Locale.ROOT))
+                    .publishPercentileHistogram()
+                    .register(registry));
+        }
+        rows = Counter.builder("topan.upload.rows").description("Rows of accepted uploads").register(registry);
+        bytes = Counter.builder("topan.upload.bytes").description("Bytes of accepted uploads").baseUnit("bytes")
+                .register(registry);
+        registry.gauge("topan.upload.in.flight", inFlight);
+    }
+
+    public Timer.Sample start() {
+        return Timer.start(registry);
+    }
+
+    public void record(Phase phase, Timer.Sample sample) {
+        sample.stop(phases.get(phase));
+    }
+
+    /**
+     * @return sample to pass to {@link #finished} once the upload is over
+     */
+    public Timer.Sample started() {
+        inFlight.incrementAndGet();
+        return start();
+    }
+
+    /**
+     * @param outcome lowercase {@code UploadJob.Phase} the upload ended in
+     */
+    public void finished(Timer.Sample sample, String outcome) {
+        inFlight.decrementAndGet();
+        sample.stop(registry.timer("topan.upload", "outcome", outcome));
+    }
+
+    public void accepted(long rowCount, long byteCount) {
+        rows.increment(rowCount);
+        if (byteCount > 0) {
+            bytes.increment(byteCount);
+        }
+    }
+
+    public void rejected(String reason) {
+        registry.counter("topan.upload.rejected", "reason", reason).increment();
+    }
+
+    /**
+     * @param by {@code digest} or {@code key}
+     */
+    public void replayed(String by) {
+        registry.counter("topan.upload.replayed", "by", by).increment();
+    }
+}
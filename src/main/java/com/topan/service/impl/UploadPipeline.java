@@ -0,0 +1,259 @@
+package com.topan.service.impl;
+
+import com.topan.entity.Employee;
+import com.topan.service.UploadJob;
+import com.topan.util.CsvParser;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Single-pass alternative to the validate-then-persist passes of {@link UploadingServiceImpl}: a parser thread, a
+ * validator thread and the calling thread, which writes, work on consecutive batches at the same time. The
+ * stages hand batches over through queues of {@code topan.upload.pipeline.queue-capacity} batches, so a stage
+ * that runs ahead blocks instead of buffering the file.
+ * <p>
+ * Rows reach the writer only once validated, in file order, and validation sees every row in file order, so the
+ * outcome and the first failing row are those of the two-pass upload. Rows before a failing one have already been
+ * written by then: the caller runs the pipeline in one transaction and rolls it back when the result is invalid.
+ * Each batch is admitted on the validator thread before it is handed over, so that taking the leases of its ids
+ * never runs inside the writer's transaction.
+ */
+@Component
+public class UploadPipeline {
+
+    /**
+     * Handed to the writer stage; the stage returns false to stop the pipeline.
+     */
+    @FunctionalInterface
+    interface BatchWriter {
+        /**
+         * @param batch validated and admitted rows, comments removed
+         */
+        boolean write(List<Employee> batch);
+    }
+
+    /**
+     * Ends a queue, compared by identity
+     */
+    private static final List<Employee> END = List.of();
+    private static final long POLL_MILLIS = 100;
+
+    private final ExecutorService stageExecutor;
+    private final int queueCapacity;
+
+    @Autowired
+    public UploadPipeline(@Qualifier("uploadPipelineExecutor") ExecutorService stageExecutor,
+                          @Value("${topan.upload.pipeline.queue-capacity:4}") int queueCapacity) {
+        this.stageExecutor = stageExecutor;
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Runs the pipeline; returns once every stage has stopped.
+     *
+     * @param batchSize rows per batch
+     * @param admit     called on the validator thread with each validated batch, comments removed, before the writer
+     *                  sees it; returns false to stop the pipeline
+     * @param writer    called on the calling thread
+     * @return the validator, invalid when a row failed validation; the writer has not seen that row's batch then
+     * @throws CancellationException when the job was cancelled
+     */
+    EmployeeValidator run(InputStream inputStream, UploadJob job, int batchSize, Predicate<List<Employee>> admit,
+                          BatchWriter writer) throws IOException {
+        BlockingQueue<List<Employee>> parsed = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<List<Employee>> validated = new ArrayBlockingQueue<>(queueCapacity);
+        EmployeeValidator validator = new EmployeeValidator();
+        Stop stop = new Stop();
+
+        Future<?> parser = stageExecutor.submit(() -> {
+            try {
+                Batcher batcher = new Batcher(parsed, batchSize, stop);
+                CsvParser.parse(inputStream, employee -> {
+                    job.rowProcessed();
+                    batcher.add(employee);
+                });
+                batcher.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                offerEnd(parsed, stop);
+            }
+            return null;
+        });
+
+        Future<?> checker = stageExecutor.submit(() -> {
+            try {
+                for (List<Employee> batch = take(parsed, stop); batch != END; batch = take(parsed, stop)) {
+                    List<Employee> rows = new ArrayList<>(batch.size());
+                    for (Employee employee : batch) {
+                        if (!validator.accept(employee)) {
+                            stop.set();
+                            return null;
+                        }
+                        if (!EmployeeValidator.isComment(employee)) {
+                            rows.add(employee);
+                        }
+                    }
+                    if (!admit.test(rows)) {
+                        stop.set();
+                        return null;
+                    }
+                    put(validated, rows, stop);
+                }
+            } finally {
+                offerEnd(validated, stop);
+            }
+            return null;
+        });
+
+        boolean written = false;
+        try {
+            for (List<Employee> batch = take(validated, stop); batch != END; batch = take(validated, stop)) {
+                if (!writer.write(batch)) {
+                    break;
+                }
+            }
+            written = true;
+        } finally {
+            // Whatever ended the writer stage, the other stages stop at their next hand-over
+            stop.set();
+            await(parser, written);
+            await(checker, written);
+        }
+        return validator;
+    }
+
+    /**
+     * Collects parsed rows into batches for the validator stage.
+     */
+    private static final class Batcher {
+        private final BlockingQueue<List<Employee>> queue;
+        private final int batchSize;
+        private final Stop stop;
+        private List<Employee> rows;
+
+        Batcher(BlockingQueue<List<Employee>> queue, int batchSize, Stop stop) {
+            this.queue = queue;
+            this.batchSize = batchSize;
+            this.stop = stop;
+            this.rows = new ArrayList<>(batchSize);
+        }
+
+        void add(Employee employee) {
+            rows.add(employee);
+            if (rows.size() == batchSize) {
+                flush();
+            }
+        }
+
+        void flush() {
+            if (!rows.isEmpty()) {
+                put(queue, rows, stop);
+                rows = new ArrayList<>(batchSize);
+            }
+        }
+    }
+
+    /**
+     * Set once any stage stops early; the others then give up instead of blocking on a full or empty queue.
+     */
+    private static final class Stop {
+        private volatile boolean set;
+
+        void set() {
+            set = true;
+        }
+    }
+
+    /**
+     * Ends a stage that found the pipeline stopped; not a failure of its own.
+     */
+    private static final class StoppedException extends RuntimeException {
+        StoppedException() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static void put(BlockingQueue<List<Employee>> queue, List<Employee> batch, Stop stop) {
+        try {
+            while (!queue.offer(batch, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (stop.set) {
+                    throw new StoppedException();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted");
+        }
+    }
+
+    private static List<Employee> take(BlockingQueue<List<Employee>> queue, Stop stop) {
+        try {
+            while (!stop.set) {
+                List<Employee> batch = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (batch != null) {
+                    return batch;
+                }
+            }
+            return END;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted");
+        }
+    }
+
+    /**
+     * Tells the next stage that nothing more follows, unless the pipeline is being torn down anyway.
+     */
+    private static void offerEnd(BlockingQueue<List<Employee>> queue, Stop stop) {
+        try {
+            while (!queue.offer(END, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (stop.set) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @param rethrow false when the writer stage already failed, whose exception then wins
+     */
+    private static void await(Future<?> stage, boolean rethrow) throws IOException {
+        try {
+            stage.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting for the upload pipeline");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (!rethrow || cause instanceof StoppedException) {
+                return;
+            }
+            if (cause instanceof UncheckedIOException io) {
+                throw io.getCause();
+            }
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.topan.service.impl;
+
+import com.topan.service.UpsertCounts;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Results of recently applied uploads, so that a client resending the same upload gets the first result back
+ * instead of the file being written again.
+ * <p>
+ * Results are found by the client's {@code Idempotency-Key} or by the digest of the upload content. A result found
+ * by key is replayed regardless of later writes, as the key names one request rather than a table state, but only
+ * for the same content. Every write to the employee table moves a write generation forward: a result found by
+ * digest is only replayed while the generation is still the one it was stored at, because a later write may have
+ * changed rows the upload set. Generations are counted per node and cannot see writes made through another one, so
+ * replay by digest is off when uploads are coordinated across a cluster
+ * ({@code topan.upload.coordination.cluster=true}). At most {@code capacity} entries are kept, least recently used
+ * first out; a capacity of 0 turns the cache off.
+ */
+@Component
+public class UploadResultCache {
+
+    /**
+     * Result of one successful upload.
+     *
+     * @param generation write generation right after the upload was applied
+     * @param digest     digest of the upload content, see {@code ContentDigest}
+     */
+    public record Applied(long generation, UpsertCounts counts, String body, String digest) {
+    }
+
+    private final int capacity;
+    private final boolean cluster;
+    private final AtomicLong generation = new AtomicLong();
+    private final Map<String, Applied> entries;
+
+    @Autowired
+    public UploadResultCache(@Value("${topan.upload.idempotency.capacity:1024}") int capacity,
+                             @Value("${topan.upload.coordination.cluster:true}") boolean cluster) {
+        this.capacity = capacity;
+        this.cluster = cluster;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Applied> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    public boolean isEnabled() {
+        return capacity > 0;
+    }
+
+    public boolean isDigestReplayEnabled() {
+        return isEnabled() && !cluster;
+    }
+
+    public long generation() {
+        return generation.get();
+    }
+
+    /**
+     * To be called once a write to the employee table is committed.
+     *
+     * @return the new generation
+     */
+    public long recordWrite() {
+        return generation.incrementAndGet();
+    }
+
+    /**
+     * @param digest digest of the upload content
+     * @return the result of an upload of the same content, if nothing was written since
+     */
+    public Optional<Applied> findByDigest(String digest) {
+        if (!isDigestReplayEnabled()) {
+            return Optional.empty();
+        }
+        return find("sha256:" + digest).filter(applied -> applied.generation() == generation.get());
+    }
+
+    /**
+     * @return the result of the upload sent with this key, to be replayed only if {@link Applied#digest()} matches
+     */
+    public Optional<Applied> findByKey(String idempotencyKey) {
+        return find("key:" + idempotencyKey);
+    }
+
+    /**
+     * @param digest         digest of the upload content to find the result by, or null
+     * @param idempotencyKey client-chosen key of the upload, or null
+     */
+    public void store(String digest, String idempotencyKey, Applied applied) {
+        if (!isEnabled()) {
+            return;
+        }
+        synchronized (entries) {
+            if (digest != null && isDigestReplayEnabled()) {
+                entries.put("sha256:" + digest, applied);
+            }
+            if (idempotencyKey != null) {
+                entries.put("key:" + idempotencyKey, applied);
+            }
+        }
+    }
+
+    private Optional<Applied> find(String key) {
+        synchronized (entries) {
+            return Optional.ofNullable(entries.get(key));
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.topan.service.impl;
+
+import com.topan.service.UploadJob;
+import com.topan.service.UploadJobService;
+import com.topan.service.UploadSession;
+import com.topan.service.UploadSessionService;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps each session's chunks in a spool file of its own. Chunks are written with positional
+ * {@link FileChannel} writes, which need no lock between them, so parallel chunks of one session only contend on
+ * the bookkeeping in {@link UploadSession}. Completion hands the spool file itself to an
+ * {@link UploadJobService asynchronous job}, which reads it as it would a spooled multipart upload.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor(onConstructor = @__(@Autowired))
+public class UploadSessionServiceImpl implements UploadSessionService {
+
+    private static final Pattern CONTENT_RANGE = Pattern.compile("bytes (\\d+)-(\\d+)/(\\d+|\\*)");
+    private static final int CHUNK_BUFFER_SIZE = 64 * 1024;
+
+    private final UploadJobService uploadJobService;
+    private final UploadMetrics uploadMetrics;
+
+    /**
+     * Sessions without a chunk for this long are discarded
+     */
+    @Value("${topan.upload.sessions.ttl:PT24H}")
+    private Duration ttl = Duration.ofHours(24);
+
+    @Value("${topan.upload.sessions.max-open:64}")
+    private int maxOpen = 64;
+
+    @Value("${topan.upload.max-size:4GB}")
+    private DataSize maxSize = DataSize.ofGigabytes(4);
+
+    private final Map<String, Spool> sessions = new ConcurrentHashMap<>();
+
+    private record Spool(UploadSession session, Path path, FileChannel channel) {
+    }
+
+    @Override
+    public ResponseEntity<UploadSession> initiate(String filename, long size) {
+        if (size <= 0) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (size > maxSize.toBytes()) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+        }
+        evictIdleSessions();
+        if (sessions.size() >= maxOpen) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+
+        UploadSession session = new UploadSession(filename, size);
+        Path path = null;
+        try {
+            path = Files.createTempFile("upload-session-", ".csv");
+            if (Files.getFileStore(path).getUsableSpace() < size) {
+                deleteQuietly(path);
+                return ResponseEntity.status(HttpStatus.INSUFFICIENT_STORAGE).build();
+            }
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE);
+            sessions.put(session.getId(), new Spool(session, path, channel));
+        } catch (IOException e) {
+            log.error("Could not create spool file for upload session of {}", filename, e);
+            if (path != null) {
+                deleteQuietly(path);
+            }
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+        return ResponseEntity.created(URI.create("/users/upload/sessions/" + session.getId())).body(session);
+    }
+
+    @Override
+    public ResponseEntity<UploadSession> writeChunk(String sessionId, String contentRange, long contentLength,
+                                                    InputStream body) {
+        Spool spool = sessions.get(sessionId);
+        if (spool == null) {
+            return ResponseEntity.notFound().build();
+        }
+        UploadSession session = spool.session();
+        Matcher range = contentRange == null ? null : CONTENT_RANGE.matcher(contentRange);
+        if (range == null || !range.matches()) {
+            return ResponseEntity.badRequest().body(session);
+        }
+        long start;
+        long end;
+        try {
+            start = Long.parseLong(range.group(1));
+            end = Long.parseLong(range.group(2));
+        } catch (NumberFormatException e) {
+            return ResponseEntity.badRequest().body(session);
+        }
+        boolean sizeMatches = range.group(3).equals("*") || range.group(3).equals(Long.toString(session.getSize()));
+        if (start > end || end >= session.getSize() || !sizeMatches) {
+            return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE).body(session);
+        }
+        if (contentLength < 0) {
+            return ResponseEntity.status(HttpStatus.LENGTH_REQUIRED).body(session);
+        }
+        if (contentLength != end - start + 1) {
+            return ResponseEntity.badRequest().body(session);
+        }
+        if (!session.beginWrite()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(session);
+        }
+
+        long position = start;
+        boolean overlong = false;
+        IOException spoolFailure = null;
+        Timer.Sample sample = uploadMetrics.start();
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate(CHUNK_BUFFER_SIZE);
+            long remaining = end - start + 1;
+            int read;
+            while (remaining > 0
+                    && (read = body.read(buffer.array(), 0, (int) Math.min(buffer.capacity(), remaining))) != -1) {
+                buffer.limit(read);
+                try {
+                    while (buffer.hasRemaining()) {
+                        position += spool.channel().write(buffer, position);
+                    }
+                } catch (IOException e) {
+                    spoolFailure = e;
+                    throw e;
+                }
+                buffer.clear();
+                remaining -= read;
+            }
+            overlong = remaining == 0 && body.read() != -1;
+        } catch (IOException e) {
+            // Usually the client went away; what was written so far is kept so that it can resume from there
+            log.debug("Chunk {} of upload session {} ended at {}", contentRange, sessionId, position, e);
+        } finally {
+            // A body longer than it declared is not trusted at all
+            session.endWrite(start, overlong ? start : position);
+            uploadMetrics.record(UploadMetrics.Phase.SPOOL, sample);
+        }
+        if (spoolFailure != null) {
+            log.error("Could not write chunk {} of upload session {}", contentRange, sessionId, spoolFailure);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(session);
+        }
+        if (overlong || position <= end) {
+            return ResponseEntity.badRequest().body(session);
+        }
+        return ResponseEntity.ok(session);
+    }
+
+    @Override
+    public ResponseEntity<UploadSession> getSession(String sessionId) {
+        Spool spool = sessions.get(sessionId);
+        return spool != null ? ResponseEntity.ok(spool.session()) : ResponseEntity.notFound().build();
+    }
+
+    @Override
+    public ResponseEntity<UploadJob> complete(String sessionId, String idempotencyKey) {
+        Spool spool = sessions.get(sessionId);
+        if (spool == null) {
+            return ResponseEntity.notFound().build();
+        }
+        UploadSession session = spool.session();
+        if (!session.beginComplete()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+
+        ResponseEntity<UploadJob> response = uploadJobService.submit(new FileSystemResource(spool.path()),
+                session.getFilename(), idempotencyKey, outcome -> {
+                    boolean applied = outcome != null && outcome.getStatusCode().is2xxSuccessful();
+                    session.endComplete(applied);
+                    if (applied) {
+                        discard(spool);
+                    }
+                });
+        if (response.getStatusCode() != HttpStatus.ACCEPTED) {
+            session.endComplete(false);
+        }
+        return response;
+    }
+
+    @Override
+    public ResponseEntity<UploadSession> abort(String sessionId) {
+        Spool spool = sessions.get(sessionId);
+        if (spool == null) {
+            return ResponseEntity.notFound().build();
+        }
+        // Refused while a chunk is being written, so the spool file is never closed under a writer
+        if (!spool.session().abort()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(spool.session());
+        }
+        discard(spool);
+        return ResponseEntity.ok(spool.session());
+    }
+
+    @PreDestroy
+    void discardAll() {
+        sessions.values().forEach(this::discard);
+    }
+
+    private void evictIdleSessions() {
+        Instant cutoff = Instant.now().minus(ttl);
+        for (Spool spool : sessions.values()) {
+            if (spool.session().getUpdatedAt().isBefore(cutoff) && spool.session().abort()) {
+                log.info("Discarding upload session {} of {}, idle since {}", spool.session().getId(),
+                        spool.session().getFilename(), spool.session().getUpdatedAt());
+                discard(spool);
+            }
+        }
+    }
+
+    private void discard(Spool spool) {
+        sessions.remove(spool.session().getId());
+        try {
+            spool.channel().close();
+        } catch (IOException e) {
+            log.warn("Could not close spool file {}", spool.path(), e);
+        }
+        deleteQuietly(spool.path());
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Could not delete spool file {}", path, e);
+        }
+    }
+}
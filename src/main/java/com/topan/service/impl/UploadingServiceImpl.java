@@ -1,118 +1,519 @@
 package com.topan.service.impl;
 
 import com.topan.entity.Employee;
+import com.topan.service.EmployeeUpsertEngine;
+import com.topan.service.UploadJob;
 import com.topan.service.UploadingService;
+import com.topan.service.UpsertCounts;
 import com.topan.util.CsvParser;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.core.io.Resource;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.util.HashSet;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Objects;
-import java.util.Set;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor(onConstructor = @__(@Autowired))
 public class UploadingServiceImpl implements UploadingService {
 
-    private final EmployeeServiceImpl employeeService;
+    /**
+     * Rows handed to {@link #uploadTransitionally(List)} at a time; matches {@code hibernate.jdbc.batch_size}
+     * and bounds the persistence context.
+     */
+    static final int BATCH_SIZE = 1000;
+    static final String REPLAYED_HEADER = "Idempotent-Replayed";
 
-    private final Set<String> uploadingFiles = new HashSet<>();
+    private final EmployeeUpsertEngine upsertEngine;
+    private final TransactionTemplate transactionTemplate;
+    private final UploadCoordinator uploadCoordinator;
+    private final ParallelCsvValidator parallelValidator;
+    private final EmployeeServingIndex servingIndex;
+    private final UploadMetrics uploadMetrics;
+    private final UploadResultCache uploadResultCache;
+    private final EmployeeCache employeeCache;
+    private final UploadPipeline uploadPipeline;
 
     /**
-     * @param file File which user uploads
+     * Uploads of at least this many bytes are validated with {@link ParallelCsvValidator}; -1 disables it.
+     */
+    @Value("${topan.upload.parallel.min-size:67108864}")
+    private long parallelMinSize = 64L * 1024 * 1024;
+
+    /**
+     * Validates and persists in one pipelined pass instead of two passes, see {@link UploadPipeline}.
+     */
+    @Value("${topan.upload.pipeline.enabled:false}")
+    private boolean pipelineEnabled;
+
+    /**
+     * Most bytes a gzip file or zip archive may inflate to, see {@link UploadContent}.
+     */
+    @Value("${topan.upload.max-decompressed-size:4GB}")
+    private DataSize maxDecompressedSize = DataSize.ofGigabytes(4);
+
+    /**
+     * @param file           File which user uploads
+     * @param idempotencyKey Key the client sent in {@code Idempotency-Key}, or null
      */
     @Override
-    public ResponseEntity<String> upload(MultipartFile file) {
+    public ResponseEntity<String> upload(MultipartFile file, String idempotencyKey) {
+        return reject(file).orElseGet(() -> process(file, new UploadJob(file.getOriginalFilename()), idempotencyKey));
+    }
+
+    @Override
+    public Optional<ResponseEntity<String>> reject(MultipartFile file) {
+        if (file.isEmpty()) {
+            uploadMetrics.rejected("empty");
+            return Optional.of(ResponseEntity.badRequest().body("File empty"));
+        }
+
+        // Validate file format
+        if (!UploadContent.CONTENT_TYPES.contains(file.getContentType())) {
+            uploadMetrics.rejected("format");
+            return Optional.of(ResponseEntity.badRequest().body("Invalid file format. Please upload a CSV file."));
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public ResponseEntity<String> process(InputStreamSource source, UploadJob job, String idempotencyKey) {
+        Timer.Sample upload = uploadMetrics.started();
+        UploadCoordinator.Permit permit = null;
+        Path spool = null;
+        UploadContent content = null;
         try {
-            if (file.getBytes().length == 0)
-                return ResponseEntity.badRequest().body("File empty");
+            job.startPhase(UploadJob.Phase.VALIDATING);
+            // The content is digested while it is validated, for the results of applied uploads
+            boolean digesting = uploadResultCache.isEnabled()
+                    && (idempotencyKey != null || uploadResultCache.isDigestReplayEnabled());
 
-            // Check if another upload is already in progress
-            if (!uploadingFiles.add(file.getOriginalFilename())) {
-                return ResponseEntity.badRequest().body("Another upload is already in progress. Please try again later.");
+            // A gzip-compressed CSV file is inflated while it is read, a zip archive is read member by member
+            long size = sizeOf(source);
+            UploadContent.Format format = UploadContent.detect(source);
+            if (format == UploadContent.Format.ZIP) {
+                // Members are read positionally, so the archive has to be a local file
+                Path archive = fileOf(source);
+                if (archive == null) {
+                    Timer.Sample phase = uploadMetrics.start();
+                    spool = spool(source);
+                    archive = spool;
+                    uploadMetrics.record(UploadMetrics.Phase.SPOOL, phase);
+                }
+                content = UploadContent.zip(archive, maxDecompressedSize.toBytes());
+                if (content.getFiles().isEmpty()) {
+                    uploadMetrics.rejected("format");
+                    return finish(job, UploadJob.Phase.FAILED,
+                            ResponseEntity.badRequest().body("The archive contains no CSV file."));
+                }
+            } else {
+                content = format == UploadContent.Format.GZIP
+                        ? UploadContent.gzip(source, maxDecompressedSize.toBytes()) : UploadContent.csv(source);
             }
+            List<InputStreamSource> files = content.getFiles();
 
-            // Validate file format
-            if (!Objects.equals(file.getContentType(), "text/csv")) {
-                uploadingFiles.remove(file.getOriginalFilename());
-                return ResponseEntity.badRequest().body("Invalid file format. Please upload a CSV file.");
+            if (pipelineEnabled && files.size() == 1) {
+                // The pipeline writes while it reads, so a resent key is checked against the content up front
+                if (digesting && idempotencyKey != null && uploadResultCache.findByKey(idempotencyKey).isPresent()) {
+                    Timer.Sample phase = uploadMetrics.start();
+                    String digest = ContentDigest.of(files.get(0));
+                    uploadMetrics.record(UploadMetrics.Phase.DIGEST, phase);
+                    Optional<ResponseEntity<String>> replayed = replay(job, digest, idempotencyKey);
+                    if (replayed.isPresent()) {
+                        return replayed.get();
+                    }
+                }
+                // Starts out holding no range, the pipeline adds them batch by batch
+                permit = uploadCoordinator.tryAcquire(uploadCoordinator.newRanges(), job.getId()).orElseThrow();
+                return processPipelined(files.get(0), job, permit, size, digesting, idempotencyKey);
             }
 
-            // Read file bytes with UTF-8 encoding
-            byte[] fileBytes = file.getBytes();
-            String fileContent = new String(fileBytes, StandardCharsets.UTF_8);
+            // Check if any row fails validation, streaming the content instead of buffering it
+            IdRanges ranges = uploadCoordinator.newRanges();
+            ContentDigest contentDigest = digesting ? new ContentDigest() : null;
+            EmployeeValidator validator;
+            Timer.Sample phase = uploadMetrics.start();
+            if (format == UploadContent.Format.ZIP) {
+                // Members are validated concurrently, with duplicates checked across them
+                validator = parallelValidator.validate(files, job, ranges, contentDigest);
+            } else if (isParallelCandidate(size)) {
+                // Chunks are read positionally, so the content has to be a local file
+                Path file = fileOf(files.get(0));
+                if (file == null) {
+                    spool = spool(files.get(0));
+                    file = spool;
+                    files = List.of(new FileSystemResource(spool));
+                    uploadMetrics.record(UploadMetrics.Phase.SPOOL, phase);
+                    phase = uploadMetrics.start();
+                }
+                validator = parallelValidator.validate(file, job, ranges, contentDigest);
+            } else {
+                validator = validate(files.get(0), job, ranges, contentDigest);
+            }
+            uploadMetrics.record(UploadMetrics.Phase.VALIDATE, phase);
+            if (!validator.isValid()) {
+                uploadMetrics.rejected("validation");
+                log.debug("Rejecting {}: row {} failed validation", job.getFilename(), validator.getFirstInvalidRow());
+                return finish(job, UploadJob.Phase.FAILED,
+                        ResponseEntity.badRequest().body("One or more rows fail validation. The entire file is rejected."));
+            }
+            job.setTotalRows(validator.getRows());
 
-            // Parse CSV file and process data
-            List<Employee> employees = CsvParser.parse(new ByteArrayInputStream(fileContent.getBytes()));
+            // Check if the same upload was already applied
+            String digest = contentDigest == null ? null : contentDigest.toHex();
+            if (digest != null) {
+                Optional<ResponseEntity<String>> replayed = replay(job, digest, idempotencyKey);
+                if (replayed.isPresent()) {
+                    return replayed.get();
+                }
+            }
 
-            // Check if any row fails validation
-            if (!validateEmployees(employees)) {
-                uploadingFiles.remove(file.getOriginalFilename());
-                return ResponseEntity.badRequest().body("One or more rows fail validation. The entire file is rejected.");
+            // Check if another upload touching the same employees is already in progress
+            permit = uploadCoordinator.tryAcquire(ranges, job.getId()).orElse(null);
+            if (permit == null) {
+                uploadMetrics.rejected("busy");
+                return finish(job, UploadJob.Phase.FAILED,
+                        ResponseEntity.badRequest().body("Another upload is already in progress. Please try again later."));
             }
 
-            uploadTransitionally(employees);
+            job.startPhase(UploadJob.Phase.PERSISTING);
+            phase = uploadMetrics.start();
+            long generation = uploadResultCache.generation();
+            UpsertCounts counts = persist(files, job);
+            uploadMetrics.record(UploadMetrics.Phase.PERSIST, phase);
+            uploadMetrics.accepted(validator.getRows(), size);
+            job.setUpsertCounts(counts);
 
-            uploadingFiles.remove(file.getOriginalFilename());
-            return ResponseEntity.ok("File uploaded successfully.");
-        } catch (IOException e) {
-            uploadingFiles.remove(file.getOriginalFilename());
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body("An error occurred while processing the file.");
+            String body = "File uploaded successfully. " + counts + ".";
+            remember(digest, idempotencyKey, generation, counts, body);
+            return finish(job, UploadJob.Phase.COMPLETED, ResponseEntity.ok(body));
+        } catch (CancellationException e) {
+            log.info("Upload {} of {} cancelled, nothing was written", job.getId(), job.getFilename());
+            return finish(job, UploadJob.Phase.CANCELLED,
+                    ResponseEntity.status(HttpStatus.CONFLICT).body("Upload cancelled."));
+        } catch (IOException | UncheckedIOException e) {
+            UploadContent.TooLargeException tooLarge = tooLarge(e);
+            if (tooLarge != null) {
+                uploadMetrics.rejected("size");
+                return finish(job, UploadJob.Phase.FAILED, ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+                        .body("The decompressed file exceeds " + tooLarge.getMaxSize() + " bytes."));
+            }
+            return finish(job, UploadJob.Phase.FAILED, ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("An error occurred while processing the file."));
         } catch (Exception e) {
-            uploadingFiles.remove(file.getOriginalFilename());
+            job.finish(UploadJob.Phase.FAILED, HttpStatus.INTERNAL_SERVER_ERROR.value(), e.getMessage());
             throw new RuntimeException(e);
+        } finally {
+            if (permit != null) {
+                uploadCoordinator.release(permit);
+            }
+            if (content != null) {
+                closeQuietly(content);
+            }
+            if (spool != null) {
+                deleteQuietly(spool);
+            }
+            uploadMetrics.finished(upload, job.getPhase().name().toLowerCase(Locale.ROOT));
         }
     }
 
-    @Transactional
-    void uploadTransitionally(List<Employee> employees) {
-        for (Employee employee : employees) {
-            Employee existingEmployee = employeeService.findByEmployeeId(employee.getId());
-            if (null != existingEmployee) {
-                // Update existing employee entry
-                existingEmployee.setLogin(employee.getLogin());
-                existingEmployee.setName(employee.getName());
-                existingEmployee.setSalary(employee.getSalary());
-            } else employeeService.saveEmployee(employee);
+    /**
+     * Validates and persists in one pass, see {@link UploadPipeline}. Batches are written while the rest of the
+     * file is still parsed and validated, inside one transaction that is rolled back when a row fails validation
+     * or another upload holds the ids of a later batch. Their ranges are taken by the validator stage, outside of
+     * that transaction. The content is only digested as it is written, so it is not replayed by digest.
+     */
+    private ResponseEntity<String> processPipelined(InputStreamSource source, UploadJob job,
+                                                    UploadCoordinator.Permit permit, long size, boolean digesting,
+                                                    String idempotencyKey) {
+        job.startPhase(UploadJob.Phase.PERSISTING);
+        Timer.Sample phase = uploadMetrics.start();
+        long generation = uploadResultCache.generation();
+        EmployeeServingIndex.Changes changes = servingIndex.newChanges();
+        UpsertCounts[] total = {UpsertCounts.NONE};
+        boolean[] busy = {false};
+        MessageDigest part = digesting ? ContentDigest.sha256() : null;
+        EmployeeValidator validator = transactionTemplate.execute(status -> {
+            try (InputStream inputStream = part == null ? source.getInputStream()
+                    : ContentDigest.digesting(source.getInputStream(), part)) {
+                EmployeeValidator result = uploadPipeline.run(inputStream, job, BATCH_SIZE,
+                        batch -> {
+                            IdRanges ranges = uploadCoordinator.newRanges();
+                            batch.forEach(employee -> ranges.add(employee.getId()));
+                            if (!uploadCoordinator.tryExtend(permit, ranges)) {
+                                busy[0] = true;
+                                return false;
+                            }
+                            return true;
+                        },
+                        batch -> {
+                            batch.forEach(changes::add);
+                            total[0] = total[0].plus(flushBatch(batch));
+                            return true;
+                        });
+                if (!result.isValid() || busy[0]) {
+                    status.setRollbackOnly();
+                } else {
+                    job.beginCommit();
+                    servingIndex.applyAfterCommit(changes);
+                }
+                return result;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        uploadMetrics.record(UploadMetrics.Phase.PIPELINE, phase);
+
+        if (!validator.isValid()) {
+            uploadMetrics.rejected("validation");
+            log.debug("Rejecting {}: row {} failed validation", job.getFilename(), validator.getFirstInvalidRow());
+            return finish(job, UploadJob.Phase.FAILED,
+                    ResponseEntity.badRequest().body("One or more rows fail validation. The entire file is rejected."));
         }
-    }
+        if (busy[0]) {
+            uploadMetrics.rejected("busy");
+            return finish(job, UploadJob.Phase.FAILED,
+                    ResponseEntity.badRequest().body("Another upload is already in progress. Please try again later."));
+        }
+        UpsertCounts counts = total[0];
+        committed(counts);
+        String digest = null;
+        if (part != null) {
+            ContentDigest contentDigest = new ContentDigest();
+            contentDigest.add(part);
+            digest = contentDigest.toHex();
+        }
+        job.setTotalRows(validator.getRows());
+        uploadMetrics.accepted(validator.getRows(), size);
+        job.setUpsertCounts(counts);
 
-    private boolean validateEmployees(List<Employee> employees) {
-        Set<String> uniqueIds = new HashSet<>();
-        Set<String> uniqueLogins = new HashSet<>();
+        String body = "File uploaded successfully. " + counts + ".";
+        remember(digest, idempotencyKey, generation, counts, body);
+        return finish(job, UploadJob.Phase.COMPLETED, ResponseEntity.ok(body));
+    }
 
-        for (Employee employee : employees) {
-            // Ignore comment rows
-            if (employee.getId().startsWith("#")) {
-                continue;
+    /**
+     * @return the stored result of the same upload, or a rejection when its key was used for other content; empty
+     * when the upload has to be applied
+     */
+    private Optional<ResponseEntity<String>> replay(UploadJob job, String digest, String idempotencyKey) {
+        Optional<UploadResultCache.Applied> applied =
+                idempotencyKey == null ? Optional.empty() : uploadResultCache.findByKey(idempotencyKey);
+        if (applied.isPresent()) {
+            if (!Objects.equals(applied.get().digest(), digest)) {
+                uploadMetrics.rejected("idempotency-key");
+                return Optional.of(finish(job, UploadJob.Phase.FAILED, ResponseEntity.unprocessableEntity()
+                        .body("The Idempotency-Key was already used for a different upload.")));
             }
+            return Optional.of(replay(job, applied.get(), "key"));
+        }
+        return uploadResultCache.findByDigest(digest).map(found -> replay(job, found, "digest"));
+    }
 
-            // Check if all columns are filled
-            if (isEmpty(employee.getId()) || isEmpty(employee.getLogin())
-                    || isEmpty(employee.getName()) || employee.getSalary() == null) {
-                return false;
+    private ResponseEntity<String> replay(UploadJob job, UploadResultCache.Applied applied, String by) {
+        log.debug("Upload {} of {} matches an applied upload by {}, replaying its result", job.getId(),
+                job.getFilename(), by);
+        uploadMetrics.replayed(by);
+        job.setUpsertCounts(applied.counts());
+        return finish(job, UploadJob.Phase.COMPLETED,
+                ResponseEntity.ok().header(REPLAYED_HEADER, "true").body(applied.body()));
+    }
+
+    /**
+     * Stores the result of an applied upload. The digest is only stored when no other write was committed while
+     * this upload was persisting, so a replay by digest always stands for the table state this upload left.
+     *
+     * @param generation write generation before the upload was persisted
+     */
+    private void remember(String digest, String idempotencyKey, long generation, UpsertCounts counts, String body) {
+        long expected = generation;
+        long current;
+        if (counts.inserted() + counts.updated() > 0) {
+            expected++;
+            current = uploadResultCache.recordWrite();
+        } else {
+            current = uploadResultCache.generation();
+        }
+        uploadResultCache.store(current == expected ? digest : null, idempotencyKey,
+                new UploadResultCache.Applied(current, counts, body, digest));
+    }
+
+    private boolean isParallelCandidate(long size) {
+        return parallelMinSize >= 0 && parallelValidator.getParallelism() >= 2 && size >= parallelMinSize;
+    }
+
+    /**
+     * @return content length in bytes, or -1 when the source cannot tell
+     */
+    private static long sizeOf(InputStreamSource source) throws IOException {
+        if (source instanceof MultipartFile multipartFile) {
+            return multipartFile.getSize();
+        }
+        if (source instanceof Resource resource) {
+            return resource.contentLength();
+        }
+        return -1;
+    }
+
+    private static Path fileOf(InputStreamSource source) throws IOException {
+        return source instanceof Resource resource && resource.isFile() ? resource.getFile().toPath() : null;
+    }
+
+    private static Path spool(InputStreamSource source) throws IOException {
+        Path spool = Files.createTempFile("upload-", ".tmp");
+        try (InputStream inputStream = source.getInputStream()) {
+            Files.copy(inputStream, spool, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException | RuntimeException e) {
+            deleteQuietly(spool);
+            throw e;
+        }
+        return spool;
+    }
+
+    /**
+     * @return the size limit hit by the content, wherever the stages of validation wrapped it
+     */
+    private static UploadContent.TooLargeException tooLarge(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof UploadContent.TooLargeException tooLarge) {
+                return tooLarge;
             }
+        }
+        return null;
+    }
 
-            // Check for duplicate IDs and logins
-            if (!uniqueIds.add(employee.getId()) || !uniqueLogins.add(employee.getLogin())) {
-                return false;
+    private static void closeQuietly(UploadContent content) {
+        try {
+            content.close();
+        } catch (IOException e) {
+            log.warn("Could not close upload content", e);
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Could not delete spool file {}", path, e);
+        }
+    }
+
+    private static ResponseEntity<String> finish(UploadJob job, UploadJob.Phase phase, ResponseEntity<String> response) {
+        job.finish(phase, response.getStatusCode().value(), response.getBody());
+        return response;
+    }
+
+    /**
+     * First pass: parses and validates every row without keeping the rows themselves.
+     *
+     * @param digest receives the content as one part, or null
+     */
+    EmployeeValidator validate(InputStreamSource source, UploadJob job, IdRanges ranges, ContentDigest digest)
+            throws IOException {
+        EmployeeValidator validator = new EmployeeValidator();
+        MessageDigest part = digest == null ? null : ContentDigest.sha256();
+        try (InputStream inputStream = part == null ? source.getInputStream()
+                : ContentDigest.digesting(source.getInputStream(), part)) {
+            CsvParser.parse(inputStream, employee -> {
+                job.rowProcessed();
+                if (validator.accept(employee) && !employee.getId().startsWith("#")) {
+                    ranges.add(employee.getId());
+                }
+            });
+        }
+        if (part != null) {
+            digest.add(part);
+        }
+        return validator;
+    }
+
+    /**
+     * Second pass: re-reads the already validated content and applies it in batches inside a single
+     * transaction, so either every row is written or none is. The files of an archive are applied one after the
+     * other in the same transaction.
+     */
+    UpsertCounts persist(List<InputStreamSource> files, UploadJob job) {
+        EmployeeServingIndex.Changes changes = servingIndex.newChanges();
+        UpsertCounts counts = transactionTemplate.execute(status -> {
+            List<Employee> batch = new ArrayList<>(BATCH_SIZE);
+            UpsertCounts[] total = {UpsertCounts.NONE};
+            for (InputStreamSource file : files) {
+                try (InputStream inputStream = file.getInputStream()) {
+                    CsvParser.parse(inputStream, employee -> {
+                        job.rowProcessed();
+                        if (employee.getId().startsWith("#")) {
+                            return;
+                        }
+                        batch.add(employee);
+                        changes.add(employee);
+                        if (batch.size() == BATCH_SIZE) {
+                            total[0] = total[0].plus(flushBatch(batch));
+                        }
+                    });
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
             }
+            UpsertCounts result = total[0].plus(flushBatch(batch));
+            job.beginCommit();
+            servingIndex.applyAfterCommit(changes);
+            return result;
+        });
+        committed(counts);
+        return counts;
+    }
+
+    private void committed(UpsertCounts counts) {
+        if (counts.inserted() + counts.updated() > 0) {
+            employeeCache.invalidateAll();
         }
+    }
 
-        return true;
+    private UpsertCounts flushBatch(List<Employee> batch) {
+        if (batch.isEmpty()) {
+            return UpsertCounts.NONE;
+        }
+        Timer.Sample sample = uploadMetrics.start();
+        UpsertCounts counts = uploadTransitionally(batch);
+        uploadMetrics.record(UploadMetrics.Phase.UPSERT, sample);
+        batch.clear();
+        return counts;
+    }
+
+    UpsertCounts uploadTransitionally(List<Employee> employees) {
+        return upsertEngine.upsert(employees);
     }
 
-    private boolean isEmpty(String value) {
-        return value == null || value.trim().isEmpty();
+    boolean validateEmployees(List<Employee> employees) {
+        EmployeeValidator validator = new EmployeeValidator();
+        for (Employee employee : employees) {
+            if (!validator.accept(employee)) {
+                return false;
+            }
+        }
+        return true;
     }
 }
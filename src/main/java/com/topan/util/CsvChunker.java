@@ -0,0 +1,194 @@
+package com.topan.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Splits a CSV file into byte ranges that each start and end on a record boundary, so the ranges can be parsed
+ * independently.
+ * <p>
+ * A newline only ends a record when it is outside quotes. Under RFC 4180 quotes always come in pairs (an escaped
+ * quote is written {@code ""}), so a position is inside quotes exactly when an odd number of quote bytes precede
+ * it. The quotes of each naive range are counted in parallel, and each range start is then moved forward to
+ * the first newline preceded by an even number of quotes.
+ * <p>
+ * A stray quote inside an unquoted field, which {@link CsvParser} keeps as data, breaks that pairing, and every
+ * boundary after it may then fall inside a record. Chunks are therefore parsed with
+ * {@link CsvParser#parseChunk}, which rejects such quotes, and the rest of the file is parsed sequentially from
+ * the start of the chunk that holds one.
+ */
+public class CsvChunker {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Byte range {@code [start, end)} of whole records.
+     */
+    public record Chunk(long start, long end) {
+    }
+
+    /**
+     * @param channel file to split, header line included
+     * @param parts   desired number of chunks; fewer are returned for small files
+     * @param pool    runs the quote counting
+     * @return the record ranges after the header line, in file order
+     */
+    public static List<Chunk> split(FileChannel channel, int parts, ExecutorService pool) throws IOException {
+        long size = channel.size();
+        long[] starts = new long[parts];
+        for (int i = 0; i < parts; i++) {
+            starts[i] = size * i / parts;
+        }
+
+        List<Callable<Long>> counts = new ArrayList<>(parts);
+        for (int i = 0; i < parts; i++) {
+            long from = starts[i];
+            long to = i + 1 < parts ? starts[i + 1] : size;
+            counts.add(() -> countQuotes(channel, from, to));
+        }
+
+        List<Long> boundaries = new ArrayList<>(parts + 1);
+        long quotesBefore = 0;
+        List<Future<Long>> results = invokeAll(pool, counts);
+        for (int i = 0; i < parts; i++) {
+            long boundary = nextRecordStart(channel, starts[i], quotesBefore % 2 == 1);
+            // The header line always goes into the first boundary; later ones only count if they move forward
+            if (i == 0 || boundary > boundaries.get(boundaries.size() - 1)) {
+                boundaries.add(boundary);
+            }
+            quotesBefore += get(results.get(i));
+        }
+        boundaries.add(size);
+
+        List<Chunk> chunks = new ArrayList<>(boundaries.size() - 1);
+        for (int i = 0; i + 1 < boundaries.size(); i++) {
+            if (boundaries.get(i) < boundaries.get(i + 1)) {
+                chunks.add(new Chunk(boundaries.get(i), boundaries.get(i + 1)));
+            }
+        }
+        return chunks;
+    }
+
+    /**
+     * Streams one range of the file using positional reads, so chunks can be read concurrently from one channel.
+     */
+    public static InputStream open(FileChannel channel, Chunk chunk) {
+        return new InputStream() {
+            private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).flip();
+            private long position = chunk.start();
+
+            @Override
+            public int read() throws IOException {
+                return fill() ? buffer.get() & 0xFF : -1;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (len == 0) {
+                    return 0;
+                }
+                if (!fill()) {
+                    return -1;
+                }
+                int n = Math.min(len, buffer.remaining());
+                buffer.get(b, off, n);
+                return n;
+            }
+
+            private boolean fill() throws IOException {
+                if (buffer.hasRemaining()) {
+                    return true;
+                }
+                long remaining = chunk.end() - position;
+                if (remaining <= 0) {
+                    return false;
+                }
+                buffer.clear().limit((int) Math.min(BUFFER_SIZE, remaining));
+                int read = channel.read(buffer, position);
+                buffer.flip();
+                if (read <= 0) {
+                    return false;
+                }
+                position += read;
+                return true;
+            }
+        };
+    }
+
+    private static long countQuotes(FileChannel channel, long from, long to) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        long quotes = 0;
+        long position = from;
+        while (position < to) {
+            buffer.clear().limit((int) Math.min(BUFFER_SIZE, to - position));
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '"') {
+                    quotes++;
+                }
+            }
+            position += read;
+        }
+        return quotes;
+    }
+
+    /**
+     * @return position just after the first record-ending newline at or after {@code from}, or the file size
+     */
+    private static long nextRecordStart(FileChannel channel, long from, boolean inQuotes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        long position = from;
+        long size = channel.size();
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                byte b = buffer.get(i);
+                if (b == '"') {
+                    inQuotes = !inQuotes;
+                } else if (b == '\n' && !inQuotes) {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    private static <T> List<Future<T>> invokeAll(ExecutorService pool, List<Callable<T>> tasks) throws IOException {
+        try {
+            return pool.invokeAll(tasks);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while splitting the file", e);
+        }
+    }
+
+    private static <T> T get(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while splitting the file", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+}
@@ -1,59 +1,278 @@
 package com.topan.util;
 
-import com.opencsv.CSVReader;
-import com.opencsv.exceptions.CsvValidationException;
 import com.topan.entity.Employee;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.math.BigDecimal;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
+/**
+ * Reads the 4-column employee CSV ({@code id,login,name,salary}) straight from bytes.
+ * <p>
+ * Quoting follows RFC 4180: a field starting with {@code "} runs to the next lone quote, {@code ""} inside it
+ * is a literal quote, and commas and line breaks inside it are data. Lines end with {@code \n} or
+ * {@code \r\n}; a line break at the end of the file does not start another row. Each row is copied once into a
+ * reusable buffer, text fields are decoded from UTF-8 once, and the salary is read as a scaled long, so the only
+ * per-row allocations are the three strings, the {@link BigDecimal} and the {@link Employee} itself.
+ */
 public class CsvParser {
 
-    public static List<Employee> parse(InputStream inputStream) throws IOException, CsvValidationException {
+    private static final int COLUMNS = 4;
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    /**
+     * Digits that always fit in a long
+     */
+    private static final int MAX_FAST_DIGITS = 18;
+
+    /**
+     * Thrown by {@link #parseChunk} for a quote inside an unquoted field, which the other parse methods keep as data.
+     */
+    public static class StrayQuoteException extends IOException {
+        public StrayQuoteException() {
+            super("Invalid CSV format. Quote inside an unquoted field.");
+        }
+    }
+
+    /**
+     * Receives parsed rows one at a time so callers never need the whole file in memory.
+     */
+    @FunctionalInterface
+    public interface RowHandler {
+        void accept(Employee employee) throws IOException;
+    }
+
+    public static List<Employee> parse(InputStream inputStream) throws IOException {
         List<Employee> employees = new ArrayList<>();
+        parse(inputStream, employees::add);
+        return employees;
+    }
+
+    /**
+     * Streams the rows of the given CSV to the handler in file order.
+     *
+     * @param inputStream CSV content, consumed and closed by this call
+     * @param handler     receives each parsed row
+     */
+    public static void parse(InputStream inputStream, RowHandler handler) throws IOException {
+        parse(inputStream, true, handler);
+    }
+
+    /**
+     * Same as {@link #parse(InputStream, RowHandler)} for content without a header line, such as one chunk
+     * produced by {@link CsvChunker}.
+     */
+    public static void parseRows(InputStream inputStream, RowHandler handler) throws IOException {
+        parse(inputStream, false, false, handler);
+    }
+
+    /**
+     * Parses one chunk produced by {@link CsvChunker}, failing with {@link StrayQuoteException} on a quote inside an
+     * unquoted field: such a quote is data to the parser but still counts towards the quote parity the chunk
+     * boundaries were placed by, so the boundaries after it cannot be trusted.
+     *
+     * @param header whether the chunk starts with the header line
+     */
+    public static void parseChunk(InputStream inputStream, boolean header, RowHandler handler) throws IOException {
+        parse(inputStream, header, true, handler);
+    }
+
+    private static void parse(InputStream inputStream, boolean skipHeader, RowHandler handler) throws IOException {
+        parse(inputStream, skipHeader, false, handler);
+    }
+
+    private static void parse(InputStream inputStream, boolean skipHeader, boolean strictQuotes, RowHandler handler)
+            throws IOException {
+        try (InputStream in = inputStream) {
+            new RowReader(skipHeader, strictQuotes, handler).read(in);
+        }
+    }
 
-        try (CSVReader reader = new CSVReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
-            String[] header = reader.readNext(); // Ignore the header line
+    /**
+     * Byte-at-a-time state machine; the current row is unquoted into {@link #row} with the end offset of each
+     * field in {@link #fieldEnds}.
+     */
+    private static final class RowReader {
+
+        private final RowHandler handler;
+        private final boolean strictQuotes;
+        private boolean skipRow;
+
+        private byte[] row = new byte[256];
+        private int length;
+        private final int[] fieldEnds = new int[COLUMNS];
+        private int fields;
+        /**
+         * Row has a byte or a separator, so the end of input completes it
+         */
+        private boolean pending;
+        private boolean inQuotes;
+        /**
+         * The previous byte closed a quoted field, so a quote now is an escaped {@code ""}
+         */
+        private boolean quoteClosed;
+        private boolean fieldQuoted;
+
+        RowReader(boolean skipHeader, boolean strictQuotes, RowHandler handler) {
+            this.skipRow = skipHeader;
+            this.strictQuotes = strictQuotes;
+            this.handler = handler;
+        }
 
-            String[] line;
-            while ((line = reader.readNext()) != null) {
-                if (line.length != 4) {
-                    throw new IOException("Invalid CSV format. Each line should have 4 columns.");
+        void read(InputStream in) throws IOException {
+            byte[] buffer = new byte[READ_BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                for (int i = 0; i < read; i++) {
+                    accept(buffer[i]);
                 }
-                String id = line[0];
-                String login = line[1];
-                String name = line[2];
-                BigDecimal salary;
-
-                try {
-                    salary = new BigDecimal(line[3]);
-                    if (salary.compareTo(BigDecimal.ZERO) < 0) {
-                        throw new NumberFormatException();
-                    }
-                } catch (NumberFormatException e) {
-                    throw new IOException("Invalid salary format. Salary must be a decimal value >= 0.0.");
+            }
+            if (inQuotes) {
+                throw new IOException("Invalid CSV format. Unterminated quoted field.");
+            }
+            if (pending) {
+                endRow();
+            }
+        }
+
+        private void accept(byte b) throws IOException {
+            if (inQuotes) {
+                if (b == '"') {
+                    inQuotes = false;
+                    quoteClosed = true;
+                } else {
+                    append(b);
+                }
+                return;
+            }
+            if (b == '"') {
+                if (quoteClosed) {
+                    append(b);
+                    inQuotes = true;
+                    quoteClosed = false;
+                } else if (fieldStart() == length && !fieldQuoted) {
+                    inQuotes = true;
+                    fieldQuoted = true;
+                    pending = true;
+                } else if (strictQuotes) {
+                    throw new StrayQuoteException();
+                } else {
+                    // A quote inside an unquoted field is kept as data
+                    append(b);
                 }
+                return;
+            }
+            quoteClosed = false;
+            if (b == ',') {
+                endField();
+                pending = true;
+            } else if (b == '\n') {
+                endRow();
+            } else {
+                append(b);
+            }
+        }
 
-                employees.add(new Employee(id, login, decodeUTF8(name), salary));
+        private int fieldStart() {
+            return fields == 0 ? 0 : fieldEnds[fields - 1];
+        }
+
+        private void append(byte b) {
+            if (length == row.length) {
+                row = Arrays.copyOf(row, length * 2);
             }
+            row[length++] = b;
+            pending = true;
         }
 
-        return employees;
-    }
+        private void endField() throws IOException {
+            if (fields == COLUMNS) {
+                if (skipRow) {
+                    // The header is ignored whatever its shape
+                    return;
+                }
+                throw new IOException("Invalid CSV format. Each line should have 4 columns.");
+            }
+            fieldEnds[fields++] = length;
+            fieldQuoted = false;
+        }
 
-    private static String decodeUTF8(String value) {
-        try {
-            return new String(value.getBytes(StandardCharsets.ISO_8859_1), StandardCharsets.UTF_8);
-        } catch (Exception e) {
-            return value;
+        private void endRow() throws IOException {
+            // Drop the \r of a \r\n line ending
+            if (length > fieldStart() && row[length - 1] == '\r') {
+                length--;
+            }
+            endField();
+            if (skipRow) {
+                skipRow = false;
+            } else {
+                handler.accept(toEmployee());
+            }
+            length = 0;
+            fields = 0;
+            pending = false;
+            quoteClosed = false;
         }
-    }
-}
 
+        private Employee toEmployee() throws IOException {
+            if (fields != COLUMNS) {
+                throw new IOException("Invalid CSV format. Each line should have 4 columns.");
+            }
+            String id = text(0, fieldEnds[0]);
+            String login = text(fieldEnds[0], fieldEnds[1]);
+            String name = text(fieldEnds[1], fieldEnds[2]);
+            return new Employee(id, login, name, salary(fieldEnds[2], fieldEnds[3]));
+        }
 
+        private String text(int start, int end) {
+            return new String(row, start, end - start, StandardCharsets.UTF_8);
+        }
 
+        /**
+         * Reads plain {@code [+]digits[.digits]} into a scaled long and leaves every other form (exponents, signs,
+         * more than 18 digits, malformed input) to {@link BigDecimal#BigDecimal(String)}.
+         */
+        private BigDecimal salary(int start, int end) throws IOException {
+            long unscaled = 0;
+            int scale = -1;
+            int digits = 0;
+            int i = start;
+            if (i < end && row[i] == '+') {
+                i++;
+            }
+            for (; i < end; i++) {
+                byte b = row[i];
+                if (b >= '0' && b <= '9' && digits < MAX_FAST_DIGITS) {
+                    unscaled = unscaled * 10 + (b - '0');
+                    digits++;
+                    if (scale >= 0) {
+                        scale++;
+                    }
+                } else if (b == '.' && scale < 0) {
+                    scale = 0;
+                } else {
+                    return slowSalary(start, end);
+                }
+            }
+            if (digits == 0) {
+                return slowSalary(start, end);
+            }
+            return BigDecimal.valueOf(unscaled, Math.max(scale, 0));
+        }
+
+        private BigDecimal slowSalary(int start, int end) throws IOException {
+            try {
+                BigDecimal salary = new BigDecimal(text(start, end));
+                if (salary.compareTo(BigDecimal.ZERO) < 0) {
+                    throw new NumberFormatException();
+                }
+                return salary;
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid salary format. Salary must be a decimal value >= 0.0.");
+            }
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.topan.util;
+
+import com.topan.entity.Employee;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+
+/**
+ * Writes employees in the 4-column format {@link CsvParser} reads, encoding straight into one reusable byte
+ * buffer so that a row costs no allocation beyond the salary's plain string.
+ * <p>
+ * Fields containing a comma, a quote or a line break are quoted as in RFC 4180. Lines end with {@code \n}.
+ */
+public class CsvWriter implements Flushable {
+
+    static final int BUFFER_SIZE = 64 * 1024;
+    static final String HEADER = "id,login,name,salary";
+
+    /**
+     * Longest UTF-8 encoding of one char, or of a surrogate pair
+     */
+    private static final int MAX_CHAR_BYTES = 4;
+
+    private final OutputStream out;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+
+    public CsvWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    public void writeHeader() throws IOException {
+        writeAscii(HEADER);
+        writeByte('\n');
+    }
+
+    public void write(Employee employee) throws IOException {
+        writeFields(employee);
+        writeByte('\n');
+    }
+
+    /**
+     * Writes the row with {@link Employee#fingerprint} of its content as a fifth column, the layout of a staging
+     * table the rows are bulk-loaded into.
+     */
+    public void writeWithFingerprint(Employee employee) throws IOException {
+        writeFields(employee);
+        writeByte(',');
+        writeAscii(Long.toString(Employee.fingerprint(employee.getLogin(), employee.getName(), employee.getSalary())));
+        writeByte('\n');
+    }
+
+    private void writeFields(Employee employee) throws IOException {
+        writeField(employee.getId());
+        writeByte(',');
+        writeField(employee.getLogin());
+        writeByte(',');
+        writeField(employee.getName());
+        writeByte(',');
+        BigDecimal salary = employee.getSalary();
+        if (salary != null) {
+            writeAscii(salary.toPlainString());
+        }
+    }
+
+    /**
+     * Writes the buffered bytes to the underlying stream, without flushing it.
+     */
+    public void drain() throws IOException {
+        if (position > 0) {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        drain();
+        out.flush();
+    }
+
+    private void writeField(String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        boolean quoted = needsQuoting(value);
+        if (quoted) {
+            writeByte('"');
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (position > BUFFER_SIZE - MAX_CHAR_BYTES) {
+                drain();
+            }
+            if (c < 0x80) {
+                if (c == '"') {
+                    buffer[position++] = '"';
+                }
+                buffer[position++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[position++] = (byte) (0xC0 | c >> 6);
+                buffer[position++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer[position++] = (byte) (0xF0 | codePoint >> 18);
+                buffer[position++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+                buffer[position++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+                buffer[position++] = (byte) (0x80 | codePoint & 0x3F);
+            } else if (Character.isSurrogate(c)) {
+                // Unpaired surrogate, replaced as String.getBytes does
+                buffer[position++] = '?';
+            } else {
+                buffer[position++] = (byte) (0xE0 | c >> 12);
+                buffer[position++] = (byte) (0x80 | c >> 6 & 0x3F);
+                buffer[position++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+        if (quoted) {
+            writeByte('"');
+        }
+    }
+
+    private static boolean needsQuoting(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void writeAscii(String value) throws IOException {
+        for (int i = 0; i < value.length(); i++) {
+            writeByte(value.charAt(i));
+        }
+    }
+
+    private void writeByte(int b) throws IOException {
+        if (position == BUFFER_SIZE) {
+            drain();
+        }
+        buffer[position++] = (byte) b;
+    }
+}
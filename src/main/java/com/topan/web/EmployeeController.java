@@ -1,18 +1,44 @@
 package com.topan.web;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.topan.entity.Employee;
+import com.topan.service.EmployeeCursor;
+import com.topan.service.EmployeeFieldsPage;
+import com.topan.service.EmployeePage;
 import com.topan.service.EmployeeService;
+import com.topan.service.UploadJob;
+import com.topan.service.UploadJobService;
+import com.topan.service.UploadSession;
+import com.topan.service.UploadSessionService;
 import com.topan.service.UploadingService;
+import com.topan.util.CsvWriter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
 @Slf4j
@@ -20,22 +46,99 @@ import java.util.List;
 @RequestMapping("/users")
 public class EmployeeController {
 
+    static final String NEXT_CURSOR_HEADER = "Next-Cursor";
+    static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    private static final MediaType TEXT_CSV = new MediaType("text", "csv", StandardCharsets.UTF_8);
+
     private final UploadingService uploadingService;
     private final EmployeeService employeeService;
+    private final UploadJobService uploadJobService;
+    private final UploadSessionService uploadSessionService;
+    private final ObjectMapper objectMapper;
 
     @PostMapping("/upload")
-    public ResponseEntity<String> uploadEmployees(@RequestParam("file") MultipartFile file) {
-        return uploadingService.upload(file);
+    public ResponseEntity<String> uploadEmployees(@RequestParam("file") MultipartFile file,
+                                                  @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
+        return uploadingService.upload(file, idempotencyKey);
+    }
+
+    @PostMapping(value = "/upload", params = "async=true")
+    public ResponseEntity<?> uploadEmployeesAsync(@RequestParam("file") MultipartFile file) {
+        return uploadJobService.submit(file);
+    }
+
+    @GetMapping("/upload/{jobId}")
+    public ResponseEntity<UploadJob> getUploadJob(@PathVariable String jobId) {
+        return uploadJobService.getJob(jobId);
+    }
+
+    @DeleteMapping("/upload/{jobId}")
+    public ResponseEntity<UploadJob> cancelUploadJob(@PathVariable String jobId) {
+        return uploadJobService.cancelJob(jobId);
+    }
+
+    /**
+     * Starts a resumable upload: PUT the file's byte ranges to the returned location with {@code Content-Range},
+     * GET it to see which ranges are still missing, then POST to its {@code /complete} and poll the job it returns.
+     */
+    @PostMapping("/upload/sessions")
+    public ResponseEntity<UploadSession> initiateUploadSession(@RequestParam String filename, @RequestParam long size) {
+        return uploadSessionService.initiate(filename, size);
+    }
+
+    @PutMapping("/upload/sessions/{sessionId}")
+    public ResponseEntity<UploadSession> uploadChunk(@PathVariable String sessionId,
+                                                     @RequestHeader(value = HttpHeaders.CONTENT_RANGE, required = false) String contentRange,
+                                                     @RequestHeader(value = HttpHeaders.CONTENT_LENGTH, required = false) Long contentLength,
+                                                     InputStream body) {
+        return uploadSessionService.writeChunk(sessionId, contentRange, contentLength != null ? contentLength : -1, body);
+    }
+
+    @GetMapping("/upload/sessions/{sessionId}")
+    public ResponseEntity<UploadSession> getUploadSession(@PathVariable String sessionId) {
+        return uploadSessionService.getSession(sessionId);
     }
 
+    @PostMapping("/upload/sessions/{sessionId}/complete")
+    public ResponseEntity<UploadJob> completeUploadSession(@PathVariable String sessionId,
+                                                           @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
+        return uploadSessionService.complete(sessionId, idempotencyKey);
+    }
+
+    @DeleteMapping("/upload/sessions/{sessionId}")
+    public ResponseEntity<UploadSession> abortUploadSession(@PathVariable String sessionId) {
+        return uploadSessionService.abort(sessionId);
+    }
+
+    /**
+     * Lists a salary range either by page number ({@code offset}) or, when {@code cursor} is given, by keyset:
+     * pass an empty cursor for the first page and the {@code Next-Cursor} response header for the following ones.
+     */
     @GetMapping
     public ResponseEntity<List<Employee>> getEmployees(
             @RequestParam BigDecimal minSalary,
             @RequestParam BigDecimal maxSalary,
-            @RequestParam int offset,
+            @RequestParam(defaultValue = "0") int offset,
             @RequestParam(defaultValue = "30") int limit,
-            @RequestParam(defaultValue = "+id") String sort
+            @RequestParam(defaultValue = "+id") String sort,
+            @RequestParam(required = false) String cursor
     ) {
+        if (offset < 0 || limit < 1) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (cursor != null) {
+            try {
+                EmployeePage page = employeeService.getEmployeesAfter(minSalary, maxSalary, limit, sort, cursor);
+                ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+                if (page.nextCursor() != null) {
+                    response.header(NEXT_CURSOR_HEADER, page.nextCursor());
+                }
+                return response.body(page.employees());
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().build();
+            }
+        }
+
         List<Employee> employees = employeeService.getEmployees(minSalary, maxSalary, offset, limit, sort);
         if (null != employees)
             return ResponseEntity.ok(employees);
@@ -43,8 +146,190 @@ public class EmployeeController {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
     }
 
-    public ResponseEntity<Employee> getEmployeeById(@PathVariable Long id) {
-        return employeeService.getEmployeeById(String.valueOf(id));
+    /**
+     * Sparse-fieldset variant of {@link #getEmployees}: {@code fields=id,salary} fetches and returns only those
+     * columns, which the salary index can serve without touching the table rows.
+     */
+    @GetMapping(params = "fields")
+    public ResponseEntity<List<Map<String, Object>>> getEmployeeFields(
+            @RequestParam BigDecimal minSalary,
+            @RequestParam BigDecimal maxSalary,
+            @RequestParam(defaultValue = "0") int offset,
+            @RequestParam(defaultValue = "30") int limit,
+            @RequestParam(defaultValue = "+id") String sort,
+            @RequestParam(required = false) String cursor,
+            @RequestParam List<String> fields
+    ) {
+        if (offset < 0 || limit < 1) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            EmployeeFieldsPage page = employeeService.getEmployeeFields(minSalary, maxSalary, offset, limit, sort, cursor, fields);
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+            if (page.nextCursor() != null) {
+                response.header(NEXT_CURSOR_HEADER, page.nextCursor());
+            }
+            return response.body(page.rows());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Streaming variant of {@link #getEmployees} for large pages: rows are serialized as a JSON array while they
+     * are read, so neither the rows nor the response are ever held in memory as a whole.
+     */
+    @GetMapping(params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> streamEmployees(
+            @RequestParam BigDecimal minSalary,
+            @RequestParam BigDecimal maxSalary,
+            @RequestParam(defaultValue = "0") int offset,
+            @RequestParam(defaultValue = "30") int limit,
+            @RequestParam(defaultValue = "+id") String sort
+    ) {
+        return stream(minSalary, maxSalary, offset, limit, sort, MediaType.APPLICATION_JSON);
+    }
+
+    /**
+     * Same as {@link #streamEmployees} as newline-delimited JSON, one employee per line.
+     */
+    @GetMapping(params = "stream=true", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamEmployeesNdjson(
+            @RequestParam BigDecimal minSalary,
+            @RequestParam BigDecimal maxSalary,
+            @RequestParam(defaultValue = "0") int offset,
+            @RequestParam(defaultValue = "30") int limit,
+            @RequestParam(defaultValue = "+id") String sort
+    ) {
+        return stream(minSalary, maxSalary, offset, limit, sort, MediaType.APPLICATION_NDJSON);
+    }
+
+    private ResponseEntity<StreamingResponseBody> stream(BigDecimal minSalary, BigDecimal maxSalary, int offset,
+                                                         int limit, String sort, MediaType mediaType) {
+        // The body runs after the status is sent, so reject what would fail there up front
+        String property = sort.startsWith("+") || sort.startsWith("-") ? sort.substring(1) : sort;
+        if (!EmployeeCursor.SORTABLE.contains(property) || offset < 0 || limit < 1) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        boolean ndjson = MediaType.APPLICATION_NDJSON.equals(mediaType);
+        ObjectWriter writer = objectMapper.writer()
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                .withRootValueSeparator("\n");
+        StreamingResponseBody body = outputStream -> {
+            boolean[] empty = {true};
+            try (SequenceWriter sequence = ndjson ? writer.writeValues(outputStream) : writer.writeValuesAsArray(outputStream)) {
+                employeeService.streamEmployees(minSalary, maxSalary, offset, limit, sort, employee -> {
+                    try {
+                        sequence.write(employee);
+                        empty[0] = false;
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            if (ndjson && !empty[0]) {
+                outputStream.write('\n');
+            }
+        };
+        return ResponseEntity.ok().contentType(mediaType).body(body);
+    }
+
+    /**
+     * Streams the whole table, or a salary range, as CSV in the upload format, ordered by id. The body is gzip
+     * encoded when the client accepts it.
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportEmployees(
+            @RequestParam(required = false) BigDecimal minSalary,
+            @RequestParam(required = false) BigDecimal maxSalary,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding
+    ) {
+        boolean gzip = acceptsGzip(acceptEncoding);
+        StreamingResponseBody body = outputStream -> {
+            OutputStream out = gzip ? new FastGzipOutputStream(outputStream) : outputStream;
+            CsvWriter writer = new CsvWriter(out);
+            writer.writeHeader();
+            try {
+                employeeService.exportEmployees(minSalary, maxSalary, employee -> {
+                    try {
+                        writer.write(employee);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            writer.drain();
+            if (gzip) {
+                ((GZIPOutputStream) out).finish();
+            }
+        };
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(TEXT_CSV)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename("employees.csv").build().toString());
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
+    }
+
+    /**
+     * @return whether {@code Accept-Encoding} lists {@code gzip}, or {@code *} without naming gzip, with a
+     * non-zero q
+     */
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        Boolean gzip = null;
+        Boolean any = null;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].strip().toLowerCase(Locale.ROOT);
+            if (!name.equals("gzip") && !name.equals("*")) {
+                continue;
+            }
+            boolean accepted = true;
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].strip().toLowerCase(Locale.ROOT);
+                if (parameter.startsWith("q=")) {
+                    try {
+                        accepted = Double.parseDouble(parameter.substring(2).strip()) > 0;
+                    } catch (NumberFormatException e) {
+                        accepted = false;
+                    }
+                }
+            }
+            if (name.equals("gzip")) {
+                gzip = accepted;
+            } else {
+                any = accepted;
+            }
+        }
+        return gzip != null ? gzip : any != null && any;
+    }
+
+    /**
+     * Gzip at the fastest level: exports should be bound by the network, not by deflate.
+     */
+    private static final class FastGzipOutputStream extends GZIPOutputStream {
+        FastGzipOutputStream(OutputStream out) throws IOException {
+            super(out, 64 * 1024);
+            def.setLevel(Deflater.BEST_SPEED);
+        }
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<Employee> getEmployeeById(@PathVariable String id) {
+        return employeeService.getEmployeeById(id);
     }
 
     @PutMapping("/{id}")
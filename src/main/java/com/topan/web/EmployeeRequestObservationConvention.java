@@ -0,0 +1,81 @@
+package com.topan.web;
+
+import com.topan.service.EmployeeCursor;
+import io.micrometer.common.KeyValue;
+import io.micrometer.common.KeyValues;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.server.observation.DefaultServerRequestObservationConvention;
+import org.springframework.http.server.observation.ServerRequestObservationContext;
+import org.springframework.stereotype.Component;
+
+/**
+ * Adds the sort field and a page size bucket to the {@code http.server.requests} metrics, so that GET /users
+ * latency can be broken down by query shape.
+ * <p>
+ * Both tags are present on every request, as Prometheus needs one set of tag keys per metric, and both map onto a
+ * handful of values so the number of series stays bounded. A GET /users without the parameter is tagged with the
+ * default {@link EmployeeController} applies, {@code id} and {@code 30}; other requests are tagged {@code none}.
+ */
+@Component
+public class EmployeeRequestObservationConvention extends DefaultServerRequestObservationConvention {
+
+    static final String NONE = "none";
+    static final String OTHER = "other";
+    private static final int[] PAGE_SIZE_BUCKETS = {30, 100, 1000, 10_000};
+    /**
+     * Defaults of the {@code sort} and {@code limit} parameters of GET /users
+     */
+    private static final String DEFAULT_SORT = "+id";
+    private static final String DEFAULT_LIMIT = "30";
+
+    @Override
+    public KeyValues getLowCardinalityKeyValues(ServerRequestObservationContext context) {
+        HttpServletRequest request = context.getCarrier();
+        boolean listing = isListing(request);
+        return super.getLowCardinalityKeyValues(context).and(
+                KeyValue.of("sort", sortField(parameter(request, "sort", listing ? DEFAULT_SORT : null))),
+                KeyValue.of("page.size", pageSize(parameter(request, "limit", listing ? DEFAULT_LIMIT : null))));
+    }
+
+    private static boolean isListing(HttpServletRequest request) {
+        return "GET".equals(request.getMethod())
+                && "/users".equals(request.getRequestURI().substring(request.getContextPath().length()));
+    }
+
+    private static String parameter(HttpServletRequest request, String name, String defaultValue) {
+        String value = request.getParameter(name);
+        return value != null ? value : defaultValue;
+    }
+
+    static String sortField(String sort) {
+        if (sort == null) {
+            return NONE;
+        }
+        String property = sort.startsWith("+") || sort.startsWith("-") ? sort.substring(1) : sort;
+        return EmployeeCursor.SORTABLE.contains(property) ? property : OTHER;
+    }
+
+    /**
+     * @return the smallest bucket bound the limit fits in, {@code more} above the largest one
+     */
+    static String pageSize(String limit) {
+        if (limit == null) {
+            return NONE;
+        }
+        int size;
+        try {
+            size = Integer.parseInt(limit);
+        } catch (NumberFormatException e) {
+            return OTHER;
+        }
+        if (size < 1) {
+            return OTHER;
+        }
+        for (int bucket : PAGE_SIZE_BUCKETS) {
+            if (size <= bucket) {
+                return Integer.toString(bucket);
+            }
+        }
+        return "more";
+    }
+}
@@ -0,0 +1,75 @@
+package com.topan.web;
+
+import com.topan.entity.Employee;
+import com.topan.service.EmployeeCursor;
+import com.topan.service.ReactiveEmployeeService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+
+/**
+ * WebFlux functional endpoints mirroring the reads of {@link EmployeeController}, mounted under {@code /reactive}
+ * by {@link com.topan.config.ReactiveConfig}. Lists are written as a JSON array, or as NDJSON when the client
+ * accepts {@code application/x-ndjson}, one employee at a time as the socket drains: a slow client holds neither
+ * a thread nor the page.
+ */
+@Component
+@ConditionalOnProperty(name = "topan.reactive.enabled", havingValue = "true")
+@RequiredArgsConstructor(onConstructor = @__(@Autowired))
+public class ReactiveEmployeeHandler {
+
+    private final ReactiveEmployeeService reactiveEmployeeService;
+
+    public RouterFunction<ServerResponse> routes() {
+        return RouterFunctions.route()
+                .GET("/users/{id}", this::getEmployeeById)
+                .GET("/users", this::getEmployees)
+                .build();
+    }
+
+    /**
+     * Same parameters as {@link EmployeeController#getEmployees}, without the cursor.
+     */
+    public Mono<ServerResponse> getEmployees(ServerRequest request) {
+        BigDecimal minSalary;
+        BigDecimal maxSalary;
+        int offset;
+        int limit;
+        try {
+            minSalary = new BigDecimal(request.queryParam("minSalary").orElseThrow(IllegalArgumentException::new));
+            maxSalary = new BigDecimal(request.queryParam("maxSalary").orElseThrow(IllegalArgumentException::new));
+            offset = Integer.parseInt(request.queryParam("offset").orElse("0"));
+            limit = Integer.parseInt(request.queryParam("limit").orElse("30"));
+        } catch (IllegalArgumentException e) {
+            return ServerResponse.badRequest().build();
+        }
+        String sort = request.queryParam("sort").orElse("+id");
+
+        // The status is sent with the first row, so reject what would fail there up front
+        String property = sort.startsWith("+") || sort.startsWith("-") ? sort.substring(1) : sort;
+        if (!EmployeeCursor.SORTABLE.contains(property) || offset < 0 || limit < 1) {
+            return ServerResponse.badRequest().build();
+        }
+
+        MediaType mediaType = request.headers().accept().stream().anyMatch(MediaType.APPLICATION_NDJSON::equalsTypeAndSubtype)
+                ? MediaType.APPLICATION_NDJSON : MediaType.APPLICATION_JSON;
+        return ServerResponse.ok()
+                .contentType(mediaType)
+                .body(reactiveEmployeeService.getEmployees(minSalary, maxSalary, offset, limit, sort), Employee.class);
+    }
+
+    public Mono<ServerResponse> getEmployeeById(ServerRequest request) {
+        return reactiveEmployeeService.getEmployeeById(request.pathVariable("id"))
+                .flatMap(employee -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(employee))
+                .switchIfEmpty(ServerResponse.notFound().build());
+    }
+}
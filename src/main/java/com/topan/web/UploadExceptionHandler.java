@@ -0,0 +1,20 @@
+package com.topan.web;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
+
+/**
+ * Multipart bodies are parsed before a handler is picked, so a file above {@code topan.upload.max-size} fails
+ * outside of {@link EmployeeController}; this answers it with 413 rather than 500.
+ */
+@RestControllerAdvice
+public class UploadExceptionHandler {
+
+    @ExceptionHandler(MaxUploadSizeExceededException.class)
+    public ResponseEntity<String> uploadTooLarge(MaxUploadSizeExceededException e) {
+        return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body("The file exceeds the upload size limit.");
+    }
+}
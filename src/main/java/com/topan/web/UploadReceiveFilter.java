@@ -0,0 +1,54 @@
+package com.topan.web;
+
+import com.topan.service.impl.UploadMetrics;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * The container reads a multipart body only when its parts are first asked for, which happens before any handler
+ * runs, so the upload phase timers would never see it. This asks for the parts of {@code POST /users/upload} up
+ * front and records the read as the receive phase. A body the container cannot parse is left for the
+ * {@code DispatcherServlet}, which asks again and gets the same failure.
+ */
+@Component
+@RequiredArgsConstructor(onConstructor = @__(@Autowired))
+public class UploadReceiveFilter extends OncePerRequestFilter {
+
+    private static final String UPLOAD_PATH = "/users/upload";
+
+    private final UploadMetrics metrics;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String contentType = request.getContentType();
+        return !HttpMethod.POST.matches(request.getMethod())
+                || contentType == null
+                || !contentType.toLowerCase(Locale.ROOT).startsWith(MediaType.MULTIPART_FORM_DATA_VALUE)
+                || !UPLOAD_PATH.equals(request.getRequestURI().substring(request.getContextPath().length()));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        Timer.Sample sample = metrics.start();
+        try {
+            request.getParts();
+            metrics.record(UploadMetrics.Phase.RECEIVE, sample);
+        } catch (IOException | ServletException | RuntimeException e) {
+            // Reported by the DispatcherServlet's own multipart resolution
+        }
+        chain.doFilter(request, response);
+    }
+}
@@ -0,0 +1,49 @@
+package com.topan.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class NativeUpsertEngineConfigTest {
+
+    private final ApplicationContextRunner runner = new ApplicationContextRunner()
+            .withUserConfiguration(NativeUpsertEngineConfig.class, DataSources.class);
+
+    @Test
+    public void testAllowLoadLocalInfile_OnlyForNativeEngineWithLoadData() {
+        runner.withPropertyValues("topan.upload.engine=native", "topan.upload.native.load-data=true").run(context -> {
+            assertEquals("true", allowLoadLocalInfile(context.getBean("mysql", HikariDataSource.class)));
+            assertNull(allowLoadLocalInfile(context.getBean("h2", HikariDataSource.class)));
+        });
+        // Off unless asked for, as it trusts the server
+        runner.withPropertyValues("topan.upload.engine=native").run(context ->
+                assertNull(allowLoadLocalInfile(context.getBean("mysql", HikariDataSource.class))));
+        runner.run(context -> assertNull(allowLoadLocalInfile(context.getBean("mysql", HikariDataSource.class))));
+    }
+
+    private static Object allowLoadLocalInfile(HikariDataSource dataSource) {
+        return dataSource.getDataSourceProperties().get(NativeUpsertEngineConfig.ALLOW_LOAD_LOCAL_INFILE);
+    }
+
+    @Configuration
+    static class DataSources {
+        @Bean(destroyMethod = "")
+        HikariDataSource mysql() {
+            HikariDataSource dataSource = new HikariDataSource();
+            dataSource.setJdbcUrl("jdbc:mysql://localhost:3306/user");
+            return dataSource;
+        }
+
+        @Bean(destroyMethod = "")
+        HikariDataSource h2() {
+            HikariDataSource dataSource = new HikariDataSource();
+            dataSource.setJdbcUrl("jdbc:h2:mem:native-config");
+            return dataSource;
+        }
+    }
+}
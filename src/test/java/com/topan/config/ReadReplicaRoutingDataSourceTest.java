@@ -0,0 +1,204 @@
+package com.topan.config;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Routes between in-memory H2 databases that each name themselves in a one-row table, through the same
+ * lazy proxy and transaction handling as the application.
+ */
+public class ReadReplicaRoutingDataSourceTest {
+
+    private final DataSource primary = database("primary");
+    private final SwitchableDataSource replica0 = new SwitchableDataSource(database("replica0"));
+    private final SwitchableDataSource replica1 = new SwitchableDataSource(database("replica1"));
+
+    @BeforeEach
+    public void setUp() {
+        for (String name : List.of("primary", "replica0", "replica1")) {
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(database(name));
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS source (name VARCHAR(20))");
+            jdbcTemplate.update("DELETE FROM source");
+            jdbcTemplate.update("INSERT INTO source VALUES (?)", name);
+        }
+    }
+
+    @AfterEach
+    public void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    public void testGetConnection_ReadOnlyTransactionsTakeTurnsOnReplicas() {
+        Routing routing = new Routing(List.of(replica0, replica1), Duration.ofMinutes(1));
+
+        assertEquals(List.of("replica0", "replica1", "replica0", "replica1"),
+                List.of(routing.read(), routing.read(), routing.read(), routing.read()));
+    }
+
+    @Test
+    public void testGetConnection_WritesAndNonTransactionalCallsGoToPrimary() {
+        Routing routing = new Routing(List.of(replica0, replica1), Duration.ofMinutes(1));
+
+        assertEquals("primary", routing.write());
+        assertEquals("primary", routing.jdbcTemplate.queryForObject("SELECT name FROM source", String.class));
+    }
+
+    @Test
+    public void testGetConnection_FailingReplicaIsSkippedForRetryInterval() {
+        Routing routing = new Routing(List.of(replica0, replica1), Duration.ofMinutes(1));
+
+        replica0.down = true;
+        assertEquals(List.of("replica1", "replica1", "replica1"), List.of(routing.read(), routing.read(), routing.read()));
+        assertEquals(1, routing.dataSource.getAvailableReplicas());
+        assertEquals(1, replica0.attempts);
+
+        // Back up, but not tried again before the interval has passed
+        replica0.down = false;
+        assertEquals(List.of("replica1", "replica1"), List.of(routing.read(), routing.read()));
+    }
+
+    @Test
+    public void testGetConnection_FailingReplicaIsTriedAgainAfterRetryInterval() {
+        Routing routing = new Routing(List.of(replica0, replica1), Duration.ZERO);
+
+        replica0.down = true;
+        assertEquals("replica1", routing.read());
+        replica0.down = false;
+        assertEquals(List.of("replica1", "replica0", "replica1"), List.of(routing.read(), routing.read(), routing.read()));
+        assertEquals(2, routing.dataSource.getAvailableReplicas());
+    }
+
+    @Test
+    public void testGetConnection_ReadsGoToPrimaryWhenEveryReplicaIsDown() {
+        Routing routing = new Routing(List.of(replica0, replica1), Duration.ofMinutes(1));
+
+        replica0.down = true;
+        replica1.down = true;
+        assertEquals(List.of("primary", "primary"), List.of(routing.read(), routing.read()));
+        assertEquals(0, routing.dataSource.getAvailableReplicas());
+    }
+
+    @Test
+    public void testGetConnection_RequestReadsItsOwnWritesFromPrimary() {
+        Routing routing = new Routing(List.of(replica0), Duration.ofMinutes(1));
+
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        assertEquals("replica0", routing.read());
+        routing.write();
+        assertEquals(List.of("primary", "primary"), List.of(routing.read(), routing.read()));
+
+        // The next request starts on the replicas again
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        assertEquals("replica0", routing.read());
+    }
+
+    @Test
+    public void testGetConnection_WriteTransactionWithoutStatementsDoesNotPinRequest() {
+        Routing routing = new Routing(List.of(replica0), Duration.ofMinutes(1));
+
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        routing.transactionTemplate.executeWithoutResult(status -> {
+        });
+        assertEquals("replica0", routing.read());
+    }
+
+    @Test
+    public void testGetConnection_ExplicitCredentialsGoToPrimary() {
+        Routing routing = new Routing(List.of(replica0), Duration.ofMinutes(1));
+
+        String source = routing.readOnlyTemplate.execute(status -> {
+            try (Connection connection = routing.dataSource.getConnection("", "")) {
+                return new JdbcTemplate(new SingleConnectionDataSource(connection, true))
+                        .queryForObject("SELECT name FROM source", String.class);
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertEquals("primary", source);
+    }
+
+    /**
+     * The routing data source wired up as {@link ReadReplicaConfig} does.
+     */
+    private final class Routing {
+        final ReadReplicaRoutingDataSource dataSource;
+        final JdbcTemplate jdbcTemplate;
+        final TransactionTemplate transactionTemplate;
+        final TransactionTemplate readOnlyTemplate;
+
+        Routing(List<DataSource> replicas, Duration retryInterval) {
+            dataSource = new ReadReplicaRoutingDataSource(primary, replicas, retryInterval);
+            LazyConnectionDataSourceProxy proxy = new LazyConnectionDataSourceProxy(dataSource);
+            DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(proxy);
+            jdbcTemplate = new JdbcTemplate(proxy);
+            transactionTemplate = new TransactionTemplate(transactionManager);
+            readOnlyTemplate = new TransactionTemplate(transactionManager);
+            readOnlyTemplate.setReadOnly(true);
+        }
+
+        String read() {
+            return readOnlyTemplate.execute(status -> jdbcTemplate.queryForObject("SELECT name FROM source", String.class));
+        }
+
+        String write() {
+            return transactionTemplate.execute(status -> {
+                jdbcTemplate.update("UPDATE source SET name = name");
+                return jdbcTemplate.queryForObject("SELECT name FROM source", String.class);
+            });
+        }
+    }
+
+    private static DataSource database(String name) {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:routing-" + name + ";DB_CLOSE_DELAY=-1");
+        return dataSource;
+    }
+
+    /**
+     * Stands in for a replica that goes down and comes back.
+     */
+    private static final class SwitchableDataSource extends AbstractDataSource {
+        private final DataSource target;
+        volatile boolean down;
+        int attempts;
+
+        SwitchableDataSource(DataSource target) {
+            this.target = target;
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            attempts++;
+            if (down) {
+                throw new SQLTransientConnectionException("Connection refused");
+            }
+            return target.getConnection();
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return getConnection();
+        }
+    }
+}
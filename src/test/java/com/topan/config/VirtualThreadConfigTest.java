@@ -0,0 +1,29 @@
+package com.topan.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.mock.env.MockEnvironment;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class VirtualThreadConfigTest {
+
+    @Test
+    public void testVirtualThreadPoolSizing_DefaultsYieldToSpringDatasourceSettings() {
+        HikariDataSource defaults = size(new MockEnvironment());
+        assertEquals(20, defaults.getMaximumPoolSize());
+        assertEquals(5000, defaults.getConnectionTimeout());
+
+        HikariDataSource configured = size(new MockEnvironment()
+                .withProperty("topan.threads.virtual.maximum-pool-size", "50")
+                .withProperty("spring.datasource.hikari.connection-timeout", "30000"));
+        assertEquals(50, configured.getMaximumPoolSize());
+        assertEquals(new HikariDataSource().getConnectionTimeout(), configured.getConnectionTimeout());
+    }
+
+    private static HikariDataSource size(MockEnvironment environment) {
+        BeanPostProcessor sizing = VirtualThreadConfig.virtualThreadPoolSizing(environment);
+        return (HikariDataSource) sizing.postProcessAfterInitialization(new HikariDataSource(), "dataSource");
+    }
+}
@@ -0,0 +1,74 @@
+package com.topan.config;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.TaskRejectedException;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Needs a JDK 21+ runtime and is skipped on older ones, unless {@code topan.test.virtual-threads} is set, as the
+ * {@code virtual-threads} Maven profile does when it runs these tests on JDK 21.
+ */
+public class VirtualThreadTaskExecutorTest {
+
+    @BeforeEach
+    public void requireVirtualThreads() {
+        if (Boolean.getBoolean("topan.test.virtual-threads")) {
+            assertTrue(Runtime.version().feature() >= 21, "virtual threads need JDK 21, this is " + Runtime.version());
+        } else {
+            assumeTrue(Runtime.version().feature() >= 21, "virtual threads need JDK 21");
+        }
+    }
+
+    @Test
+    public void testExecute_BoundsRunningAndWaitingTasks() throws InterruptedException {
+        VirtualThreadTaskExecutor executor = new VirtualThreadTaskExecutor("upload-", 1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(2);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        Runnable task = () -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            running.decrementAndGet();
+            done.countDown();
+        };
+
+        executor.execute(task);
+        executor.execute(task);
+        assertThrows(TaskRejectedException.class, () -> executor.execute(task));
+
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(1, maxRunning.get());
+    }
+
+    @Test
+    public void testExecute_RunsOnVirtualThreadsUntilShutdown() throws InterruptedException {
+        VirtualThreadTaskExecutor executor = new VirtualThreadTaskExecutor("upload-", 2, 0);
+        CountDownLatch done = new CountDownLatch(1);
+        String[] name = new String[1];
+        executor.execute(() -> {
+            name[0] = Thread.currentThread().toString();
+            done.countDown();
+        });
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(name[0].startsWith("VirtualThread"), name[0]);
+        assertTrue(name[0].contains("upload-0"), name[0]);
+
+        executor.shutdown();
+        assertThrows(TaskRejectedException.class, () -> executor.execute(() -> {
+        }));
+    }
+}
@@ -0,0 +1,152 @@
+package com.topan.repository;
+
+import com.topan.entity.Employee;
+import com.topan.service.EmployeeCursor;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.TupleElement;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Sort;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+@DataJpaTest(properties = "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect")
+public class EmployeeRepositoryTest {
+
+    @Autowired
+    private EmployeeRepository employeeRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @BeforeEach
+    public void setUp() {
+        List<Employee> employees = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            // Only five distinct salaries and names, so most pages end in the middle of a tie
+            employees.add(new Employee(String.format("e%04d", i), "login" + i, "Name " + (i % 5),
+                    new BigDecimal((i % 5) * 1000 + ".00")));
+        }
+        employeeRepository.saveAllAndFlush(employees);
+    }
+
+    @Test
+    public void testFindBySalaryBetweenAfter_WalksSalaryAscendingWithoutGapsOrRepeats() {
+        Sort.Order order = Sort.Order.asc("salary");
+        List<Employee> expected = employeeRepository.findAll().stream()
+                .filter(e -> e.getSalary().compareTo(new BigDecimal("1000")) >= 0)
+                .sorted(Comparator.comparing(Employee::getSalary).thenComparing(Employee::getId))
+                .toList();
+
+        assertEquals(ids(expected), ids(walk(order, new BigDecimal("1000"), new BigDecimal("9000"), 7)));
+    }
+
+    @Test
+    public void testFindBySalaryBetweenAfter_WalksNameDescending() {
+        Sort.Order order = Sort.Order.desc("name");
+        List<Employee> expected = employeeRepository.findAll().stream()
+                .sorted(Comparator.comparing(Employee::getName).thenComparing(Employee::getId).reversed())
+                .toList();
+
+        assertEquals(ids(expected), ids(walk(order, BigDecimal.ZERO, new BigDecimal("9000"), 4)));
+    }
+
+    @Test
+    public void testFindBySalaryBetweenAfter_PagesThroughNullSortValues() {
+        List<Employee> employees = employeeRepository.findAll();
+        for (int i = 0; i < employees.size(); i += 3) {
+            employees.get(i).setName(null);
+        }
+        employeeRepository.saveAllAndFlush(employees);
+        Comparator<Employee> byName = Comparator.comparing(Employee::getName, Comparator.nullsFirst(Comparator.naturalOrder()))
+                .thenComparing(Employee::getId);
+
+        for (Sort.Order order : List.of(Sort.Order.asc("name"), Sort.Order.desc("name"))) {
+            List<Employee> expected = employees.stream()
+                    .sorted(order.isAscending() ? byName : byName.reversed())
+                    .toList();
+            assertEquals(ids(expected), ids(walk(order, BigDecimal.ZERO, new BigDecimal("9000"), 4)), order.toString());
+        }
+    }
+
+    @Test
+    public void testFindExistingIdsAndLogins_ReturnOnlyMatches() {
+        assertEquals(Set.of("e0003", "e0024"),
+                Set.copyOf(employeeRepository.findExistingIds(List.of("e0003", "e9999", "e0024"))));
+        assertEquals(List.of("login7"), employeeRepository.findExistingLogins(List.of("login7", "nobody")));
+    }
+
+    @Test
+    public void testStreamBySalaryBetween_StreamsOffsetPageDetached() {
+        entityManager.clear();
+        List<Employee> expected = employeeRepository.findAll().stream()
+                .sorted(Comparator.comparing(Employee::getSalary).thenComparing(Employee::getId).reversed())
+                .skip(10).limit(10)
+                .toList();
+        entityManager.clear();
+
+        List<Employee> streamed = new ArrayList<>();
+        try (Stream<Employee> employees = employeeRepository.streamBySalaryBetween(BigDecimal.ZERO, new BigDecimal("9000"),
+                Sort.Order.desc("salary"), 10, 10)) {
+            employees.forEach(employee -> {
+                assertFalse(entityManager.contains(employee));
+                streamed.add(employee);
+            });
+        }
+
+        assertEquals(ids(expected), ids(streamed));
+    }
+
+    @Test
+    public void testStreamAll_StreamsRangeInIdOrderOutsidePersistenceContext() {
+        List<Employee> streamed;
+        try (Stream<Employee> employees = employeeRepository.streamAll(new BigDecimal("3000"), null)) {
+            streamed = employees.toList();
+        }
+
+        assertEquals(10, streamed.size());
+        assertEquals(ids(streamed).stream().sorted().toList(), ids(streamed));
+        streamed.forEach(employee -> assertFalse(entityManager.contains(employee)));
+    }
+
+    @Test
+    public void testFindFieldsBySalaryBetween_SelectsOnlyRequestedColumnsPlusKeys() {
+        List<Tuple> tuples = employeeRepository.findFieldsBySalaryBetween(new BigDecimal("4000"), new BigDecimal("4000"),
+                List.of("salary"), Sort.Order.desc("salary"), null, null, 0, 3);
+
+        assertEquals(3, tuples.size());
+        List<String> aliases = tuples.get(0).getElements().stream().map(TupleElement::getAlias).toList();
+        assertEquals(List.of("salary", "id"), aliases);
+        assertEquals(List.of("e0024", "e0019", "e0014"), tuples.stream().map(t -> t.get("id", String.class)).toList());
+    }
+
+    private List<Employee> walk(Sort.Order order, BigDecimal min, BigDecimal max, int limit) {
+        List<Employee> all = new ArrayList<>();
+        EmployeeCursor cursor = null;
+        while (true) {
+            List<Employee> page = employeeRepository.findBySalaryBetweenAfter(min, max, order,
+                    cursor != null ? cursor.value() : null, cursor != null ? cursor.id() : null, limit);
+            all.addAll(page);
+            if (page.size() < limit) {
+                return all;
+            }
+            // Round-trip through the token, as a client would
+            cursor = EmployeeCursor.decode(EmployeeCursor.after(page.get(page.size() - 1), order).encode());
+        }
+    }
+
+    private static List<String> ids(List<Employee> employees) {
+        return employees.stream().map(Employee::getId).toList();
+    }
+}
@@ -0,0 +1,69 @@
+package com.topan.repository;
+
+import com.topan.entity.Employee;
+import io.r2dbc.spi.ConnectionFactories;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+public class ReactiveEmployeeRepositoryTest {
+
+    private ReactiveEmployeeRepository repository;
+
+    @BeforeEach
+    public void setUp() {
+        DatabaseClient databaseClient = DatabaseClient.create(ConnectionFactories.get(
+                "r2dbc:h2:mem:///" + UUID.randomUUID() + "?options=DB_CLOSE_DELAY=-1"));
+        Flux.concat(
+                        databaseClient.sql("CREATE TABLE employee (id VARCHAR(255) PRIMARY KEY, login VARCHAR(255),"
+                                + " name VARCHAR(255), salary DECIMAL(38, 2), fingerprint BIGINT)").then(),
+                        databaseClient.sql("INSERT INTO employee VALUES ('e0001', 'john', 'John', 1000.00, 1),"
+                                + " ('e0002', 'jane', 'Jane', 3000.00, 2), ('e0003', 'anna', 'Anna', 2000.00, 3),"
+                                + " ('e0004', 'bob', 'Bob', 2000.00, 4), ('e0005', 'zoe', 'Zoe', 9000.00, 5)").then())
+                .blockLast();
+        repository = new ReactiveEmployeeRepository(databaseClient);
+    }
+
+    @Test
+    public void testFindById() {
+        StepVerifier.create(repository.findById("e0002"))
+                .expectNextMatches(employee -> employee.getLogin().equals("jane")
+                        && employee.getSalary().compareTo(new BigDecimal("3000")) == 0
+                        && employee.getFingerprint() == 2L)
+                .verifyComplete();
+        StepVerifier.create(repository.findById("missing")).verifyComplete();
+    }
+
+    @Test
+    public void testFindBySalaryBetween_OrdersBySortThenIdAndPages() {
+        StepVerifier.create(repository.findBySalaryBetween(new BigDecimal("1000"), new BigDecimal("3000"),
+                        Sort.Order.desc("salary"), 1, 2).map(Employee::getId))
+                .expectNext("e0004", "e0003")
+                .verifyComplete();
+    }
+
+    @Test
+    public void testFindBySalaryBetween_EmitsOnDemand() {
+        StepVerifier.create(repository.findBySalaryBetween(BigDecimal.ZERO, new BigDecimal("10000"),
+                        Sort.Order.asc("id"), 0, 30).map(Employee::getId), 1)
+                .expectNext("e0001")
+                .thenRequest(2)
+                .expectNext("e0002", "e0003")
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    public void testFindBySalaryBetween_RejectsUnknownSortColumn() {
+        StepVerifier.create(repository.findBySalaryBetween(BigDecimal.ZERO, BigDecimal.TEN,
+                        Sort.Order.asc("salary; DROP TABLE employee"), 0, 30))
+                .expectError(IllegalArgumentException.class)
+                .verify();
+    }
+}
@@ -3,19 +3,30 @@ package com.topan.service.impl;
 
 import com.topan.entity.Employee;
 import com.topan.repository.EmployeeRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.http.HttpStatus;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class EmployeeServiceImplTest {
@@ -23,6 +34,17 @@ public class EmployeeServiceImplTest {
     @Mock
     private EmployeeRepository employeeRepository;
 
+    @Mock
+    private EmployeeServingIndex servingIndex;
+
+    @Mock
+    private UploadResultCache uploadResultCache;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Spy
+    private EmployeeCache employeeCache = new EmployeeCache(true, 100, Duration.ofMinutes(1), false, registry);
+
     @InjectMocks
     private EmployeeServiceImpl employeeService;
 
@@ -38,8 +60,7 @@ public class EmployeeServiceImplTest {
         employees.add(new Employee("2", "jane", "Jane Smith", new BigDecimal("6000.0")));
 
         // Mock the repository behavior
-        when(employeeRepository.existsById("1")).thenReturn(false);
-        when(employeeRepository.existsById("2")).thenReturn(false);
+        when(employeeRepository.findExistingIds(List.of("1", "2"))).thenReturn(List.of());
 
         // Perform the operation
         List<String> duplicateIds = employeeService.findDuplicateIds(employees);
@@ -55,12 +76,27 @@ public class EmployeeServiceImplTest {
         employees.add(new Employee("1", "john", "John Doe", new BigDecimal("5000.0")));
         employees.add(new Employee("2", "jane", "Jane Smith", new BigDecimal("6000.0")));
         employees.add(new Employee("1", "alice", "Alice Johnson", new BigDecimal("7000.0")));
-        when(employeeRepository.existsById("1")).thenReturn(true);
+        when(employeeRepository.findExistingIds(List.of("1", "2"))).thenReturn(List.of("1"));
         List<String> duplicateIds = employeeService.findDuplicateIds(employees);
         assertEquals(2, duplicateIds.size());
         assertTrue(duplicateIds.contains("1"));
     }
 
+    @Test
+    public void testFindDuplicateLogins_QueriesOncePerChunk() {
+        List<Employee> employees = new ArrayList<>();
+        for (int i = 0; i < 2 * EmployeeServiceImpl.IN_CHUNK_SIZE + 1; i++) {
+            employees.add(new Employee(String.valueOf(i), "login" + i, "Name " + i, new BigDecimal("5000.0")));
+        }
+        when(employeeRepository.findExistingLogins(any())).thenReturn(List.of());
+        when(employeeRepository.findExistingLogins(argThat(logins -> logins.contains("login1500"))))
+                .thenReturn(List.of("login1500"));
+
+        assertEquals(List.of("login1500"), employeeService.findDuplicateLogins(employees));
+        verify(employeeRepository, times(3)).findExistingLogins(any());
+        verify(employeeRepository, never()).existsByLogin(any());
+    }
+
     @Test
     public void testFindByEmployeeId_ExistingEmployee_ReturnsEmployee() {
         Employee employee = new Employee("1", "john", "John Doe", new BigDecimal("5000.0"));
@@ -73,6 +109,112 @@ public class EmployeeServiceImplTest {
         assertEquals(new BigDecimal("5000.0"), result.getSalary());
     }
 
+    @Test
+    public void testFindByEmployeeId_RepeatedLookupsAreCached() {
+        when(employeeRepository.findById("1"))
+                .thenReturn(Optional.of(new Employee("1", "john", "John Doe", new BigDecimal("5000.0"))));
+        when(employeeRepository.findById("2")).thenReturn(Optional.empty());
+
+        employeeService.findByEmployeeId("1").setName("Changed by caller");
+        assertEquals("John Doe", employeeService.findByEmployeeId("1").getName());
+        assertEquals(HttpStatus.NOT_FOUND, employeeService.getEmployeeById("2").getStatusCode());
+        assertEquals(HttpStatus.NOT_FOUND, employeeService.getEmployeeById("2").getStatusCode());
+
+        verify(employeeRepository, times(1)).findById("1");
+        verify(employeeRepository, times(1)).findById("2");
+        assertEquals(2.0, registry.get("cache.gets").tag("cache", "employees").tag("result", "hit").functionCounter().count());
+        assertEquals(2.0, registry.get("cache.gets").tag("cache", "employees").tag("result", "miss").functionCounter().count());
+    }
+
+    @Test
+    public void testUpdateEmployee_ReplacesCachedEmployee() {
+        when(employeeRepository.findById("1"))
+                .thenReturn(Optional.of(new Employee("1", "john", "John Doe", new BigDecimal("5000.0"))));
+        when(employeeRepository.saveAndFlush(any(Employee.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        employeeService.findByEmployeeId("1");
+
+        employeeService.updateEmployee(1L, new Employee(null, "john", "John Smith", new BigDecimal("6000.0")));
+
+        Employee cached = employeeService.findByEmployeeId("1");
+        assertEquals("John Smith", cached.getName());
+        assertEquals(new BigDecimal("6000.0"), cached.getSalary());
+        verify(employeeRepository, times(1)).findById("1");
+    }
+
+    @Test
+    public void testUpdateEmployee_CacheAndIndexTakeSavedEmployeeOnCommit() {
+        when(employeeRepository.findById("1"))
+                .thenReturn(Optional.of(new Employee("1", "john", "John Doe", new BigDecimal("5000.0"))));
+        when(employeeRepository.saveAndFlush(any(Employee.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            employeeService.updateEmployee(1L, new Employee(null, "john", "John Smith", new BigDecimal("6000.0")));
+            // The index defers the row to the commit itself, in commit order
+            verify(servingIndex).applyAfterCommit(argThat((List<Employee> saved) -> saved.get(0).getName().equals("John Smith")));
+            verify(employeeCache, never()).put(any());
+            verify(uploadResultCache, never()).recordWrite();
+
+            TransactionSynchronizationUtils.triggerAfterCommit();
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        verify(uploadResultCache).recordWrite();
+        assertEquals("John Smith", employeeService.findByEmployeeId("1").getName());
+    }
+
+    @Test
+    public void testSaveEmployees_IndexAndCacheTakeSavedRowsOnCommit() {
+        List<Employee> employees = List.of(new Employee("1", "john", "John Doe", new BigDecimal("5000.0")),
+                new Employee("2", "jane", "Jane Smith", new BigDecimal("6000.0")));
+        when(employeeRepository.saveAllAndFlush(employees)).thenReturn(employees);
+        when(employeeRepository.saveAndFlush(any(Employee.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(employeeRepository.findById("1")).thenReturn(Optional.of(employees.get(0)));
+        employeeService.findByEmployeeId("1");
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            employeeService.saveEmployees(employees);
+            employeeService.saveEmployee(new Employee("3", "jim", "Jim Beam", new BigDecimal("7000.0")));
+            verify(servingIndex).applyAfterCommit(employees);
+            verify(servingIndex).applyAfterCommit(argThat((List<Employee> saved) -> saved.get(0).getId().equals("3")));
+            verify(employeeCache, never()).invalidateAll(any());
+            verify(uploadResultCache, never()).recordWrite();
+
+            TransactionSynchronizationUtils.triggerAfterCommit();
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        verify(employeeCache).invalidateAll(List.of("1", "2"));
+        verify(uploadResultCache, times(2)).recordWrite();
+        assertEquals("Jim Beam", employeeService.findByEmployeeId("3").getName());
+        verify(employeeRepository, never()).findById("3");
+    }
+
+    @Test
+    public void testFindByEmployeeId_ReplicaReadsAreNotCached() {
+        EmployeeCache replicaCache = new EmployeeCache(true, 100, Duration.ofMinutes(1), true, new SimpleMeterRegistry());
+        replicaCache.put(new Employee("2", "jane", "Jane Smith", new BigDecimal("6000.0")));
+
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        try {
+            replicaCache.get("1", id -> Optional.of(new Employee(id, "john", "John Doe", new BigDecimal("5000.0"))));
+            assertEquals(Optional.empty(), replicaCache.get("1", id -> Optional.empty()));
+            assertEquals("Jane Smith", replicaCache.get("2", id -> Optional.empty()).orElseThrow().getName());
+        } finally {
+            TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        }
+        // Outside of read-only transactions misses go to the primary and are cached
+        replicaCache.get("1", id -> Optional.of(new Employee(id, "john", "John Doe", new BigDecimal("5000.0"))));
+        assertEquals("John Doe", replicaCache.get("1", id -> Optional.empty()).orElseThrow().getName());
+    }
+
+    @Test
+    public void testGetEmployeeFields_UnknownFieldIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> employeeService.getEmployeeFields(BigDecimal.ZERO,
+                BigDecimal.TEN, 0, 30, "+id", null, List.of("id", "password")));
+    }
+
     @Test
     public void testFindByEmployeeId_NonExistingEmployee_ThrowsNoSuchElementException() {
         when(employeeRepository.findById("1")).thenReturn(Optional.empty());
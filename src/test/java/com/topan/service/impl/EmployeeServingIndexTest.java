@@ -0,0 +1,222 @@
+package com.topan.service.impl;
+
+import com.topan.entity.Employee;
+import com.topan.repository.EmployeeRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class EmployeeServingIndexTest {
+
+    private static final BigDecimal MIN = new BigDecimal("1000");
+    private static final BigDecimal MAX = new BigDecimal("5000");
+
+    private final List<Employee> table = new ArrayList<>();
+    private EmployeeServingIndex index;
+
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        Random random = new Random(42);
+        for (int i = 0; i < 500; i++) {
+            // Few distinct salaries and names, so ties are broken by id
+            table.add(new Employee(String.format("e%04d", random.nextInt(10_000)) + i, "login" + random.nextInt(1000) + "-" + i,
+                    "Name " + random.nextInt(20), BigDecimal.valueOf(random.nextInt(60) * 10_000L, 2)));
+        }
+
+        EmployeeRepository repository = mock(EmployeeRepository.class);
+        when(repository.findByIdGreaterThan(anyString(), any(Pageable.class))).thenAnswer(invocation -> {
+            String after = invocation.getArgument(0);
+            Pageable pageable = invocation.getArgument(1);
+            return table.stream().filter(e -> e.getId().compareTo(after) > 0)
+                    .sorted(Comparator.comparing(Employee::getId)).limit(pageable.getPageSize()).toList();
+        });
+        index = new EmployeeServingIndex(repository, true);
+        index.warmUp();
+        awaitWarmUp();
+    }
+
+    @Test
+    public void testQuery_MatchesSortedFilterOfTable() {
+        for (String property : List.of("id", "login", "name", "salary")) {
+            for (Sort.Direction direction : Sort.Direction.values()) {
+                Sort.Order order = new Sort.Order(direction, property);
+                for (int offset = 0; offset < 12; offset++) {
+                    assertEquals(expected(offset, 30, order), index.query(MIN, MAX, offset, 30, order).orElseThrow(),
+                            order + " page " + offset);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testApply_UpdatesAndAddsRows() {
+        Employee moved = table.get(0);
+        moved.setSalary(new BigDecimal("4999.99"));
+        moved.setName("Aaron");
+        Employee added = new Employee("new", "newlogin", "Zed", new BigDecimal("1000.00"));
+        table.add(added);
+
+        EmployeeServingIndex.Changes changes = index.newChanges();
+        changes.addAll(List.of(moved, added));
+        index.apply(changes);
+
+        for (String property : List.of("id", "name", "salary")) {
+            Sort.Order order = Sort.Order.desc(property);
+            for (int offset = 0; offset < 12; offset++) {
+                assertEquals(expected(offset, 30, order), index.query(MIN, MAX, offset, 30, order).orElseThrow());
+            }
+        }
+    }
+
+    @Test
+    public void testApply_SingleRowUpdatesArePatchedInPlace() {
+        Random random = new Random(7);
+        for (int i = 0; i < 200; i++) {
+            Employee updated = table.get(random.nextInt(table.size()));
+            updated.setSalary(BigDecimal.valueOf(random.nextInt(60) * 10_000L, 2));
+            updated.setName("Name " + random.nextInt(20));
+            updated.setLogin(random.nextInt(10) == 0 ? null : "login" + random.nextInt(1000) + "-" + i);
+            index.apply(updated);
+        }
+
+        for (String property : List.of("id", "name", "salary")) {
+            for (Sort.Direction direction : Sort.Direction.values()) {
+                Sort.Order order = new Sort.Order(direction, property);
+                for (int offset = 0; offset < 12; offset++) {
+                    assertEquals(expected(offset, 30, order), index.query(MIN, MAX, offset, 30, order).orElseThrow(),
+                            order + " page " + offset);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testApplyAfterCommit_AppliesInCommitOrder() {
+        Employee row = table.get(0);
+        Employee olderUpload = new Employee(row.getId(), row.getLogin(), "Older", row.getSalary());
+        Employee newerUpdate = new Employee(row.getId(), row.getLogin(), "Newer", row.getSalary());
+        Employee rolledBack = new Employee(row.getId(), row.getLogin(), "Rolled back", row.getSalary());
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            index.applyAfterCommit(List.of(olderUpload));
+            List<TransactionSynchronization> upload = TransactionSynchronizationManager.getSynchronizations();
+            TransactionSynchronizationManager.clearSynchronization();
+            TransactionSynchronizationManager.initSynchronization();
+            index.applyAfterCommit(List.of(rolledBack));
+            List<TransactionSynchronization> failed = TransactionSynchronizationManager.getSynchronizations();
+            TransactionSynchronizationManager.clearSynchronization();
+            TransactionSynchronizationManager.initSynchronization();
+            index.applyAfterCommit(List.of(newerUpdate));
+            List<TransactionSynchronization> update = TransactionSynchronizationManager.getSynchronizations();
+
+            // The update's callback runs first, but it waits for the upload that committed before it
+            TransactionSynchronizationUtils.invokeAfterCompletion(update, TransactionSynchronization.STATUS_COMMITTED);
+            assertEquals(row.getName(), nameOf(row.getId()));
+            TransactionSynchronizationUtils.invokeAfterCompletion(upload, TransactionSynchronization.STATUS_COMMITTED);
+            assertEquals("Older", nameOf(row.getId()));
+            TransactionSynchronizationUtils.invokeAfterCompletion(failed, TransactionSynchronization.STATUS_ROLLED_BACK);
+            assertEquals("Newer", nameOf(row.getId()));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        index.applyAfterCommit(List.of(olderUpload));
+        assertEquals("Older", nameOf(row.getId()));
+    }
+
+    @Test
+    public void testQuery_BoundsBeyondLongRangeAreClamped() {
+        BigDecimal huge = new BigDecimal("999999999999999999");
+        List<Employee> all = index.query(huge.negate(), huge, 0, 1000, Sort.Order.asc("id")).orElseThrow();
+
+        assertEquals(table.size(), all.size());
+        assertEquals(List.of(), index.query(huge, huge, 0, 30, Sort.Order.asc("id")).orElseThrow());
+    }
+
+    @Test
+    public void testQuery_SalaryBeyondLongRangeFallsBackToDatabaseWhenInRange() {
+        BigDecimal huge = new BigDecimal("999999999999999999");
+        Employee rich = table.get(0);
+        rich.setSalary(huge.multiply(BigDecimal.TEN));
+        index.apply(rich);
+
+        assertEquals(Optional.empty(), index.query(MIN, huge, 0, 30, Sort.Order.asc("id")));
+        assertEquals(Optional.empty(), index.query(BigDecimal.ZERO, new BigDecimal("92233720368547758.07"), 0, 30,
+                Sort.Order.asc("id")));
+        // Ranges below the clamped salary are still answered
+        table.remove(0);
+        assertEquals(expected(0, 30, Sort.Order.asc("salary")), index.query(MIN, MAX, 0, 30, Sort.Order.asc("salary")).orElseThrow());
+
+        rich.setSalary(new BigDecimal("1000.00"));
+        index.apply(rich);
+        table.add(rich);
+        assertEquals(expected(0, 30, Sort.Order.asc("salary")), index.query(MIN, huge, 0, 30, Sort.Order.asc("salary")).orElseThrow());
+    }
+
+    @Test
+    public void testQuery_UnknownPropertyFallsBackToDatabase() {
+        assertTrue(index.query(MIN, MAX, 0, 30, Sort.Order.asc("fingerprint")).isEmpty());
+    }
+
+    @Test
+    public void testQuery_DisabledIndexFallsBackToDatabase() {
+        EmployeeServingIndex disabled = new EmployeeServingIndex(mock(EmployeeRepository.class), false);
+        disabled.warmUp();
+        disabled.apply(table.get(0));
+
+        assertEquals(Optional.empty(), disabled.query(MIN, MAX, 0, 30, Sort.Order.asc("id")));
+    }
+
+    private String nameOf(String id) {
+        BigDecimal huge = new BigDecimal("999999999999999999");
+        return index.query(huge.negate(), huge, 0, 1000, Sort.Order.asc("id")).orElseThrow().stream()
+                .filter(e -> e.getId().equals(id)).findFirst().orElseThrow().getName();
+    }
+
+    private List<Employee> expected(int offset, int limit, Sort.Order order) {
+        Comparator<Employee> comparator = switch (order.getProperty()) {
+            case "login" -> Comparator.comparing(Employee::getLogin);
+            case "name" -> Comparator.comparing(Employee::getName);
+            case "salary" -> Comparator.comparing(Employee::getSalary);
+            default -> Comparator.comparing(Employee::getId);
+        };
+        comparator = comparator.thenComparing(Employee::getId);
+        if (order.isDescending()) {
+            comparator = comparator.reversed();
+        }
+        return table.stream()
+                .filter(e -> e.getSalary().compareTo(MIN) >= 0 && e.getSalary().compareTo(MAX) <= 0)
+                .sorted(comparator).skip((long) offset * limit).limit(limit).toList();
+    }
+
+    private void awaitWarmUp() throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (index.query(MIN, MAX, 0, 1, Sort.Order.asc("id")).isEmpty()) {
+            if (System.nanoTime() > deadline) {
+                fail("Serving index did not warm up");
+            }
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.topan.service.impl;
+
+import com.topan.entity.Employee;
+import com.topan.util.CompactStringSet;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class EmployeeValidatorTest {
+
+    @Test
+    public void testAccept_RejectsFirstDuplicateRow() {
+        EmployeeValidator validator = new EmployeeValidator();
+
+        assertTrue(validator.accept(employee("e1", "john")));
+        assertTrue(validator.accept(employee("#e1", "")));
+        assertTrue(validator.accept(employee("e2", "jane")));
+        assertFalse(validator.accept(employee("e3", "john")));
+        assertFalse(validator.accept(employee("e4", "jim")));
+
+        assertEquals(4, validator.getFirstInvalidRow());
+        assertEquals(5, validator.getRows());
+    }
+
+    @Test
+    public void testAcceptKeys_OnlyTakenByHashedValidator() {
+        assertThrows(IllegalStateException.class, () -> new EmployeeValidator().acceptKeys(1, 2));
+    }
+
+    @Test
+    public void testHashed_RowsAcceptedWholeAndAsKeysShareSets() {
+        // The parallel path falls back to whole rows after a stray quote, on the same validator
+        EmployeeValidator validator = EmployeeValidator.hashed();
+
+        assertTrue(validator.acceptKeys(CompactStringSet.hash("e1"), CompactStringSet.hash("john")));
+        assertTrue(validator.accept(employee("e2", "jane")));
+        assertFalse(validator.accept(employee("e1", "jim")));
+
+        assertEquals(3, validator.getFirstInvalidRow());
+    }
+
+    private static Employee employee(String id, String login) {
+        return new Employee(id, login, "Name", new BigDecimal("1000.00"));
+    }
+}
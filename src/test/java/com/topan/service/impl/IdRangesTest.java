@@ -0,0 +1,106 @@
+package com.topan.service.impl;
+
+import com.topan.service.IdRange;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IdRangesTest {
+
+    @Test
+    public void testToList_FewIdsStayExact() {
+        IdRanges ranges = new IdRanges(4);
+        ranges.add("e3");
+        ranges.add("e1");
+        ranges.add("e3");
+
+        assertEquals(List.of(new IdRange("e1", "e1"), new IdRange("e3", "e3")), ranges.toList());
+    }
+
+    @Test
+    public void testToList_SortedIdsBecomeAdjacentRanges() {
+        IdRanges ranges = new IdRanges(4);
+        for (int i = 0; i < 10_000; i++) {
+            ranges.add(String.format("e%05d", i));
+        }
+
+        List<IdRange> list = ranges.toList();
+        assertEquals(4, list.size());
+        assertEquals("e00000", list.get(0).first());
+        assertEquals("e09999", list.get(3).last());
+        for (int i = 1; i < list.size(); i++) {
+            assertEquals(Integer.parseInt(list.get(i - 1).last().substring(1)) + 1,
+                    Integer.parseInt(list.get(i).first().substring(1)));
+        }
+    }
+
+    @Test
+    public void testToList_DistantClustersStaySeparate() {
+        IdRanges ranges = new IdRanges(4);
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            ids.add("a" + i);
+            ids.add("m" + i);
+            ids.add("x" + i);
+        }
+        Collections.shuffle(ids, new Random(42));
+        ids.forEach(ranges::add);
+
+        // However the limit is spent, no range spans two clusters
+        List<IdRange> list = ranges.toList();
+        assertEquals(4, list.size());
+        for (IdRange range : list) {
+            assertEquals(range.first().charAt(0), range.last().charAt(0), range.toString());
+        }
+    }
+
+    @Test
+    public void testToList_EveryIdAddedStaysCovered() {
+        IdRanges ranges = new IdRanges(3);
+        Random random = new Random(7);
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            String id = Long.toString(random.nextLong() & Long.MAX_VALUE, 36);
+            ids.add(id);
+            ranges.add(id);
+        }
+
+        List<IdRange> list = ranges.toList();
+        assertTrue(list.size() <= 3);
+        for (String id : ids) {
+            assertTrue(list.stream().anyMatch(range -> range.overlaps(new IdRange(id, id))), id);
+        }
+    }
+
+    @Test
+    public void testAdd_OverlappingRangesAreMerged() {
+        IdRanges ranges = new IdRanges(8);
+        ranges.add(new IdRange("b", "d"));
+        ranges.add(new IdRange("f", "h"));
+        ranges.add(new IdRange("c", "g"));
+        ranges.add("k");
+
+        assertEquals(List.of(new IdRange("b", "h"), new IdRange("k", "k")), ranges.toList());
+    }
+
+    @Test
+    public void testCovers() {
+        IdRanges held = new IdRanges(8);
+        held.add(new IdRange("b", "h"));
+        IdRanges inside = new IdRanges(8);
+        inside.add("c");
+        inside.add("h");
+        IdRanges outside = new IdRanges(8);
+        outside.add("c");
+        outside.add("i");
+
+        assertTrue(held.covers(inside));
+        assertFalse(held.covers(outside));
+        assertTrue(held.covers(new IdRanges(8)));
+    }
+}
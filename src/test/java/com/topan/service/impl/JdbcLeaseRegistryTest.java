@@ -0,0 +1,74 @@
+package com.topan.service.impl;
+
+import com.topan.service.IdRange;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs against H2 standing in for the shared MySQL database; each registry call commits on its own, as it does
+ * in production.
+ */
+@DataJpaTest(properties = "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect")
+@Import(JdbcLeaseRegistry.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class JdbcLeaseRegistryTest {
+
+    @Autowired
+    private JdbcLeaseRegistry registry;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    public void testTryAcquire_SecondNodeIsRejectedWhileOverlappingLeaseIsHeld() {
+        assertTrue(registry.tryAcquire(Map.of("held-a1", new IdRange("h100", "h199")), "node-a:1", Duration.ofMinutes(1)));
+        assertTrue(registry.tryAcquire(Map.of("held-a2", new IdRange("h150", "h250")), "node-a:1", Duration.ofMinutes(1)));
+        assertFalse(registry.tryAcquire(Map.of("held-b1", new IdRange("h000", "h100")), "node-b:1", Duration.ofMinutes(1)));
+        assertTrue(registry.tryAcquire(Map.of("held-b1", new IdRange("h300", "h399")), "node-b:1", Duration.ofMinutes(1)));
+
+        registry.release(List.of("held-a1", "held-a2"), "node-a:1");
+        assertTrue(registry.tryAcquire(Map.of("held-b2", new IdRange("h000", "h100")), "node-b:1", Duration.ofMinutes(1)));
+    }
+
+    @Test
+    public void testTryAcquire_ExpiredLeaseNoLongerCounts() {
+        assertTrue(registry.tryAcquire(Map.of("expired-a", new IdRange("x1", "x9")), "node-a:1", Duration.ofMillis(-1)));
+        assertTrue(registry.tryAcquire(Map.of("expired-b", new IdRange("x1", "x9")), "node-b:1", Duration.ofMinutes(1)));
+
+        // Renewing or releasing as the previous owner no longer has any effect
+        registry.renew("node-a:1", Duration.ofMinutes(1));
+        registry.release(List.of("expired-b"), "node-a:1");
+        assertFalse(registry.tryAcquire(Map.of("expired-a2", new IdRange("x5", "x5")), "node-a:1", Duration.ofMinutes(1)));
+    }
+
+    @Test
+    public void testTryAcquire_LeaseTakenDuringUploadTransactionIsVisibleAtOnceAndOutlivesRollback() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            assertTrue(registry.tryAcquire(Map.of("in-upload-a", new IdRange("u1", "u9")), "node-a:1", Duration.ofMinutes(1)));
+            registry.renew("node-a:1", Duration.ofMinutes(1));
+
+            // Another node sees the committed lease instead of waiting on the upload's row lock
+            assertFalse(CompletableFuture.supplyAsync(() -> registry.tryAcquire(
+                    Map.of("in-upload-b", new IdRange("u5", "u5")), "node-b:1", Duration.ofMinutes(1)))
+                    .orTimeout(5, TimeUnit.SECONDS).join());
+            status.setRollbackOnly();
+        });
+
+        assertFalse(registry.tryAcquire(Map.of("in-upload-b", new IdRange("u5", "u5")), "node-b:1", Duration.ofMinutes(1)));
+    }
+}
@@ -0,0 +1,82 @@
+package com.topan.service.impl;
+
+import com.topan.entity.Employee;
+import com.topan.repository.EmployeeRepository;
+import com.topan.service.UpsertCounts;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DataJpaTest(properties = "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect")
+@Import(JpaUpsertEngine.class)
+public class JpaUpsertEngineTest {
+
+    @Autowired
+    private JpaUpsertEngine upsertEngine;
+    @Autowired
+    private EmployeeRepository employeeRepository;
+    @Autowired
+    private EntityManager entityManager;
+
+    @Test
+    public void testUpsert_InsertsNewAndUpdatesExistingEmployees() {
+        employeeRepository.saveAndFlush(new Employee("e0001", "john", "John Doe", new BigDecimal("1000.00")));
+
+        UpsertCounts counts = upsertEngine.upsert(List.of(
+                new Employee("e0001", "johnd", "John D", new BigDecimal("1500.00")),
+                new Employee("e0002", "jane", "Jane Doe", new BigDecimal("2000.00"))));
+
+        assertEquals(new UpsertCounts(1, 1, 0), counts);
+        assertEquals(2, employeeRepository.count());
+        Employee updated = employeeRepository.findById("e0001").orElseThrow();
+        assertEquals("johnd", updated.getLogin());
+        assertEquals("John D", updated.getName());
+        assertEquals(new BigDecimal("1500.00"), updated.getSalary());
+        assertEquals("jane", employeeRepository.findById("e0002").orElseThrow().getLogin());
+    }
+
+    @Test
+    public void testUpsert_SkipsRowsWhoseContentIsUnchanged() {
+        employeeRepository.saveAllAndFlush(List.of(
+                new Employee("e0001", "john", "John Doe", new BigDecimal("1000.00")),
+                new Employee("e0002", "jane", "Jane Doe", new BigDecimal("2000.00"))));
+        entityManager.clear();
+
+        UpsertCounts counts = upsertEngine.upsert(List.of(
+                // Same salary at another scale
+                new Employee("e0001", "john", "John Doe", new BigDecimal("1000.0")),
+                new Employee("e0002", "jane", "Jane Smith", new BigDecimal("2000.00"))));
+
+        assertEquals(new UpsertCounts(0, 1, 1), counts);
+        assertEquals("Jane Smith", employeeRepository.findById("e0002").orElseThrow().getName());
+    }
+
+    @Test
+    public void testUpsert_FingerprintFollowsOtherWritesAndIsBackfilled() {
+        employeeRepository.saveAndFlush(new Employee("e0001", "john", "John Doe", new BigDecimal("1000.00")));
+        // A row from before fingerprints existed
+        entityManager.createNativeQuery("insert into employee (id, login, name, salary) values ('e0002', 'jane', 'Jane Doe', 2000.00)")
+                .executeUpdate();
+        // A single update outside uploads, like PUT /users/{id}
+        Employee renamed = employeeRepository.findById("e0001").orElseThrow();
+        renamed.setName("John Renamed");
+        employeeRepository.saveAndFlush(renamed);
+        entityManager.clear();
+
+        List<Employee> file = List.of(
+                new Employee("e0001", "john", "John Doe", new BigDecimal("1000.00")),
+                new Employee("e0002", "jane", "Jane Doe", new BigDecimal("2000.00")));
+
+        assertEquals(new UpsertCounts(0, 2, 0), upsertEngine.upsert(file));
+        assertEquals("John Doe", employeeRepository.findById("e0001").orElseThrow().getName());
+        entityManager.clear();
+        assertEquals(new UpsertCounts(0, 0, 2), upsertEngine.upsert(file));
+    }
+}
@@ -0,0 +1,89 @@
+package com.topan.service.impl;
+
+import com.topan.entity.Employee;
+import com.topan.repository.EmployeeRepository;
+import com.topan.service.UpsertCounts;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Exercises the H2 {@code MERGE} path with multi-row {@code INSERT} staging; MySQL's {@code LOAD DATA} path needs a
+ * MySQL server.
+ */
+@DataJpaTest(properties = {"spring.jpa.database-platform=org.hibernate.dialect.H2Dialect", "topan.upload.engine=native"})
+@Import(NativeUpsertEngine.class)
+public class NativeUpsertEngineTest {
+
+    @Autowired
+    private NativeUpsertEngine upsertEngine;
+    @Autowired
+    private EmployeeRepository employeeRepository;
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    public void testUpsert_InsertsNewUpdatesChangedAndSkipsUnchanged() {
+        employeeRepository.saveAllAndFlush(List.of(
+                new Employee("e0001", "john", "John Doe", new BigDecimal("1000.00")),
+                new Employee("e0002", "jane", "Jane Doe", new BigDecimal("2000.00"))));
+        entityManager.clear();
+
+        UpsertCounts counts = upsertEngine.upsert(List.of(
+                new Employee("e0001", "john", "John Doe", new BigDecimal("1000.0")),
+                new Employee("e0002", "jane", "Jane \"JD\" Smith, Jr.", new BigDecimal("2500.50")),
+                new Employee("e0003", "zoë", "Zoë Ünal", new BigDecimal("3000"))));
+
+        assertEquals(new UpsertCounts(1, 1, 1), counts);
+        Employee updated = employeeRepository.findById("e0002").orElseThrow();
+        assertEquals("Jane \"JD\" Smith, Jr.", updated.getName());
+        assertEquals(new BigDecimal("2500.50"), updated.getSalary());
+        assertEquals(Employee.fingerprint("jane", "Jane \"JD\" Smith, Jr.", new BigDecimal("2500.50")), updated.getFingerprint());
+        assertEquals("Zoë Ünal", employeeRepository.findById("e0003").orElseThrow().getName());
+        entityManager.clear();
+
+        // Rows written by the engine carry fingerprints, so a second pass changes nothing
+        assertEquals(new UpsertCounts(0, 0, 2), upsertEngine.upsert(List.of(updated,
+                new Employee("e0003", "zoë", "Zoë Ünal", new BigDecimal("3000.00")))));
+    }
+
+    @Test
+    public void testUpsert_StagesBatchesLargerThanOneInsert() {
+        List<Employee> employees = new ArrayList<>();
+        for (int i = 0; i < NativeUpsertEngine.INSERT_ROWS * 2 + 7; i++) {
+            employees.add(new Employee(String.format("e%05d", i), "login" + i, "Name " + i, new BigDecimal(i)));
+        }
+
+        assertEquals(new UpsertCounts(employees.size(), 0, 0), upsertEngine.upsert(employees));
+        assertEquals(employees.size(), employeeRepository.count());
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void testUpsert_FailedUploadRollsBackEveryBatch() {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+
+        assertThrows(IllegalStateException.class, () -> transaction.executeWithoutResult(status -> {
+            upsertEngine.upsert(List.of(new Employee("e0001", "john", "John Doe", new BigDecimal("1000.00"))));
+            upsertEngine.upsert(List.of(new Employee("e0002", "jane", "Jane Doe", new BigDecimal("2000.00"))));
+            throw new IllegalStateException("Upload failed after two batches");
+        }));
+
+        assertEquals(0, employeeRepository.count());
+    }
+}
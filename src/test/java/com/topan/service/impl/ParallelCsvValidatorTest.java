@@ -0,0 +1,144 @@
+package com.topan.service.impl;
+
+import com.topan.service.UploadJob;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.FileSystemResource;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class ParallelCsvValidatorTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+    private final ParallelCsvValidator parallelValidator = new ParallelCsvValidator(pool);
+
+    @AfterEach
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    public void testValidate_ValidFileMatchesSequentialPass() throws Exception {
+        Path file = write(rows(5000, -1, -1, -1));
+
+        EmployeeValidator parallel = parallelValidator.validate(file, new UploadJob("f"), new IdRanges(64), null);
+
+        assertTrue(parallel.isValid());
+        assertEquals(5000, parallel.getRows());
+    }
+
+    @Test
+    public void testValidate_DigestsChunksInFileOrder() throws Exception {
+        Path file = write(rows(5000, -1, -1, -1));
+        ContentDigest first = new ContentDigest();
+        ContentDigest second = new ContentDigest();
+        ContentDigest other = new ContentDigest();
+
+        parallelValidator.validate(file, new UploadJob("f"), new IdRanges(64), first);
+        parallelValidator.validate(file, new UploadJob("f"), new IdRanges(64), second);
+        parallelValidator.validate(write(rows(5000, -1, -1, 100)), new UploadJob("f"), new IdRanges(64), other);
+
+        String digest = first.toHex();
+        assertEquals(digest, second.toHex());
+        assertNotEquals(digest, other.toHex());
+    }
+
+    @Test
+    public void testValidate_CrossChunkDuplicateReportsSameRowAsSequentialPass() throws Exception {
+        assertSameOutcome(write(rows(5000, 4200, -1, -1)));
+    }
+
+    @Test
+    public void testValidate_IncompleteRowBeforeDuplicateWins() throws Exception {
+        assertSameOutcome(write(rows(5000, 4200, 3000, -1)));
+        assertSameOutcome(write(rows(5000, 1200, 3000, -1)));
+    }
+
+    @Test
+    public void testValidate_CommentRowsAreSkipped() throws Exception {
+        assertSameOutcome(write(rows(5000, 4900, -1, 100)));
+    }
+
+    @Test
+    public void testValidate_StrayQuotesFallBackToSequentialPass() throws Exception {
+        // A quote inside an unquoted name throws off the quote parity of every later chunk boundary
+        String csv = rows(5000, 4200, -1, -1).replace(",Name 100,", ",O\"Name 100,");
+        assertSameOutcome(write(csv));
+        assertSameOutcome(write(csv.replace(",Name 4200,", ",Name \"4200,")));
+        assertSameOutcome(write(rows(5000, -1, -1, -1).replace("id,login", "id,lo\"gin")));
+
+        EmployeeValidator parallel = parallelValidator.validate(write(rows(5000, -1, -1, -1)
+                .replace(",Name 100,", ",O\"Name 100,")), new UploadJob("f"), new IdRanges(64), null);
+        assertTrue(parallel.isValid());
+        assertEquals(5000, parallel.getRows());
+    }
+
+    @Test
+    public void testValidateFiles_DuplicatesAcrossFilesAreFound() throws Exception {
+        Path first = write(rows(3000, -1, -1, -1));
+
+        EmployeeValidator valid = parallelValidator.validate(List.of(new FileSystemResource(first),
+                new FileSystemResource(write(continuation(3000, 2000, -1)))), new UploadJob("f"), new IdRanges(64), null);
+        assertTrue(valid.isValid());
+        assertEquals(5000, valid.getRows());
+
+        // Rows are numbered on across the files
+        EmployeeValidator duplicate = parallelValidator.validate(List.of(new FileSystemResource(first),
+                new FileSystemResource(write(continuation(3000, 2000, 200)))), new UploadJob("f"), new IdRanges(64), null);
+        assertEquals(3201, duplicate.getFirstInvalidRow());
+    }
+
+    private void assertSameOutcome(Path file) throws Exception {
+        UploadingServiceImpl uploadingService = new UploadingServiceImpl(null, null,
+                null, parallelValidator, null, null, null, null, null);
+        EmployeeValidator sequential = uploadingService.validate(new FileSystemResource(file), mock(UploadJob.class), new IdRanges(64), null);
+        EmployeeValidator parallel = parallelValidator.validate(file, new UploadJob("f"), new IdRanges(64), null);
+
+        assertEquals(sequential.isValid(), parallel.isValid());
+        assertEquals(sequential.getFirstInvalidRow(), parallel.getFirstInvalidRow());
+        assertEquals(sequential.getRows(), parallel.getRows());
+    }
+
+    /**
+     * @param duplicateRow  0-based row that repeats the id of row 10, or -1
+     * @param incompleteRow 0-based row with an empty login, or -1
+     * @param commentRow    0-based row that is a comment, or -1
+     */
+    private static String rows(int count, int duplicateRow, int incompleteRow, int commentRow) {
+        StringBuilder csv = new StringBuilder("id,login,name,salary\n");
+        for (int i = 0; i < count; i++) {
+            String id = i == duplicateRow ? "e10" : i == commentRow ? "#comment" + i : "e" + i;
+            String login = i == incompleteRow ? "" : "login" + i;
+            csv.append(id).append(',').append(login).append(",Name ").append(i).append(",100.00\n");
+        }
+        return csv.toString();
+    }
+
+    /**
+     * @param duplicateRow 0-based row of this file that repeats the id of row 10 of the first file, or -1
+     */
+    private static String continuation(int first, int count, int duplicateRow) {
+        StringBuilder csv = new StringBuilder("id,login,name,salary\n");
+        for (int i = 0; i < count; i++) {
+            String id = i == duplicateRow ? "e10" : "e" + (first + i);
+            csv.append(id).append(",login").append(first + i).append(",Name ").append(first + i).append(",100.00\n");
+        }
+        return csv.toString();
+    }
+
+    private Path write(String csv) throws Exception {
+        return Files.writeString(Files.createTempFile(tempDir, "employees", ".csv"), csv);
+    }
+}
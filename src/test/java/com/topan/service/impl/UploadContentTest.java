@@ -0,0 +1,137 @@
+package com.topan.service.impl;
+
+import com.topan.entity.Employee;
+import com.topan.util.CsvParser;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.InputStreamSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class UploadContentTest {
+
+    private static final String CSV = "id,login,name,salary\ne1,john,John Doe,1000.00\ne2,jane,Jane Doe,2000.00\n";
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testDetect_ByLeadingBytes() throws IOException {
+        assertEquals(UploadContent.Format.CSV, UploadContent.detect(bytes(CSV.getBytes(StandardCharsets.UTF_8))));
+        assertEquals(UploadContent.Format.GZIP, UploadContent.detect(bytes(gzip(CSV))));
+        assertEquals(UploadContent.Format.ZIP, UploadContent.detect(bytes(zip("a.csv", CSV))));
+        assertEquals(UploadContent.Format.ZIP, UploadContent.detect(bytes(zip())));
+        assertEquals(UploadContent.Format.CSV, UploadContent.detect(bytes(new byte[]{'P'})));
+    }
+
+    @Test
+    public void testGzip_InflatesOnEveryRead() throws IOException {
+        try (UploadContent content = UploadContent.gzip(bytes(gzip(CSV)), Long.MAX_VALUE)) {
+            assertEquals(1, content.getFiles().size());
+            assertEquals(2, parse(content.getFiles().get(0)).size());
+            assertEquals("jane", parse(content.getFiles().get(0)).get(1).getLogin());
+        }
+    }
+
+    @Test
+    public void testZip_CsvMembersInArchiveOrder() throws IOException {
+        Path archive = tempDir.resolve("upload.zip");
+        Files.write(archive, zip("sales/b.csv", CSV.replace("e1", "e3").replace("e2", "e4"),
+                "readme.txt", "not a csv",
+                "__MACOSX/sales/._b.csv", "metadata",
+                ".hidden.csv", "hidden",
+                "a.CSV", CSV));
+
+        try (UploadContent content = UploadContent.zip(archive, Long.MAX_VALUE)) {
+            List<InputStreamSource> files = content.getFiles();
+            assertEquals(2, files.size());
+            assertEquals("e3", parse(files.get(0)).get(0).getId());
+            assertEquals("e1", parse(files.get(1)).get(0).getId());
+        }
+    }
+
+    @Test
+    public void testZip_WithoutCsvMembers() throws IOException {
+        Path archive = tempDir.resolve("upload.zip");
+        Files.write(archive, zip("readme.txt", "not a csv"));
+
+        try (UploadContent content = UploadContent.zip(archive, Long.MAX_VALUE)) {
+            assertTrue(content.getFiles().isEmpty());
+        }
+    }
+
+    @Test
+    public void testGzip_InflatingBeyondMaxSizeFails() throws IOException {
+        String bomb = CSV + ",".repeat(1_000_000);
+        try (UploadContent content = UploadContent.gzip(bytes(gzip(bomb)), 100_000)) {
+            UploadContent.TooLargeException e = assertThrows(UploadContent.TooLargeException.class, () -> {
+                try (InputStream inputStream = content.getFiles().get(0).getInputStream()) {
+                    inputStream.transferTo(OutputStream.nullOutputStream());
+                }
+            });
+            assertEquals(100_000, e.getMaxSize());
+        }
+        try (UploadContent content = UploadContent.gzip(bytes(gzip(CSV)), CSV.length())) {
+            assertEquals(2, parse(content.getFiles().get(0)).size());
+        }
+    }
+
+    @Test
+    public void testZip_MembersDeclaringMoreThanMaxSizeAreRefused() throws IOException {
+        Path archive = tempDir.resolve("upload.zip");
+        Files.write(archive, zip("a.csv", CSV, "b.csv", CSV, "readme.txt", "not counted"));
+
+        assertThrows(UploadContent.TooLargeException.class, () -> UploadContent.zip(archive, 2L * CSV.length() - 1));
+        try (UploadContent content = UploadContent.zip(archive, 2L * CSV.length())) {
+            assertEquals(2, content.getFiles().size());
+        }
+    }
+
+    private static List<Employee> parse(InputStreamSource file) throws IOException {
+        try (InputStream inputStream = file.getInputStream()) {
+            return CsvParser.parse(inputStream);
+        }
+    }
+
+    private static InputStreamSource bytes(byte[] content) {
+        return new ByteArrayResource(content);
+    }
+
+    static byte[] gzip(String content) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream gzip = new GZIPOutputStream(bytes)) {
+            gzip.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @param entries alternating member names and contents
+     */
+    static byte[] zip(String... entries) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            for (int i = 0; i < entries.length; i += 2) {
+                zip.putNextEntry(new ZipEntry(entries[i]));
+                zip.write(entries[i + 1].getBytes(StandardCharsets.UTF_8));
+                zip.closeEntry();
+            }
+        }
+        return bytes.toByteArray();
+    }
+}
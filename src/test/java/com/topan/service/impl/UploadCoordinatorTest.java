@@ -0,0 +1,146 @@
+package com.topan.service.impl;
+
+import com.topan.service.IdRange;
+import com.topan.service.LeaseRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class UploadCoordinatorTest {
+
+    private final LocalLeaseRegistry registry = new LocalLeaseRegistry();
+    private final UploadCoordinator coordinator = new UploadCoordinator(List.of(registry), 4, Duration.ofMinutes(1));
+
+    @AfterEach
+    public void tearDown() {
+        coordinator.shutdown();
+    }
+
+    @Test
+    public void testTryAcquire_OverlappingRangesAreRejectedUntilReleased() {
+        IdRanges touched = coordinator.newRanges();
+        for (int i = 100; i < 200; i++) {
+            touched.add("e" + i);
+        }
+        Optional<UploadCoordinator.Permit> first = coordinator.tryAcquire(touched, "upload-1");
+        assertTrue(first.isPresent());
+
+        assertTrue(coordinator.tryAcquire(ids("e120"), "upload-2").isEmpty());
+        assertTrue(coordinator.tryAcquire(ids("e000", "e199"), "upload-2").isEmpty());
+        assertTrue(coordinator.tryAcquire(ids("e000", "e200"), "upload-3").isPresent());
+
+        coordinator.release(first.get());
+        assertTrue(coordinator.tryAcquire(ids("e120"), "upload-2").isPresent());
+    }
+
+    @Test
+    public void testTryAcquire_DisjointRangesProceedInParallel() {
+        // Consecutive files of a sorted export, and files of another id scheme
+        assertTrue(coordinator.tryAcquire(ids("e1000", "e1500", "e1999"), "upload-1").isPresent());
+        assertTrue(coordinator.tryAcquire(ids("e2000", "e2500", "e2999"), "upload-2").isPresent());
+        assertTrue(coordinator.tryAcquire(ids("x1", "x2"), "upload-3").isPresent());
+    }
+
+    @Test
+    public void testTryAcquire_LargeUploadHoldsFewLeases() {
+        IdRanges touched = coordinator.newRanges();
+        for (int i = 0; i < 100_000; i++) {
+            touched.add(String.format("a%06d", i));
+            touched.add(String.format("b%06d", i));
+        }
+
+        UploadCoordinator.Permit permit = coordinator.tryAcquire(touched, "upload-1").orElseThrow();
+
+        assertTrue(permit.getLeases().size() <= 4);
+        assertTrue(coordinator.tryAcquire(ids("a100000", "c"), "upload-2").isPresent());
+    }
+
+    @Test
+    public void testTryAcquire_FailureReleasesRangesTakenSoFar() {
+        LeaseRegistry cluster = mock(LeaseRegistry.class);
+        when(cluster.tryAcquire(anyMap(), any(), any())).thenReturn(false);
+        UploadCoordinator clustered = new UploadCoordinator(List.of(registry, cluster), 4, Duration.ofMinutes(1));
+        try {
+            assertTrue(clustered.tryAcquire(ids("e1"), "upload-1").isEmpty());
+        } finally {
+            clustered.shutdown();
+        }
+
+        // The local lease must not stay held by the rejected upload
+        assertTrue(coordinator.tryAcquire(ids("e1"), "upload-2").isPresent());
+    }
+
+    @Test
+    public void testTryExtend_WidensThePermitAndReleasesItWithThePermit() {
+        UploadCoordinator.Permit permit = coordinator.tryAcquire(coordinator.newRanges(), "upload-1").orElseThrow();
+        assertTrue(coordinator.tryExtend(permit, ids("e100", "e199")));
+        assertTrue(coordinator.tryExtend(permit, ids("e150")));
+        assertTrue(coordinator.tryAcquire(ids("e500"), "upload-2").isPresent());
+
+        assertFalse(coordinator.tryExtend(permit, ids("e300", "e500")));
+        // e300 was given back, the ids held before are still held
+        assertTrue(coordinator.tryAcquire(ids("e300"), "upload-3").isPresent());
+        assertTrue(coordinator.tryAcquire(ids("e150"), "upload-4").isEmpty());
+
+        coordinator.release(permit);
+        assertTrue(coordinator.tryAcquire(ids("e100", "e199"), "upload-4").isPresent());
+    }
+
+    @Test
+    public void testTryExtend_KeepsAtMostMaxRangesLeases() {
+        UploadCoordinator.Permit permit = coordinator.tryAcquire(coordinator.newRanges(), "upload-1").orElseThrow();
+        for (int batch = 0; batch < 100; batch++) {
+            assertTrue(coordinator.tryExtend(permit, ids(String.format("e%04d", batch * 10),
+                    String.format("e%04d", batch * 10 + 9))));
+        }
+
+        assertTrue(permit.getLeases().size() <= 4);
+        assertTrue(coordinator.tryAcquire(ids("e0500"), "upload-2").isEmpty());
+        assertTrue(coordinator.tryAcquire(ids("e1000"), "upload-2").isPresent());
+    }
+
+    @Test
+    public void testRenewal_LeasesOfRunningUploadsAreRenewedInTheBackground() {
+        LeaseRegistry cluster = mock(LeaseRegistry.class);
+        when(cluster.tryAcquire(anyMap(), any(), any())).thenReturn(true);
+        UploadCoordinator renewing = new UploadCoordinator(List.of(cluster), 4, Duration.ofMillis(30));
+        try {
+            UploadCoordinator.Permit permit = renewing.tryAcquire(ids("e1"), "upload-1").orElseThrow();
+
+            verify(cluster, timeout(1000).atLeast(2)).renew(eq(permit.getOwner()), eq(Duration.ofMillis(30)));
+            renewing.release(permit);
+            verify(cluster).release(anyCollection(), eq(permit.getOwner()));
+        } finally {
+            renewing.shutdown();
+        }
+    }
+
+    @Test
+    public void testLocalLease_ExpiredLeaseNoLongerCounts() {
+        assertTrue(registry.tryAcquire(Map.of("a1", new IdRange("e1", "e9")), "a", Duration.ZERO.minusMillis(1)));
+        assertTrue(registry.tryAcquire(Map.of("b1", new IdRange("e5", "e5")), "b", Duration.ofMinutes(1)));
+        assertFalse(registry.tryAcquire(Map.of("a2", new IdRange("e1", "e9")), "a", Duration.ofMinutes(1)));
+    }
+
+    private IdRanges ids(String... ids) {
+        IdRanges ranges = coordinator.newRanges();
+        for (String id : ids) {
+            ranges.add(id);
+        }
+        return ranges;
+    }
+}
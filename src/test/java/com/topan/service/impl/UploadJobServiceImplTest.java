@@ -0,0 +1,143 @@
+package com.topan.service.impl;
+
+import com.topan.service.UploadJob;
+import com.topan.service.UploadingService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class UploadJobServiceImplTest {
+
+    @Mock
+    private UploadingService uploadingService;
+
+    private ThreadPoolTaskExecutor executor;
+    private UploadJobServiceImpl uploadJobService;
+
+    private final MockMultipartFile file = new MockMultipartFile("file", "employees.csv", "text/csv",
+            "id,login,name,salary\n1,johndoe,John Doe,5000.0".getBytes());
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(1);
+        executor.initialize();
+        uploadJobService = new UploadJobServiceImpl(uploadingService, executor, new UploadMetrics(new SimpleMeterRegistry()));
+        when(uploadingService.reject(any())).thenReturn(Optional.empty());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    public void testSubmit_RunsJobInBackgroundAndReportsResult() throws InterruptedException {
+        when(uploadingService.process(any(InputStreamSource.class), any(UploadJob.class), any())).thenAnswer(invocation -> {
+            UploadJob job = invocation.getArgument(1);
+            job.finish(UploadJob.Phase.COMPLETED, 200, "File uploaded successfully.");
+            return ResponseEntity.ok("File uploaded successfully.");
+        });
+
+        ResponseEntity<?> response = uploadJobService.submit(file);
+        assertEquals(HttpStatus.ACCEPTED, response.getStatusCode());
+
+        String jobId = ((UploadJob) response.getBody()).getId();
+        executor.getThreadPoolExecutor().shutdown();
+        executor.getThreadPoolExecutor().awaitTermination(5, TimeUnit.SECONDS);
+
+        UploadJob job = uploadJobService.getJob(jobId).getBody();
+        assertEquals(UploadJob.Phase.COMPLETED, job.getPhase());
+        assertEquals(200, job.getStatus());
+    }
+
+    @Test
+    public void testSubmit_RejectedFileIsNotQueued() {
+        when(uploadingService.reject(any())).thenReturn(Optional.of(ResponseEntity.badRequest().body("File empty")));
+
+        ResponseEntity<?> response = uploadJobService.submit(file);
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        // Same message as the synchronous endpoint
+        assertEquals("File empty", response.getBody());
+        verify(uploadingService, never()).process(any(), any(), any());
+    }
+
+    @Test
+    public void testCancelJob_QueuedJobIsNeverProcessed() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        when(uploadingService.process(any(InputStreamSource.class), any(UploadJob.class), any())).thenAnswer(invocation -> {
+            release.await();
+            return ResponseEntity.ok("File uploaded successfully.");
+        });
+
+        uploadJobService.submit(file); // occupies the only worker
+        String queuedId = ((UploadJob) uploadJobService.submit(file).getBody()).getId();
+
+        assertEquals(HttpStatus.ACCEPTED, uploadJobService.cancelJob(queuedId).getStatusCode());
+        assertEquals(UploadJob.Phase.CANCELLED, uploadJobService.getJob(queuedId).getBody().getPhase());
+
+        release.countDown();
+        executor.getThreadPoolExecutor().shutdown();
+        executor.getThreadPoolExecutor().awaitTermination(5, TimeUnit.SECONDS);
+        verify(uploadingService, times(1)).process(any(), any(), any());
+    }
+
+    @Test
+    public void testCancelJob_RefusedOnceRowsAreCommitting() throws InterruptedException {
+        CountDownLatch committing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(uploadingService.process(any(InputStreamSource.class), any(UploadJob.class), any())).thenAnswer(invocation -> {
+            UploadJob job = invocation.getArgument(1);
+            job.startPhase(UploadJob.Phase.PERSISTING);
+            job.beginCommit();
+            committing.countDown();
+            release.await();
+            job.finish(UploadJob.Phase.COMPLETED, 200, "File uploaded successfully.");
+            return ResponseEntity.ok("File uploaded successfully.");
+        });
+
+        String jobId = ((UploadJob) uploadJobService.submit(file).getBody()).getId();
+        assertTrue(committing.await(5, TimeUnit.SECONDS));
+        assertEquals(HttpStatus.CONFLICT, uploadJobService.cancelJob(jobId).getStatusCode());
+
+        release.countDown();
+        executor.getThreadPoolExecutor().shutdown();
+        executor.getThreadPoolExecutor().awaitTermination(5, TimeUnit.SECONDS);
+        assertEquals(UploadJob.Phase.COMPLETED, uploadJobService.getJob(jobId).getBody().getPhase());
+    }
+
+    @Test
+    public void testCancel_AcceptedCancelStopsTheCommit() {
+        UploadJob job = new UploadJob("employees.csv");
+        job.startPhase(UploadJob.Phase.PERSISTING);
+
+        assertTrue(job.cancel());
+        assertThrows(CancellationException.class, job::beginCommit);
+    }
+
+    @Test
+    public void testGetJob_UnknownIdReturnsNotFound() {
+        assertEquals(HttpStatus.NOT_FOUND, uploadJobService.getJob("missing").getStatusCode());
+    }
+}
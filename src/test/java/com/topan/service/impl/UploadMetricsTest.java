@@ -0,0 +1,33 @@
+package com.topan.service.impl;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class UploadMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final UploadMetrics metrics = new UploadMetrics(registry);
+
+    @Test
+    public void testUpload_RecordsPhasesCountersAndInFlight() {
+        Timer.Sample upload = metrics.started();
+        assertEquals(1.0, registry.get("topan.upload.in.flight").gauge().value());
+
+        metrics.record(UploadMetrics.Phase.VALIDATE, metrics.start());
+        metrics.record(UploadMetrics.Phase.PERSIST, metrics.start());
+        metrics.accepted(1000, 64_000);
+        metrics.finished(upload, "completed");
+        metrics.rejected("validation");
+
+        assertEquals(0.0, registry.get("topan.upload.in.flight").gauge().value());
+        assertEquals(1, registry.get("topan.upload.phase").tag("phase", "validate").timer().count());
+        assertEquals(0, registry.get("topan.upload.phase").tag("phase", "upsert").timer().count());
+        assertEquals(1, registry.get("topan.upload").tag("outcome", "completed").timer().count());
+        assertEquals(1000.0, registry.get("topan.upload.rows").counter().count());
+        assertEquals(64_000.0, registry.get("topan.upload.bytes").counter().count());
+        assertEquals(1.0, registry.get("topan.upload.rejected").tag("reason", "validation").counter().count());
+    }
+}
@@ -0,0 +1,136 @@
+package com.topan.service.impl;
+
+import com.topan.entity.Employee;
+import com.topan.service.UploadJob;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class UploadPipelineTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final UploadPipeline pipeline = new UploadPipeline(executor, 2);
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testRun_WritesEveryValidRowInOrderWithoutComments() throws IOException {
+        List<String> written = new ArrayList<>();
+        List<String> admitted = new ArrayList<>();
+
+        EmployeeValidator validator = pipeline.run(csv(rows(5000, -1, 100)), new UploadJob("f"), 100,
+                batch -> {
+                    batch.forEach(employee -> admitted.add(employee.getId()));
+                    return true;
+                },
+                batch -> {
+                    batch.forEach(employee -> written.add(employee.getId()));
+                    return true;
+                });
+
+        assertTrue(validator.isValid());
+        assertEquals(5000, validator.getRows());
+        assertEquals(4999, written.size());
+        assertEquals("e0", written.get(0));
+        assertEquals("e4999", written.get(written.size() - 1));
+        assertEquals(written, admitted);
+    }
+
+    @Test
+    public void testRun_InvalidRowStopsBeforeItsBatchIsWritten() throws IOException {
+        List<Employee> written = new ArrayList<>();
+
+        EmployeeValidator validator = pipeline.run(csv(rows(50_000, 4250, -1)), new UploadJob("f"), 100,
+                batch -> true, written::addAll);
+
+        assertFalse(validator.isValid());
+        assertEquals(4251, validator.getFirstInvalidRow());
+        assertTrue(written.size() <= 4200, "rows of the failing batch must not be written");
+    }
+
+    @Test
+    public void testRun_WriterCanStopThePipeline() throws IOException {
+        int[] batches = {0};
+
+        EmployeeValidator validator = pipeline.run(csv(rows(50_000, -1, -1)), new UploadJob("f"), 100,
+                batch -> true, batch -> ++batches[0] < 3);
+
+        assertEquals(3, batches[0]);
+        assertTrue(validator.isValid());
+    }
+
+    @Test
+    public void testRun_RefusedBatchStopsThePipelineBeforeItIsWritten() throws IOException {
+        int[] admitted = {0};
+        List<Employee> written = new ArrayList<>();
+
+        EmployeeValidator validator = pipeline.run(csv(rows(50_000, -1, -1)), new UploadJob("f"), 100,
+                batch -> ++admitted[0] < 3, written::addAll);
+
+        assertEquals(3, admitted[0]);
+        // Admitted batches still queued when the pipeline stops are dropped as well
+        assertTrue(written.size() <= 200, "rows of the refused batch must not be written");
+        assertTrue(validator.isValid());
+    }
+
+    @Test
+    public void testRun_ParseErrorIsRethrown() {
+        String csv = rows(500, -1, -1) + "e9999,login,name,not-a-salary\n";
+
+        assertThrows(IOException.class, () -> pipeline.run(csv(csv), new UploadJob("f"), 100,
+                batch -> true, batch -> true));
+    }
+
+    @Test
+    public void testRun_CancelledJob() {
+        UploadJob job = new UploadJob("f");
+        job.startPhase(UploadJob.Phase.PERSISTING);
+
+        assertThrows(CancellationException.class, () -> pipeline.run(csv(rows(50_000, -1, -1)), job, 100,
+                batch -> true, batch -> job.cancel() || true));
+    }
+
+    @Test
+    public void testRun_WriterFailureWins() {
+        assertThrows(IllegalStateException.class, () -> pipeline.run(csv(rows(50_000, -1, -1)), new UploadJob("f"),
+                100, batch -> true, batch -> {
+                    throw new IllegalStateException("write failed");
+                }));
+    }
+
+    /**
+     * @param duplicateRow 0-based row that repeats the id of row 10, or -1
+     * @param commentRow   0-based row that is a comment, or -1
+     */
+    private static String rows(int count, int duplicateRow, int commentRow) {
+        StringBuilder csv = new StringBuilder("id,login,name,salary\n");
+        for (int i = 0; i < count; i++) {
+            String id = i == duplicateRow ? "e10" : i == commentRow ? "#comment" + i : "e" + i;
+            csv.append(id).append(",login").append(i).append(",Name ").append(i).append(',').append(1000 + i).append('\n');
+        }
+        return csv.toString();
+    }
+
+    private static InputStream csv(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
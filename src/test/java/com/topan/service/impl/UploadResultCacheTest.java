@@ -0,0 +1,78 @@
+package com.topan.service.impl;
+
+import com.topan.service.UpsertCounts;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ByteArrayResource;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class UploadResultCacheTest {
+
+    private static UploadResultCache.Applied applied(long generation) {
+        return new UploadResultCache.Applied(generation, new UpsertCounts(1, 0, 0), "done", "abc");
+    }
+
+    @Test
+    public void testFindByDigest_OnlyUntilNextWrite() {
+        UploadResultCache cache = new UploadResultCache(16, false);
+        long generation = cache.recordWrite();
+        cache.store("abc", "key-1", applied(generation));
+
+        assertEquals("done", cache.findByDigest("abc").orElseThrow().body());
+        assertTrue(cache.findByDigest("abd").isEmpty());
+
+        cache.recordWrite();
+
+        assertTrue(cache.findByDigest("abc").isEmpty());
+        assertTrue(cache.findByKey("key-1").isPresent());
+    }
+
+    @Test
+    public void testStore_EvictsLeastRecentlyUsed() {
+        UploadResultCache cache = new UploadResultCache(2, false);
+        cache.store("a", null, applied(0));
+        cache.store("b", null, applied(0));
+        cache.findByDigest("a");
+        cache.store("c", null, applied(0));
+
+        assertTrue(cache.findByDigest("a").isPresent());
+        assertTrue(cache.findByDigest("b").isEmpty());
+        assertTrue(cache.findByDigest("c").isPresent());
+    }
+
+    @Test
+    public void testStore_DisabledWithZeroCapacity() {
+        UploadResultCache cache = new UploadResultCache(0, false);
+        cache.store("a", "key-1", applied(0));
+
+        assertFalse(cache.isEnabled());
+        assertTrue(cache.findByDigest("a").isEmpty());
+        assertTrue(cache.findByKey("key-1").isEmpty());
+    }
+
+    @Test
+    public void testFindByDigest_OffInClusterMode() {
+        UploadResultCache cache = new UploadResultCache(16, true);
+        cache.store("abc", "key-1", applied(cache.generation()));
+
+        assertFalse(cache.isDigestReplayEnabled());
+        assertTrue(cache.findByDigest("abc").isEmpty());
+        assertEquals("abc", cache.findByKey("key-1").orElseThrow().digest());
+    }
+
+    @Test
+    public void testDigestOf_DependsOnContentOnly() throws Exception {
+        String first = ContentDigest.of(new ByteArrayResource("id,login,name,salary\n".getBytes(StandardCharsets.UTF_8)));
+        String same = ContentDigest.of(new ByteArrayResource("id,login,name,salary\n".getBytes(StandardCharsets.UTF_8)));
+        String other = ContentDigest.of(new ByteArrayResource("id,login,name,salary\r\n".getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(first, same);
+        assertNotEquals(first, other);
+        assertEquals(64, first.length());
+    }
+}
@@ -0,0 +1,201 @@
+package com.topan.service.impl;
+
+import com.topan.service.UploadJob;
+import com.topan.service.UploadSession;
+import com.topan.service.UploadingService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class UploadSessionServiceImplTest {
+
+    private static final byte[] CONTENT = ("id,login,name,salary\n"
+            + "e0001,hpotter,Harry Potter,1234.00\n"
+            + "e0002,rwesley,Ron Weasley,19234.50\n"
+            + "e0003,ssnape,Severus Snape,4000.0\n").getBytes(StandardCharsets.UTF_8);
+
+    @Mock
+    private UploadingService uploadingService;
+
+    private UploadSessionServiceImpl uploadSessionService;
+    private byte[] processed;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        UploadMetrics metrics = new UploadMetrics(new SimpleMeterRegistry());
+        // Jobs run on the calling thread, so that completion has finished once complete returns
+        uploadSessionService = new UploadSessionServiceImpl(new UploadJobServiceImpl(uploadingService, Runnable::run, metrics), metrics);
+        when(uploadingService.process(any(InputStreamSource.class), any(UploadJob.class), any())).thenAnswer(invocation -> {
+            try (InputStream in = invocation.<InputStreamSource>getArgument(0).getInputStream()) {
+                processed = in.readAllBytes();
+            }
+            return ResponseEntity.ok("File uploaded successfully.");
+        });
+    }
+
+    @AfterEach
+    public void tearDown() {
+        uploadSessionService.discardAll();
+    }
+
+    private String start() {
+        ResponseEntity<UploadSession> response = uploadSessionService.initiate("employees.csv", CONTENT.length);
+        assertEquals(HttpStatus.CREATED, response.getStatusCode());
+        return response.getBody().getId();
+    }
+
+    private ResponseEntity<UploadSession> put(String id, int start, int end) {
+        return put(id, start, end, new ByteArrayInputStream(CONTENT, start, end - start + 1));
+    }
+
+    private ResponseEntity<UploadSession> put(String id, int start, int end, InputStream body) {
+        return uploadSessionService.writeChunk(id, "bytes " + start + "-" + end + "/" + CONTENT.length, end - start + 1, body);
+    }
+
+    @Test
+    public void testComplete_ChunksInParallelAndOutOfOrder() throws Exception {
+        String id = start();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<ResponseEntity<UploadSession>>> chunks = new ArrayList<>();
+            for (int start = CONTENT.length - 1 - (CONTENT.length - 1) % 16; start >= 0; start -= 16) {
+                int first = start;
+                chunks.add(executor.submit(() -> put(id, first, Math.min(first + 15, CONTENT.length - 1))));
+            }
+            for (Future<ResponseEntity<UploadSession>> chunk : chunks) {
+                assertEquals(HttpStatus.OK, chunk.get().getStatusCode());
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        UploadSession session = uploadSessionService.getSession(id).getBody();
+        assertEquals(List.of(new UploadSession.Range(0, CONTENT.length - 1)), session.getReceived());
+        assertTrue(session.getMissing().isEmpty());
+
+        ResponseEntity<UploadJob> completed = uploadSessionService.complete(id, "key-1");
+        assertEquals(HttpStatus.ACCEPTED, completed.getStatusCode());
+        assertEquals("/users/upload/" + completed.getBody().getId(), completed.getHeaders().getLocation().toString());
+        assertArrayEquals(CONTENT, processed);
+        verify(uploadingService).process(any(InputStreamSource.class), any(UploadJob.class), eq("key-1"));
+        assertEquals(HttpStatus.NOT_FOUND, uploadSessionService.getSession(id).getStatusCode());
+    }
+
+    @Test
+    public void testWriteChunk_ResumesAfterDroppedConnection() {
+        String id = start();
+        InputStream failing = new InputStream() {
+            private int position;
+
+            @Override
+            public int read() throws IOException {
+                if (position == 30) {
+                    throw new IOException("Connection reset");
+                }
+                return CONTENT[position++];
+            }
+        };
+
+        assertEquals(HttpStatus.BAD_REQUEST, put(id, 0, CONTENT.length - 1, failing).getStatusCode());
+        UploadSession session = uploadSessionService.getSession(id).getBody();
+        assertEquals(30, session.getReceivedBytes());
+        assertEquals(List.of(new UploadSession.Range(30, CONTENT.length - 1)), session.getMissing());
+        assertEquals(HttpStatus.CONFLICT, uploadSessionService.complete(id, null).getStatusCode());
+        verifyNoInteractions(uploadingService);
+
+        assertEquals(HttpStatus.OK, put(id, 30, CONTENT.length - 1).getStatusCode());
+        assertEquals(HttpStatus.ACCEPTED, uploadSessionService.complete(id, null).getStatusCode());
+        assertArrayEquals(CONTENT, processed);
+    }
+
+    @Test
+    public void testWriteChunk_RejectsBadRanges() {
+        String id = start();
+
+        assertEquals(HttpStatus.BAD_REQUEST, uploadSessionService.writeChunk(id, null, CONTENT.length, new ByteArrayInputStream(CONTENT)).getStatusCode());
+        assertEquals(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE, put(id, 0, CONTENT.length).getStatusCode());
+        assertEquals(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE,
+                uploadSessionService.writeChunk(id, "bytes 0-9/5", 10, new ByteArrayInputStream(CONTENT)).getStatusCode());
+        assertEquals(HttpStatus.LENGTH_REQUIRED,
+                uploadSessionService.writeChunk(id, "bytes 0-9/*", -1, new ByteArrayInputStream(CONTENT)).getStatusCode());
+        assertEquals(HttpStatus.NOT_FOUND, uploadSessionService.writeChunk("missing", "bytes 0-9/*", 10, new ByteArrayInputStream(CONTENT)).getStatusCode());
+    }
+
+    @Test
+    public void testWriteChunk_LengthNotMatchingRangeIsNotWritten() {
+        String id = start();
+        assertEquals(HttpStatus.OK, put(id, 0, 9).getStatusCode());
+
+        byte[] other = new byte[CONTENT.length];
+        assertEquals(HttpStatus.BAD_REQUEST, uploadSessionService.writeChunk(id, "bytes 0-9/" + CONTENT.length,
+                CONTENT.length, new ByteArrayInputStream(other)).getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, uploadSessionService.writeChunk(id, "bytes 0-9/" + CONTENT.length,
+                5, new ByteArrayInputStream(other, 0, 5)).getStatusCode());
+
+        // The range received before is left as it was
+        assertEquals(10, uploadSessionService.getSession(id).getBody().getReceivedBytes());
+        assertEquals(HttpStatus.OK, put(id, 10, CONTENT.length - 1).getStatusCode());
+        uploadSessionService.complete(id, null);
+        assertArrayEquals(CONTENT, processed);
+    }
+
+    @Test
+    public void testInitiate_SizeAboveMaxSizeIsRefused() {
+        assertEquals(HttpStatus.PAYLOAD_TOO_LARGE,
+                uploadSessionService.initiate("employees.csv", DataSize.ofGigabytes(4).toBytes() + 1).getStatusCode());
+    }
+
+    @Test
+    public void testAbort_RefusedWhileChunkIsBeingWritten() {
+        String id = start();
+        UploadSession session = uploadSessionService.getSession(id).getBody();
+
+        session.beginWrite();
+        assertEquals(HttpStatus.CONFLICT, uploadSessionService.abort(id).getStatusCode());
+        assertEquals(UploadSession.State.OPEN, uploadSessionService.getSession(id).getBody().getState());
+
+        session.endWrite(0, 0);
+        ResponseEntity<UploadSession> aborted = uploadSessionService.abort(id);
+        assertEquals(HttpStatus.OK, aborted.getStatusCode());
+        assertEquals(UploadSession.State.ABORTED, aborted.getBody().getState());
+        assertEquals(HttpStatus.NOT_FOUND, uploadSessionService.getSession(id).getStatusCode());
+    }
+
+    @Test
+    public void testComplete_FailedUploadKeepsSession() {
+        when(uploadingService.process(any(InputStreamSource.class), any(UploadJob.class), any()))
+                .thenReturn(ResponseEntity.badRequest().body("Another upload is already in progress. Please try again later."));
+        String id = start();
+        put(id, 0, CONTENT.length - 1);
+
+        ResponseEntity<UploadJob> completed = uploadSessionService.complete(id, null);
+        assertEquals(HttpStatus.ACCEPTED, completed.getStatusCode());
+        assertEquals(UploadSession.State.OPEN, uploadSessionService.getSession(id).getBody().getState());
+
+        assertEquals(HttpStatus.OK, uploadSessionService.abort(id).getStatusCode());
+        assertEquals(HttpStatus.NOT_FOUND, uploadSessionService.complete(id, null).getStatusCode());
+    }
+}
@@ -0,0 +1,62 @@
+package com.topan.service.impl;
+
+import com.topan.repository.EmployeeRepository;
+import com.topan.service.EmployeeUpsertEngine;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.http.ResponseEntity;
+
+import static com.topan.service.impl.UploadingServiceReplayTest.APPLIED;
+import static com.topan.service.impl.UploadingServiceReplayTest.CSV;
+import static com.topan.service.impl.UploadingServiceReplayTest.csv;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * With {@code topan.upload.coordination.cluster=true} another node may have written since, which this node cannot
+ * see, so resent content is applied again; a resent Idempotency-Key is still replayed.
+ */
+@SpringBootTest(properties = {"spring.datasource.url=jdbc:h2:mem:cluster-replay", "spring.datasource.username=sa",
+        "spring.datasource.password=", "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect", "topan.upload.coordination.cluster=true"})
+public class UploadingServiceClusterReplayTest {
+
+    @Autowired
+    private UploadingServiceImpl uploadingService;
+    @Autowired
+    private EmployeeRepository employeeRepository;
+    @SpyBean
+    private EmployeeUpsertEngine upsertEngine;
+
+    @BeforeEach
+    public void setUp() {
+        employeeRepository.deleteAll();
+    }
+
+    @Test
+    public void testResentContent_IsAppliedAgain() {
+        uploadingService.upload(csv(CSV), null);
+        ResponseEntity<String> resent = uploadingService.upload(csv(CSV), null);
+
+        assertNull(resent.getHeaders().getFirst(UploadingServiceImpl.REPLAYED_HEADER));
+        assertEquals("File uploaded successfully. 0 inserted, 0 updated, 2 unchanged.", resent.getBody());
+        assertEquals(2, employeeRepository.count());
+        verify(upsertEngine, times(2)).upsert(anyList());
+    }
+
+    @Test
+    public void testResentKey_IsStillReplayed() {
+        uploadingService.upload(csv(CSV), "key-1");
+        ResponseEntity<String> resent = uploadingService.upload(csv(CSV), "key-1");
+
+        assertEquals("true", resent.getHeaders().getFirst(UploadingServiceImpl.REPLAYED_HEADER));
+        assertEquals(APPLIED, resent.getBody());
+        verify(upsertEngine, times(1)).upsert(anyList());
+    }
+}
@@ -0,0 +1,196 @@
+package com.topan.service.impl;
+
+import com.topan.entity.Employee;
+import com.topan.repository.EmployeeRepository;
+import com.topan.service.EmployeeUpsertEngine;
+import com.topan.service.UploadJob;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Pipelined uploads end to end on H2. With one batch per queue, the validator stage can only be three batches
+ * ahead of the writer, so a failure in the sixth batch always comes after rows were written in the transaction.
+ */
+@SpringBootTest(properties = {"spring.datasource.url=jdbc:h2:mem:pipeline", "spring.datasource.username=sa",
+        "spring.datasource.password=", "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "topan.upload.pipeline.enabled=true", "topan.upload.pipeline.queue-capacity=1",
+        "topan.query.serving-index.enabled=true"})
+public class UploadingServicePipelineTest {
+
+    private static final Employee EXISTING = new Employee("a0000", "login-old", "Old Name", new BigDecimal("500.00"));
+
+    @Autowired
+    private UploadingServiceImpl uploadingService;
+    @Autowired
+    private EmployeeRepository employeeRepository;
+    @Autowired
+    private UploadCoordinator uploadCoordinator;
+    @Autowired
+    private DataSource dataSource;
+    @SpyBean
+    private EmployeeUpsertEngine upsertEngine;
+    @SpyBean
+    private EmployeeServingIndex servingIndex;
+    @SpyBean
+    private EmployeeCache employeeCache;
+
+    private final AtomicInteger upserts = new AtomicInteger();
+
+    @BeforeEach
+    public void setUp() {
+        employeeRepository.deleteAll();
+        employeeRepository.save(new Employee(EXISTING.getId(), EXISTING.getLogin(), EXISTING.getName(), EXISTING.getSalary()));
+        doAnswer(invocation -> {
+            upserts.incrementAndGet();
+            return invocation.callRealMethod();
+        }).when(upsertEngine).upsert(anyList());
+    }
+
+    @Test
+    public void testInvalidRow_RollsBackWrittenBatches() {
+        UploadJob job = spy(new UploadJob("f.csv"));
+
+        ResponseEntity<String> response = uploadingService.process(csv(rows("a", 7000, 5500)), job, null);
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        assertTrue(upserts.get() >= 3, "batches before the invalid row were written");
+        assertTableUntouched();
+        verify(job, never()).beginCommit();
+        verify(servingIndex, never()).applyAfterCommit(any(EmployeeServingIndex.Changes.class));
+        verify(employeeCache, never()).invalidateAll();
+    }
+
+    @Test
+    public void testBusyLease_RollsBackWrittenBatches() {
+        IdRanges held = uploadCoordinator.newRanges();
+        held.add("a5500");
+        held.add("a5600");
+        UploadCoordinator.Permit other = uploadCoordinator.tryAcquire(held, "other").orElseThrow();
+        UploadJob job = spy(new UploadJob("f.csv"));
+        try {
+            ResponseEntity<String> response = uploadingService.process(csv(rows("a", 7000, -1)), job, null);
+
+            assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+            assertEquals("Another upload is already in progress. Please try again later.", response.getBody());
+        } finally {
+            uploadCoordinator.release(other);
+        }
+        assertTrue(upserts.get() >= 3, "batches before the busy range were written");
+        assertTableUntouched();
+        verify(job, never()).beginCommit();
+        verify(servingIndex, never()).applyAfterCommit(any(EmployeeServingIndex.Changes.class));
+        verify(employeeCache, never()).invalidateAll();
+    }
+
+    @Test
+    public void testCancel_RollsBackWrittenBatches() {
+        UploadJob job = spy(new UploadJob("f.csv"));
+        doAnswer(invocation -> {
+            if (upserts.incrementAndGet() == 2) {
+                assertTrue(job.cancel());
+            }
+            return invocation.callRealMethod();
+        }).when(upsertEngine).upsert(anyList());
+
+        ResponseEntity<String> response = uploadingService.process(csv(rows("a", 7000, -1)), job, null);
+
+        assertEquals(HttpStatus.CONFLICT, response.getStatusCode());
+        assertEquals(UploadJob.Phase.CANCELLED, job.getPhase());
+        assertTableUntouched();
+        assertFalse(job.isCommitting());
+        verify(servingIndex, never()).applyAfterCommit(any(EmployeeServingIndex.Changes.class));
+        verify(employeeCache, never()).invalidateAll();
+    }
+
+    @Test
+    public void testCommit_IndexAndCacheOnlySeeCommittedRows() {
+        UploadJob job = spy(new UploadJob("f.csv"));
+        List<Long> rowsSeenByOthers = new ArrayList<>();
+        doAnswer(invocation -> {
+            // Every batch is written, and still invisible outside of the transaction
+            assertEquals(6, upserts.get());
+            rowsSeenByOthers.add(committedRows());
+            return invocation.callRealMethod();
+        }).when(job).beginCommit();
+        doAnswer(invocation -> {
+            rowsSeenByOthers.add(committedRows());
+            return invocation.callRealMethod();
+        }).when(servingIndex).apply(any(EmployeeServingIndex.Changes.class));
+        doAnswer(invocation -> {
+            rowsSeenByOthers.add(committedRows());
+            return invocation.callRealMethod();
+        }).when(employeeCache).invalidateAll();
+
+        ResponseEntity<String> response = uploadingService.process(csv(rows("a", 5500, -1)), job, null);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("File uploaded successfully. 5499 inserted, 1 updated, 0 unchanged.", response.getBody());
+        assertEquals(List.of(1L, 5500L, 5500L), rowsSeenByOthers);
+        assertEquals(5500, employeeRepository.count());
+        assertEquals("Name 0", employeeRepository.findById(EXISTING.getId()).orElseThrow().getName());
+        assertEquals("Name 5499", employeeRepository.findById("a5499").orElseThrow().getName());
+    }
+
+    private void assertTableUntouched() {
+        assertEquals(1, employeeRepository.count());
+        Employee stored = employeeRepository.findById(EXISTING.getId()).orElseThrow();
+        assertEquals(EXISTING.getName(), stored.getName());
+        assertEquals(EXISTING.getLogin(), stored.getLogin());
+    }
+
+    /**
+     * @return rows visible to a connection outside of the upload's transaction
+     */
+    private long committedRows() throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM employee")) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+
+    /**
+     * @param duplicateRow 0-based row that repeats the id of row 10, or -1
+     */
+    private static String rows(String prefix, int count, int duplicateRow) {
+        StringBuilder csv = new StringBuilder("id,login,name,salary\n");
+        for (int i = 0; i < count; i++) {
+            String id = prefix + String.format("%04d", i == duplicateRow ? 10 : i);
+            csv.append(id).append(",login").append(i).append(",Name ").append(i).append(',').append(1000 + i).append('\n');
+        }
+        return csv.toString();
+    }
+
+    private static ByteArrayResource csv(String content) {
+        return new ByteArrayResource(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
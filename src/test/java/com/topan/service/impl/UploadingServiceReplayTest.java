@@ -0,0 +1,129 @@
+package com.topan.service.impl;
+
+import com.topan.entity.Employee;
+import com.topan.repository.EmployeeRepository;
+import com.topan.service.EmployeeUpsertEngine;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Replay of applied uploads on a single node ({@code topan.upload.coordination.cluster=false}), where both the
+ * Idempotency-Key and the digest of the content find a stored result.
+ */
+@SpringBootTest(properties = {"spring.datasource.url=jdbc:h2:mem:replay", "spring.datasource.username=sa",
+        "spring.datasource.password=", "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect", "topan.upload.coordination.cluster=false"})
+public class UploadingServiceReplayTest {
+
+    static final String CSV = "id,login,name,salary\ne1,john,John Doe,1000.00\ne2,jane,Jane Doe,2000.00\n";
+    static final String OTHER_CSV = "id,login,name,salary\ne1,john,John Smith,1500.00\n";
+    static final String APPLIED = "File uploaded successfully. 2 inserted, 0 updated, 0 unchanged.";
+
+    @Autowired
+    private UploadingServiceImpl uploadingService;
+    @Autowired
+    private EmployeeRepository employeeRepository;
+    @Autowired
+    private UploadResultCache uploadResultCache;
+    @SpyBean
+    private EmployeeUpsertEngine upsertEngine;
+
+    @BeforeEach
+    public void setUp() {
+        employeeRepository.deleteAll();
+        // Entries of earlier tests are stale once the generation moved
+        uploadResultCache.recordWrite();
+    }
+
+    @Test
+    public void testResentKey_ReplaysStoredResult() {
+        ResponseEntity<String> first = uploadingService.upload(csv(CSV), "key-1");
+        // Written after the first upload: a replay must not put the uploaded rows back
+        rename("e1", "Changed");
+        ResponseEntity<String> second = uploadingService.upload(csv(CSV), "key-1");
+
+        assertEquals(HttpStatus.OK, first.getStatusCode());
+        assertNull(first.getHeaders().getFirst(UploadingServiceImpl.REPLAYED_HEADER));
+        assertEquals(HttpStatus.OK, second.getStatusCode());
+        assertEquals("true", second.getHeaders().getFirst(UploadingServiceImpl.REPLAYED_HEADER));
+        assertEquals(APPLIED, second.getBody());
+        assertEquals("Changed", employeeRepository.findById("e1").orElseThrow().getName());
+        verify(upsertEngine, times(1)).upsert(anyList());
+    }
+
+    @Test
+    public void testReusedKeyWithOtherContent_IsRejected() {
+        uploadingService.upload(csv(CSV), "key-2");
+        ResponseEntity<String> reused = uploadingService.upload(csv(OTHER_CSV), "key-2");
+
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, reused.getStatusCode());
+        assertEquals("The Idempotency-Key was already used for a different upload.", reused.getBody());
+        assertEquals("John Doe", employeeRepository.findById("e1").orElseThrow().getName());
+        assertEquals(2, employeeRepository.count());
+    }
+
+    @Test
+    public void testResentContent_ReplayedByDigestUntilNextWrite() {
+        uploadingService.upload(csv(CSV), null);
+        ResponseEntity<String> resent = uploadingService.upload(csv(CSV), null);
+
+        assertEquals("true", resent.getHeaders().getFirst(UploadingServiceImpl.REPLAYED_HEADER));
+        assertEquals(APPLIED, resent.getBody());
+        verify(upsertEngine, times(1)).upsert(anyList());
+
+        // Another write changed the table, so the same content has to be applied again
+        uploadingService.upload(csv(OTHER_CSV), null);
+        ResponseEntity<String> afterWrite = uploadingService.upload(csv(CSV), null);
+
+        assertNull(afterWrite.getHeaders().getFirst(UploadingServiceImpl.REPLAYED_HEADER));
+        assertEquals("File uploaded successfully. 0 inserted, 1 updated, 1 unchanged.", afterWrite.getBody());
+        assertEquals("John Doe", employeeRepository.findById("e1").orElseThrow().getName());
+    }
+
+    @Test
+    public void testWriteDuringPersist_DropsDigestEntryButKeepsKey() {
+        doAnswer(invocation -> {
+            // Another writer commits while this upload is persisting
+            uploadResultCache.recordWrite();
+            return invocation.callRealMethod();
+        }).when(upsertEngine).upsert(anyList());
+        ResponseEntity<String> first = uploadingService.upload(csv(CSV), "key-3");
+
+        ResponseEntity<String> byDigest = uploadingService.upload(csv(CSV), null);
+        assertEquals(HttpStatus.OK, first.getStatusCode());
+        assertNull(byDigest.getHeaders().getFirst(UploadingServiceImpl.REPLAYED_HEADER));
+        assertEquals("File uploaded successfully. 0 inserted, 0 updated, 2 unchanged.", byDigest.getBody());
+
+        ResponseEntity<String> byKey = uploadingService.upload(csv(CSV), "key-3");
+        assertEquals("true", byKey.getHeaders().getFirst(UploadingServiceImpl.REPLAYED_HEADER));
+        assertEquals(APPLIED, byKey.getBody());
+        verify(upsertEngine, times(2)).upsert(anyList());
+    }
+
+    private void rename(String id, String name) {
+        Employee employee = employeeRepository.findById(id).orElseThrow();
+        employee.setName(name);
+        employeeRepository.save(employee);
+        uploadResultCache.recordWrite();
+    }
+
+    static MockMultipartFile csv(String content) {
+        return new MockMultipartFile("file", "employees.csv", "text/csv", content.getBytes(StandardCharsets.UTF_8));
+    }
+}
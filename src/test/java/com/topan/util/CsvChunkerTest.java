@@ -0,0 +1,71 @@
+package com.topan.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CsvChunkerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final ExecutorService pool = Executors.newFixedThreadPool(4);
+
+    @AfterEach
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    public void testSplit_ChunksCoverAllRowsAndNeverCutQuotedNewlines() throws Exception {
+        StringBuilder csv = new StringBuilder("id,login,name,salary\n");
+        for (int i = 0; i < 500; i++) {
+            // Every third name spans two lines and contains escaped quotes
+            String name = i % 3 == 0 ? "\"Line one\nline \"\"two\"\" " + i + "\"" : "Name " + i;
+            csv.append(i).append(",login").append(i).append(',').append(name).append(",100.00\n");
+        }
+        Path file = tempDir.resolve("employees.csv");
+        Files.writeString(file, csv, StandardCharsets.UTF_8);
+
+        List<String> ids = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            List<CsvChunker.Chunk> chunks = CsvChunker.split(channel, 16, pool);
+            assertTrue(chunks.size() > 1);
+            for (CsvChunker.Chunk chunk : chunks) {
+                try (InputStream inputStream = CsvChunker.open(channel, chunk)) {
+                    CsvParser.parseRows(inputStream, employee -> ids.add(employee.getId()));
+                }
+            }
+        }
+
+        assertEquals(500, ids.size());
+        for (int i = 0; i < 500; i++) {
+            assertEquals(String.valueOf(i), ids.get(i));
+        }
+    }
+
+    @Test
+    public void testSplit_HeaderOnlyFileHasNoChunks() throws IOException {
+        Path file = tempDir.resolve("empty.csv");
+        Files.writeString(file, "id,login,name,salary\n");
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            assertTrue(CsvChunker.split(channel, 4, pool).isEmpty());
+        }
+    }
+}
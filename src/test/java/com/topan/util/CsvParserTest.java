@@ -9,6 +9,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.math.BigDecimal;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -43,6 +44,20 @@ public class CsvParserTest {
     }
 
 
+    @Test
+    public void testParse_WithHandler_StreamsRowsInFileOrder() throws CsvValidationException, IOException {
+        String csvData = """
+                id,login,name,salary
+                1,nileshm,Nilesh M,5000.00
+                2,chrisbrown,Chris Brown,6000.50
+                """;
+
+        List<String> ids = new ArrayList<>();
+        CsvParser.parse(new ByteArrayInputStream(csvData.getBytes(StandardCharsets.UTF_8)), employee -> ids.add(employee.getId()));
+
+        assertEquals(List.of("1", "2"), ids);
+    }
+
     @Test
     public void testParse_InvalidCsvFormat_ThrowsIOException() {
         // Arrange
@@ -62,4 +77,53 @@ public class CsvParserTest {
         ByteArrayInputStream inputStream = new ByteArrayInputStream(csvData.getBytes());
         assertThrows(IOException.class, () -> CsvParser.parse(inputStream));
     }
+
+    @Test
+    public void testParse_QuotedFieldsCrLfAndUtf8() throws IOException {
+        String csvData = "id,login,name,salary\r\n"
+                + "1,zoe,\"Zoë, \"\"Z\"\"\",100\r\n"
+                + "2,wei,\"张伟\nline two\",\"200.5\"\r\n";
+
+        List<Employee> employees = CsvParser.parse(new ByteArrayInputStream(csvData.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(List.of(
+                new Employee("1", "zoe", "Zoë, \"Z\"", new BigDecimal("100")),
+                new Employee("2", "wei", "张伟\nline two", new BigDecimal("200.5"))), employees);
+    }
+
+    @Test
+    public void testParse_SalaryFormsMatchBigDecimal() throws IOException {
+        for (String salary : List.of("0", "5000.00", "+12.5", "007.50", "5.", ".25", "1E+3", "-0", "123456789012345678901.123")) {
+            String csvData = "id,login,name,salary\n1,a,b," + salary;
+            Employee employee = CsvParser.parse(new ByteArrayInputStream(csvData.getBytes(StandardCharsets.UTF_8))).get(0);
+            assertEquals(new BigDecimal(salary), employee.getSalary(), salary);
+        }
+        for (String salary : List.of("-1", ".", "", "1.2.3", " 5", "1,5")) {
+            String csvData = "id,login,name,salary\n1,a,b,\"" + salary + "\"";
+            assertThrows(IOException.class, () -> CsvParser.parse(new ByteArrayInputStream(csvData.getBytes(StandardCharsets.UTF_8))), salary);
+        }
+    }
+
+    @Test
+    public void testParse_RowShapes() throws IOException {
+        // A line break at the end of the file is not a row, a blank line in the middle is
+        assertEquals(1, CsvParser.parse(new ByteArrayInputStream("h\n1,a,b,1\n".getBytes())).size());
+        assertThrows(IOException.class, () -> CsvParser.parse(new ByteArrayInputStream("h\n1,a,b,1\n\n2,c,d,2\n".getBytes())));
+        assertThrows(IOException.class, () -> CsvParser.parse(new ByteArrayInputStream("h\n1,a,b,1,extra\n".getBytes())));
+        assertThrows(IOException.class, () -> CsvParser.parse(new ByteArrayInputStream("h\n1,a,\"b,1\n".getBytes())));
+    }
+
+    @Test
+    public void testParseChunk_StrayQuoteIsRejected() throws IOException {
+        // Kept as data when parsing a whole file
+        assertEquals("O\"Brien", CsvParser.parse(new ByteArrayInputStream("h\n1,a,O\"Brien,1\n".getBytes())).get(0).getName());
+
+        List<Employee> employees = new ArrayList<>();
+        CsvParser.parseChunk(new ByteArrayInputStream("1,a,\"O\"\"Brien\",1\n".getBytes()), false, employees::add);
+        assertEquals("O\"Brien", employees.get(0).getName());
+        assertThrows(CsvParser.StrayQuoteException.class, () -> CsvParser.parseChunk(
+                new ByteArrayInputStream("1,a,O\"Brien,1\n".getBytes()), false, employees::add));
+        assertThrows(CsvParser.StrayQuoteException.class, () -> CsvParser.parseChunk(
+                new ByteArrayInputStream("id,lo\"gin\n1,a,b,1\n".getBytes()), true, employees::add));
+    }
 }
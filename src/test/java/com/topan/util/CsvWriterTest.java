@@ -0,0 +1,69 @@
+package com.topan.util;
+
+import com.opencsv.exceptions.CsvValidationException;
+import com.topan.entity.Employee;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class CsvWriterTest {
+
+    @Test
+    public void testWrite_QuotesOnlyWhereNeededAndParsesBack() throws IOException, CsvValidationException {
+        List<Employee> employees = List.of(
+                new Employee("1", "nileshm", "Nilesh M", new BigDecimal("5000.00")),
+                new Employee("2", "chris", "Brown, \"Chris\"", new BigDecimal("6000.5")),
+                new Employee("3", "multi", "Line\nBreak", new BigDecimal("1E+3")));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CsvWriter writer = new CsvWriter(out);
+        writer.writeHeader();
+        for (Employee employee : employees) {
+            writer.write(employee);
+        }
+        writer.flush();
+
+        assertEquals("""
+                id,login,name,salary
+                1,nileshm,Nilesh M,5000.00
+                2,chris,"Brown, ""Chris\"\"\",6000.5
+                3,multi,"Line
+                Break",1000
+                """, out.toString(StandardCharsets.UTF_8));
+        assertEquals(employees.subList(0, 2), CsvParser.parse(new ByteArrayInputStream(out.toByteArray())).subList(0, 2));
+    }
+
+    @Test
+    public void testWrite_EncodesUtf8AcrossBufferBoundaries() throws IOException {
+        // Two-, three- and four-byte characters, repeated until rows straddle the 64 KB buffer
+        String name = "Zoë 张伟 😀";
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        StringBuilder expected = new StringBuilder();
+        CsvWriter writer = new CsvWriter(out);
+        for (int i = 0; i < 10_000; i++) {
+            writer.write(new Employee("id" + i, "login" + i, name, BigDecimal.ONE));
+            expected.append("id").append(i).append(",login").append(i).append(',').append(name).append(",1\n");
+        }
+        writer.flush();
+
+        assertEquals(expected.toString(), out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testWrite_NullFieldsAreEmpty() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CsvWriter writer = new CsvWriter(out);
+        writer.write(new Employee("1", "login", null, null));
+        writer.flush();
+
+        assertEquals("1,login,,\n", out.toString(StandardCharsets.UTF_8));
+    }
+}
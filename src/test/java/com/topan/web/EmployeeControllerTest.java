@@ -1,7 +1,12 @@
 package com.topan.web;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.topan.entity.Employee;
+import com.topan.service.EmployeePage;
 import com.topan.service.EmployeeService;
+import com.topan.service.UploadJob;
+import com.topan.service.UploadJobService;
+import com.topan.service.UploadSessionService;
 import com.topan.service.impl.UploadingServiceImpl;
 import com.topan.util.CustomMultipartFile;
 import org.junit.jupiter.api.BeforeEach;
@@ -10,22 +15,30 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.*;
 
 public class EmployeeControllerTest {
@@ -34,6 +47,12 @@ public class EmployeeControllerTest {
     private UploadingServiceImpl uploadingService;
     @Mock
     private EmployeeService employeeService;
+    @Mock
+    private UploadJobService uploadJobService;
+    @Mock
+    private UploadSessionService uploadSessionService;
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
 
     @InjectMocks
     private EmployeeController employeeController;
@@ -55,13 +74,13 @@ public class EmployeeControllerTest {
 
         // Mock the response from the uploading service
         ResponseEntity<String> expectedResponse = ResponseEntity.ok("File uploaded successfully");
-        when(uploadingService.upload(file)).thenReturn(expectedResponse);
+        when(uploadingService.upload(file, null)).thenReturn(expectedResponse);
 
         // Make the request to the controller
-        ResponseEntity<String> response = employeeController.uploadEmployees(file);
+        ResponseEntity<String> response = employeeController.uploadEmployees(file, null);
 
         // Verify the uploading service was called
-        verify(uploadingService, times(1)).upload(file);
+        verify(uploadingService, times(1)).upload(file, null);
 
         // Verify the response
         assertEquals(HttpStatus.OK, response.getStatusCode());
@@ -80,19 +99,33 @@ public class EmployeeControllerTest {
 
         // Mock the response from the uploading service
         ResponseEntity<String> expectedResponse = ResponseEntity.badRequest().body("Invalid file format. Please upload a CSV file.");
-        when(uploadingService.upload(file)).thenReturn(expectedResponse);
+        when(uploadingService.upload(file, null)).thenReturn(expectedResponse);
 
         // Make the request to the controller
-        ResponseEntity<String> response = employeeController.uploadEmployees(file);
+        ResponseEntity<String> response = employeeController.uploadEmployees(file, null);
 
         // Verify the uploading service was called
-        verify(uploadingService, times(1)).upload(file);
+        verify(uploadingService, times(1)).upload(file, null);
 
         // Verify the response
         assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
         assertEquals("Invalid file format. Please upload a CSV file.", response.getBody());
     }
 
+    @Test
+    public void testUploadEmployeesAsync_ReturnsAcceptedJob() {
+        MockMultipartFile file = new MockMultipartFile("file", "employees.csv", "text/csv",
+                "id,login,name,salary\n1,johndoe,John Doe,5000.0".getBytes());
+        UploadJob job = new UploadJob("employees.csv");
+        doReturn(ResponseEntity.accepted().body(job)).when(uploadJobService).submit(file);
+
+        ResponseEntity<?> response = employeeController.uploadEmployeesAsync(file);
+
+        verify(uploadingService, never()).upload(any());
+        assertEquals(HttpStatus.ACCEPTED, response.getStatusCode());
+        assertEquals(UploadJob.Phase.QUEUED, ((UploadJob) response.getBody()).getPhase());
+    }
+
     @Test
     public void testGetUsers_ReturnsListOfEmployees() {
         // Mock employee data
@@ -105,7 +138,7 @@ public class EmployeeControllerTest {
                 .thenReturn(employees);
 
         // Call the controller method
-        ResponseEntity<List<Employee>> response = employeeController.getEmployees(new BigDecimal("0"), new BigDecimal("4000"), 0, 30, "+name");
+        ResponseEntity<List<Employee>> response = employeeController.getEmployees(new BigDecimal("0"), new BigDecimal("4000"), 0, 30, "+name", null);
 
         // Verify the response
         assertEquals(HttpStatus.OK, response.getStatusCode());
@@ -119,12 +152,51 @@ public class EmployeeControllerTest {
                 .thenReturn(null);
 
         // Call the controller method
-        ResponseEntity<List<Employee>> response = employeeController.getEmployees(new BigDecimal("0"), new BigDecimal("4000"), 0, 30, "+name");
+        ResponseEntity<List<Employee>> response = employeeController.getEmployees(new BigDecimal("0"), new BigDecimal("4000"), 0, 30, "+name", null);
 
         // Verify the response
         assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
     }
 
+    @Test
+    public void testGetUsers_WithCursorReturnsNextCursorHeader() {
+        List<Employee> employees = List.of(new Employee("e0001", "John", "john", new BigDecimal("1000.00")));
+        when(employeeService.getEmployeesAfter(any(BigDecimal.class), any(BigDecimal.class), anyInt(), anyString(), eq("")))
+                .thenReturn(new EmployeePage(employees, "next-token"));
+
+        ResponseEntity<List<Employee>> response = employeeController.getEmployees(new BigDecimal("0"), new BigDecimal("4000"), 0, 1, "+salary", "");
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(employees, response.getBody());
+        assertEquals("next-token", response.getHeaders().getFirst("Next-Cursor"));
+        verify(employeeService, never()).getEmployees(any(), any(), anyInt(), anyInt(), anyString());
+    }
+
+    @Test
+    public void testGetUsers_WithInvalidCursorReturnsBadRequest() {
+        when(employeeService.getEmployeesAfter(any(BigDecimal.class), any(BigDecimal.class), anyInt(), anyString(), anyString()))
+                .thenThrow(new IllegalArgumentException("Invalid cursor"));
+
+        ResponseEntity<List<Employee>> response = employeeController.getEmployees(new BigDecimal("0"), new BigDecimal("4000"), 0, 1, "+salary", "garbage");
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+    }
+
+    @Test
+    public void testGetUsers_LimitBelowOneOrNegativeOffsetIsRejected() {
+        BigDecimal min = BigDecimal.ZERO;
+        BigDecimal max = new BigDecimal("4000");
+
+        assertEquals(HttpStatus.BAD_REQUEST, employeeController.getEmployees(min, max, 0, 0, "+id", null).getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, employeeController.getEmployees(min, max, -1, 30, "+id", null).getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, employeeController.getEmployees(min, max, 0, 0, "+id", "").getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST,
+                employeeController.getEmployeeFields(min, max, 0, 0, "+id", "", List.of("id")).getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST,
+                employeeController.getEmployeeFields(min, max, -1, 30, "+id", null, List.of("id")).getStatusCode());
+        verifyNoInteractions(employeeService);
+    }
+
     @Test
     public void testUploadGoodFileWith5000Entries() throws IOException {
         // Prepare a mock MultipartFile object with a good file containing 5000 entries
@@ -132,10 +204,10 @@ public class EmployeeControllerTest {
         };
 
         // Mock the uploadingService to return a success response
-        Mockito.when(uploadingService.upload(file)).thenReturn(ResponseEntity.ok("File uploaded successfully."));
+        Mockito.when(uploadingService.upload(file, null)).thenReturn(ResponseEntity.ok("File uploaded successfully."));
 
         // Invoke the uploadEmployees method
-        ResponseEntity<String> response = employeeController.uploadEmployees(file);
+        ResponseEntity<String> response = employeeController.uploadEmployees(file, null);
 
         // Assert the response
         assertEquals(HttpStatus.OK, response.getStatusCode());
@@ -157,21 +229,21 @@ public class EmployeeControllerTest {
         MultipartFile file1 = new MockMultipartFile("file", "file1.csv", "text/csv", "CSV content 1".getBytes());
         MultipartFile file2 = new MockMultipartFile("file", "file2.csv", "text/csv", "CSV content 2".getBytes());
 
-        Mockito.when(uploadingService.upload(Mockito.any(MultipartFile.class))).thenReturn(ResponseEntity.ok("File uploaded successfully."));
+        Mockito.when(uploadingService.upload(Mockito.any(MultipartFile.class), Mockito.isNull())).thenReturn(ResponseEntity.ok("File uploaded successfully."));
 
         // Create an ExecutorService with two threads
         ExecutorService executorService = Executors.newFixedThreadPool(2);
 
         // Submit two tasks to upload the files concurrently
-        executorService.submit(() -> employeeController.uploadEmployees(file1));
-        executorService.submit(() -> employeeController.uploadEmployees(file2));
+        executorService.submit(() -> employeeController.uploadEmployees(file1, null));
+        executorService.submit(() -> employeeController.uploadEmployees(file2, null));
 
         // Shutdown the ExecutorService and wait for the tasks to complete
         executorService.shutdown();
         executorService.awaitTermination(5, TimeUnit.SECONDS);
 
         // Verify that both uploads completed successfully
-        Mockito.verify(uploadingService, Mockito.times(2)).upload(Mockito.any(MultipartFile.class));
+        Mockito.verify(uploadingService, Mockito.times(2)).upload(Mockito.any(MultipartFile.class), Mockito.isNull());
     }
 
     @Test
@@ -179,25 +251,92 @@ public class EmployeeControllerTest {
         CustomMultipartFile file1 = createCustomMultipartFile("file1.csv", "CSV content 1");
         CustomMultipartFile file2 = createCustomMultipartFile("file2.csv", "CSV content 2");
 
-        Mockito.when(uploadingService.upload(Mockito.any(MultipartFile.class))).thenReturn(ResponseEntity.ok("File uploaded successfully."));
+        Mockito.when(uploadingService.upload(Mockito.any(MultipartFile.class), Mockito.isNull())).thenReturn(ResponseEntity.ok("File uploaded successfully."));
 
         // Create an ExecutorService with two threads
         ExecutorService executorService = Executors.newFixedThreadPool(2);
 
         // Submit two tasks to upload the files concurrently
-        executorService.submit(() -> employeeController.uploadEmployees(file1));
-        executorService.submit(() -> employeeController.uploadEmployees(file2));
+        executorService.submit(() -> employeeController.uploadEmployees(file1, null));
+        executorService.submit(() -> employeeController.uploadEmployees(file2, null));
 
         // Shutdown the ExecutorService and wait for the tasks to complete
         executorService.shutdown();
         executorService.awaitTermination(5, TimeUnit.SECONDS);
 
         // Verify that both uploads completed successfully
-        Mockito.verify(uploadingService, Mockito.times(2)).upload(Mockito.any(MultipartFile.class));
+        Mockito.verify(uploadingService, Mockito.times(2)).upload(Mockito.any(MultipartFile.class), Mockito.isNull());
     }
 
     private CustomMultipartFile createCustomMultipartFile(String filename, String content) {
         return new CustomMultipartFile(filename, filename,"text/csv",content.getBytes());
     }
 
+
+    @Test
+    public void testStreamEmployees_WritesJsonArrayAndNdjson() throws IOException {
+        doAnswer(invocation -> {
+            Consumer<Employee> action = invocation.getArgument(5);
+            action.accept(new Employee("1", "john", "John Doe", new BigDecimal("5000.00")));
+            action.accept(new Employee("2", "jane", "Jane Doe", new BigDecimal("6000.00")));
+            return null;
+        }).when(employeeService).streamEmployees(any(), any(), anyInt(), anyInt(), anyString(), any());
+
+        String json = write(employeeController.streamEmployees(BigDecimal.ZERO, BigDecimal.TEN, 0, 100000, "-salary"));
+        String ndjson = write(employeeController.streamEmployeesNdjson(BigDecimal.ZERO, BigDecimal.TEN, 0, 100000, "-salary"));
+
+        assertEquals("[{\"id\":\"1\",\"login\":\"john\",\"name\":\"John Doe\",\"salary\":5000.00},"
+                + "{\"id\":\"2\",\"login\":\"jane\",\"name\":\"Jane Doe\",\"salary\":6000.00}]", json);
+        assertEquals("{\"id\":\"1\",\"login\":\"john\",\"name\":\"John Doe\",\"salary\":5000.00}\n"
+                + "{\"id\":\"2\",\"login\":\"jane\",\"name\":\"Jane Doe\",\"salary\":6000.00}\n", ndjson);
+    }
+
+    @Test
+    public void testStreamEmployees_UnknownSortIsRejectedBeforeStreaming() {
+        ResponseEntity<StreamingResponseBody> response = employeeController.streamEmployees(BigDecimal.ZERO, BigDecimal.TEN, 0, 30, "+password");
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        verifyNoInteractions(employeeService);
+    }
+
+    @Test
+    public void testExportEmployees_GzipWhenAccepted() throws IOException {
+        doAnswer(invocation -> {
+            Consumer<Employee> action = invocation.getArgument(2);
+            action.accept(new Employee("1", "john", "John Doe", new BigDecimal("5000.00")));
+            return null;
+        }).when(employeeService).exportEmployees(any(), any(), any());
+
+        ResponseEntity<StreamingResponseBody> plain = employeeController.exportEmployees(null, null, null);
+        ResponseEntity<StreamingResponseBody> gzip = employeeController.exportEmployees(null, null, "gzip, deflate");
+
+        String expected = "id,login,name,salary\n1,john,John Doe,5000.00\n";
+        assertEquals(expected, write(plain));
+        assertEquals("gzip", gzip.getHeaders().getFirst("Content-Encoding"));
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        gzip.getBody().writeTo(compressed);
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed.toByteArray()))) {
+            assertEquals(expected, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void testAcceptsGzip_HonoursQualityValues() {
+        assertTrue(EmployeeController.acceptsGzip("gzip, deflate"));
+        assertTrue(EmployeeController.acceptsGzip("deflate, GZIP;q=0.5"));
+        assertTrue(EmployeeController.acceptsGzip("*"));
+        assertFalse(EmployeeController.acceptsGzip(null));
+        assertFalse(EmployeeController.acceptsGzip("gzip;q=0"));
+        assertFalse(EmployeeController.acceptsGzip("gzip; q=0.000, *"));
+        assertFalse(EmployeeController.acceptsGzip("x-gzip"));
+        assertFalse(EmployeeController.acceptsGzip("identity"));
+        assertFalse(EmployeeController.acceptsGzip("*;q=0"));
+    }
+
+    private static String write(ResponseEntity<StreamingResponseBody> response) throws IOException {
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        response.getBody().writeTo(out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
 }
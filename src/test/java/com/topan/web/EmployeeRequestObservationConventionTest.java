@@ -0,0 +1,55 @@
+package com.topan.web;
+
+import io.micrometer.common.KeyValue;
+import io.micrometer.common.KeyValues;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.server.observation.ServerRequestObservationContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class EmployeeRequestObservationConventionTest {
+
+    private final EmployeeRequestObservationConvention convention = new EmployeeRequestObservationConvention();
+
+    @Test
+    public void testGetLowCardinalityKeyValues_TagsSortFieldAndPageSizeBucket() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/users");
+        request.setParameter("sort", "-salary");
+        request.setParameter("limit", "50");
+
+        KeyValues keyValues = convention.getLowCardinalityKeyValues(
+                new ServerRequestObservationContext(request, new MockHttpServletResponse()));
+
+        assertEquals(KeyValue.of("sort", "salary"), keyValues.stream().filter(k -> k.getKey().equals("sort")).findFirst().orElseThrow());
+        assertEquals(KeyValue.of("page.size", "100"), keyValues.stream().filter(k -> k.getKey().equals("page.size")).findFirst().orElseThrow());
+    }
+
+    @Test
+    public void testGetLowCardinalityKeyValues_ListingWithoutParametersIsTaggedWithDefaults() {
+        KeyValues listing = convention.getLowCardinalityKeyValues(new ServerRequestObservationContext(
+                new MockHttpServletRequest("GET", "/users"), new MockHttpServletResponse()));
+        KeyValues upload = convention.getLowCardinalityKeyValues(new ServerRequestObservationContext(
+                new MockHttpServletRequest("POST", "/users/upload"), new MockHttpServletResponse()));
+
+        assertEquals(KeyValue.of("sort", "id"), listing.stream().filter(k -> k.getKey().equals("sort")).findFirst().orElseThrow());
+        assertEquals(KeyValue.of("page.size", "30"), listing.stream().filter(k -> k.getKey().equals("page.size")).findFirst().orElseThrow());
+        assertEquals(KeyValue.of("sort", "none"), upload.stream().filter(k -> k.getKey().equals("sort")).findFirst().orElseThrow());
+        assertEquals(KeyValue.of("page.size", "none"), upload.stream().filter(k -> k.getKey().equals("page.size")).findFirst().orElseThrow());
+    }
+
+    @Test
+    public void testTagValues_StayWithinAFixedSet() {
+        assertEquals("none", EmployeeRequestObservationConvention.sortField(null));
+        assertEquals("id", EmployeeRequestObservationConvention.sortField("+id"));
+        assertEquals("other", EmployeeRequestObservationConvention.sortField("password"));
+
+        assertEquals("none", EmployeeRequestObservationConvention.pageSize(null));
+        assertEquals("30", EmployeeRequestObservationConvention.pageSize("1"));
+        assertEquals("10000", EmployeeRequestObservationConvention.pageSize("10000"));
+        assertEquals("more", EmployeeRequestObservationConvention.pageSize("100000"));
+        assertEquals("other", EmployeeRequestObservationConvention.pageSize("0"));
+        assertEquals("other", EmployeeRequestObservationConvention.pageSize("lots"));
+    }
+}
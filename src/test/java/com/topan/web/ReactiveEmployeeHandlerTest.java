@@ -0,0 +1,85 @@
+package com.topan.web;
+
+import com.topan.entity.Employee;
+import com.topan.service.ReactiveEmployeeService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ReactiveEmployeeHandlerTest {
+
+    @Mock
+    private ReactiveEmployeeService reactiveEmployeeService;
+
+    private WebTestClient client;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        client = WebTestClient.bindToRouterFunction(new ReactiveEmployeeHandler(reactiveEmployeeService).routes()).build();
+    }
+
+    @Test
+    public void testGetEmployees_StreamsJsonArray() {
+        when(reactiveEmployeeService.getEmployees(new BigDecimal("1000"), new BigDecimal("5000"), 2, 10, "-salary"))
+                .thenReturn(Flux.just(new Employee("e0001", "john", "John Doe", new BigDecimal("4000.00")),
+                        new Employee("e0002", "jane", "Jane Doe", new BigDecimal("3000.00"))));
+
+        client.get().uri("/users?minSalary=1000&maxSalary=5000&offset=2&limit=10&sort=-salary")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_JSON)
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(2)
+                .jsonPath("$[1].login").isEqualTo("jane");
+    }
+
+    @Test
+    public void testGetEmployees_NdjsonWhenAccepted() {
+        when(reactiveEmployeeService.getEmployees(any(), any(), anyInt(), anyInt(), anyString()))
+                .thenReturn(Flux.just(new Employee("e0001", "john", "John Doe", new BigDecimal("4000.00")),
+                        new Employee("e0002", "jane", "Jane Doe", new BigDecimal("3000.00"))));
+
+        client.get().uri("/users?minSalary=1000&maxSalary=5000")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_NDJSON)
+                .expectBodyList(Employee.class).hasSize(2);
+    }
+
+    @Test
+    public void testGetEmployees_BadRequests() {
+        client.get().uri("/users?maxSalary=5000").exchange().expectStatus().isBadRequest();
+        client.get().uri("/users?minSalary=x&maxSalary=5000").exchange().expectStatus().isBadRequest();
+        client.get().uri("/users?minSalary=0&maxSalary=5000&limit=0").exchange().expectStatus().isBadRequest();
+        client.get().uri("/users?minSalary=0&maxSalary=5000&sort=fingerprint").exchange().expectStatus().isBadRequest();
+        verify(reactiveEmployeeService, never()).getEmployees(any(), any(), anyInt(), anyInt(), anyString());
+    }
+
+    @Test
+    public void testGetEmployeeById() {
+        when(reactiveEmployeeService.getEmployeeById("e0001"))
+                .thenReturn(Mono.just(new Employee("e0001", "john", "John Doe", new BigDecimal("4000.00"))));
+        when(reactiveEmployeeService.getEmployeeById("missing")).thenReturn(Mono.empty());
+
+        client.get().uri("/users/e0001").exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.name").isEqualTo("John Doe");
+        client.get().uri("/users/missing").exchange().expectStatus().isNotFound();
+    }
+}
@@ -0,0 +1,14 @@
+package com.topan.web;
+
+import org.springframework.boot.test.context.SpringBootTest;
+
+/**
+ * With {@code topan.upload.pipeline.enabled}: single files go through {@code UploadPipeline}, archives of several
+ * members still take the two passes.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:formats-pipelined", "spring.datasource.username=sa", "spring.datasource.password=",
+        "spring.datasource.driver-class-name=org.h2.Driver", "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "topan.upload.pipeline.enabled=true", UploadFormatsTest.LIMITS, UploadFormatsTest.BODY_LIMIT})
+public class UploadFormatsPipelinedTest extends UploadFormatsTest {
+}
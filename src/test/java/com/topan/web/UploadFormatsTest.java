@@ -0,0 +1,188 @@
+package com.topan.web;
+
+import com.topan.entity.Employee;
+import com.topan.repository.EmployeeRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Compressed and archived uploads through {@code POST /users/upload} on H2, run once per upload mode by the
+ * subclasses. Inflated content is limited to 64KB and request bodies to 32KB.
+ */
+@AutoConfigureMockMvc
+abstract class UploadFormatsTest {
+
+    static final String LIMITS = "topan.upload.max-decompressed-size=64KB";
+    static final String BODY_LIMIT = "topan.upload.max-size=32KB";
+
+    private static final Employee EXISTING = new Employee("e0", "login-old", "Old Name", new BigDecimal("500.00"));
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private TestRestTemplate restTemplate;
+    @Autowired
+    private EmployeeRepository employeeRepository;
+
+    @BeforeEach
+    public void setUp() {
+        employeeRepository.deleteAll();
+        employeeRepository.save(new Employee(EXISTING.getId(), EXISTING.getLogin(), EXISTING.getName(), EXISTING.getSalary()));
+    }
+
+    @Test
+    public void testGzip_IsInflatedAndApplied() throws Exception {
+        upload("employees.csv.gz", "application/gzip", gzip(csv(0, 3)))
+                .andExpect(status().isOk())
+                .andExpect(content().string("File uploaded successfully. 2 inserted, 1 updated, 0 unchanged."));
+
+        assertIds("e0", "e1", "e2");
+        assertEquals("Name 0", employeeRepository.findById("e0").orElseThrow().getName());
+    }
+
+    @Test
+    public void testZip_EveryCsvMemberIsApplied() throws Exception {
+        upload("employees.zip", "application/zip", zip("a.csv", csv(1, 3), "readme.txt", "not a csv",
+                "sales/b.csv", csv(3, 4), "c.CSV", csv(4, 6)))
+                .andExpect(status().isOk())
+                .andExpect(content().string("File uploaded successfully. 5 inserted, 0 updated, 0 unchanged."));
+
+        assertIds("e0", "e1", "e2", "e3", "e4", "e5");
+        assertEquals("Old Name", employeeRepository.findById("e0").orElseThrow().getName());
+    }
+
+    @Test
+    public void testZip_DuplicateAcrossMembersRejectsArchive() throws Exception {
+        upload("employees.zip", "application/zip", zip("a.csv", csv(0, 3), "b.csv", csv(3, 5), "c.csv", csv(2, 3)))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("One or more rows fail validation. The entire file is rejected."));
+
+        assertTableUntouched();
+    }
+
+    @Test
+    public void testZip_WithoutCsvMembersIsRejected() throws Exception {
+        upload("employees.zip", "application/zip", zip("readme.txt", "not a csv", "data.json", "[]"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("The archive contains no CSV file."));
+
+        assertTableUntouched();
+    }
+
+    @Test
+    public void testDecompressionBomb_IsRejectedWithPayloadTooLarge() throws Exception {
+        String bomb = csv(1, 5000);
+        upload("employees.csv.gz", "application/gzip", gzip(bomb))
+                .andExpect(status().isPayloadTooLarge())
+                .andExpect(content().string("The decompressed file exceeds 65536 bytes."));
+        upload("employees.zip", "application/zip", zip("a.csv", csv(1, 3), "b.csv", bomb))
+                .andExpect(status().isPayloadTooLarge())
+                .andExpect(content().string("The decompressed file exceeds 65536 bytes."));
+
+        assertTableUntouched();
+    }
+
+    /**
+     * Over a real connection, as MockMvc does not enforce the multipart limits of the servlet container.
+     */
+    @Test
+    public void testBodyAboveMaxSize_IsRejectedByUploadExceptionHandler() {
+        MultiValueMap<String, Object> parts = new LinkedMultiValueMap<>();
+        HttpHeaders partHeaders = new HttpHeaders();
+        partHeaders.setContentType(MediaType.parseMediaType("text/csv"));
+        parts.add("file", new HttpEntity<>(new ByteArrayResource(csv(1, 2000).getBytes(StandardCharsets.UTF_8)) {
+            @Override
+            public String getFilename() {
+                return "employees.csv";
+            }
+        }, partHeaders));
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.MULTIPART_FORM_DATA);
+
+        ResponseEntity<String> response = restTemplate.postForEntity("/users/upload", new HttpEntity<>(parts, headers),
+                String.class);
+
+        assertEquals(HttpStatus.PAYLOAD_TOO_LARGE, response.getStatusCode());
+        assertEquals("The file exceeds the upload size limit.", response.getBody());
+        assertTableUntouched();
+    }
+
+    private ResultActions upload(String filename, String contentType, byte[] content) throws Exception {
+        return mockMvc.perform(multipart("/users/upload").file(new MockMultipartFile("file", filename, contentType, content)));
+    }
+
+    private void assertIds(String... ids) {
+        assertEquals(List.of(ids), employeeRepository.findAll().stream().map(Employee::getId).sorted().toList());
+    }
+
+    private void assertTableUntouched() {
+        assertEquals(1, employeeRepository.count());
+        Employee stored = employeeRepository.findById(EXISTING.getId()).orElseThrow();
+        assertEquals(EXISTING.getName(), stored.getName());
+        assertEquals(EXISTING.getLogin(), stored.getLogin());
+    }
+
+    /**
+     * @return CSV file with ids {@code e<from>} up to {@code e<to - 1>}
+     */
+    private static String csv(int from, int to) {
+        StringBuilder csv = new StringBuilder("id,login,name,salary\n");
+        for (int i = from; i < to; i++) {
+            csv.append('e').append(i).append(",login").append(i).append(",Name ").append(i).append(',')
+                    .append(1000 + i).append('\n');
+        }
+        return csv.toString();
+    }
+
+    private static byte[] gzip(String content) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream gzip = new GZIPOutputStream(bytes)) {
+            gzip.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @param entries alternating member names and contents
+     */
+    private static byte[] zip(String... entries) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            for (int i = 0; i < entries.length; i += 2) {
+                zip.putNextEntry(new ZipEntry(entries[i]));
+                zip.write(entries[i + 1].getBytes(StandardCharsets.UTF_8));
+                zip.closeEntry();
+            }
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,13 @@
+package com.topan.web;
+
+import org.springframework.boot.test.context.SpringBootTest;
+
+/**
+ * With the default validate-then-persist passes.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:formats-two-pass", "spring.datasource.username=sa", "spring.datasource.password=",
+        "spring.datasource.driver-class-name=org.h2.Driver", "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "topan.upload.pipeline.enabled=false", UploadFormatsTest.LIMITS, UploadFormatsTest.BODY_LIMIT})
+public class UploadFormatsTwoPassTest extends UploadFormatsTest {
+}
@@ -0,0 +1,72 @@
+package com.topan.web;
+
+import com.topan.service.impl.UploadMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Part;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockMultipartHttpServletRequest;
+import org.springframework.mock.web.MockPart;
+
+import java.io.IOException;
+import java.util.Collection;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+public class UploadReceiveFilterTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final UploadReceiveFilter filter = new UploadReceiveFilter(new UploadMetrics(registry));
+
+    @Test
+    public void testUpload_RecordsReceivePhase() throws ServletException, IOException {
+        MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(upload("/users/upload"), new MockHttpServletResponse(), chain);
+
+        assertNotNull(chain.getRequest());
+        assertEquals(1, receives());
+    }
+
+    @Test
+    public void testOtherRequests_AreNotTimed() throws ServletException, IOException {
+        filter.doFilter(upload("/users/upload/sessions"), new MockHttpServletResponse(), new MockFilterChain());
+        MockMultipartHttpServletRequest get = upload("/users/upload");
+        get.setMethod("GET");
+        filter.doFilter(get, new MockHttpServletResponse(), new MockFilterChain());
+
+        assertEquals(0, receives());
+    }
+
+    @Test
+    public void testUnreadableBody_IsPassedOn() throws ServletException, IOException {
+        MockMultipartHttpServletRequest request = new MockMultipartHttpServletRequest() {
+            @Override
+            public Collection<Part> getParts() throws IOException {
+                throw new IOException("truncated");
+            }
+        };
+        request.setRequestURI("/users/upload");
+        request.setContentType(MediaType.MULTIPART_FORM_DATA_VALUE + "; boundary=x");
+        MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+
+        assertNotNull(chain.getRequest());
+        assertEquals(0, receives());
+    }
+
+    private MockMultipartHttpServletRequest upload(String uri) {
+        MockMultipartHttpServletRequest request = new MockMultipartHttpServletRequest();
+        request.setRequestURI(uri);
+        request.setContentType(MediaType.MULTIPART_FORM_DATA_VALUE + "; boundary=x");
+        request.addPart(new MockPart("file", "id,login,name,salary,startDate\n".getBytes()));
+        return request;
+    }
+
+    private long receives() {
+        return registry.get("topan.upload.phase").tag("phase", "receive").timer().count();
+    }
+}